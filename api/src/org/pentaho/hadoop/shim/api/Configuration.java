@@ -46,6 +46,57 @@ public interface Configuration {
    */
   public static final String STRING_REDUCE_SINGLE_THREADED = "transformation-reduce-single-threaded";
 
+  /**
+   * Property for indicating a Pentaho MapReduce combiner should start its
+   * transformation once per task and stream all key groups through it.
+   */
+  public static final String STRING_COMBINE_STREAMING = "transformation-combine-streaming";
+
+  /**
+   * Property for indicating a Pentaho MapReduce reduce should start its
+   * transformation once per task and stream all key groups through it.
+   */
+  public static final String STRING_REDUCE_STREAMING = "transformation-reduce-streaming";
+
+  /**
+   * Property for indicating a Pentaho MapReduce reduce may pass the same key
+   * and value instances to the output format for every record. Only safe if
+   * the output format writes or copies records immediately. Also applies to
+   * the mapper of a map-only job, which writes to the output format directly.
+   */
+  public static final String STRING_REDUCE_REUSE_OUTPUT_WRITABLES = "transformation-reduce-reuse-output-writables";
+
+  /**
+   * Property for indicating a Pentaho MapReduce mapper should execute in
+   * single threaded mode.
+   */
+  public static final String STRING_MAP_SINGLE_THREADED = "transformation-map-single-threaded";
+
+  /**
+   * Property for the number of input records a Pentaho MapReduce mapper should
+   * convert before handing them to the transformation as one block. A value
+   * of {@code 0} (the default) injects every record as soon as it is read.
+   * The rows of a block are still put into the transformation one at a time,
+   * so this groups the hand offs and the injection counters, it doesn't reduce
+   * the number of hand offs.
+   */
+  public static final String STRING_MAP_INJECTION_BATCH_SIZE = "transformation-map-injection-batch-size";
+
+  /**
+   * Property for indicating a Pentaho MapReduce mapper should inject
+   * {@link org.apache.hadoop.io.Text} input into String fields as undecoded
+   * UTF-8 bytes (binary string storage) that are only converted to a String
+   * when a step reads them.
+   */
+  public static final String STRING_MAP_LAZY_TEXT_INPUT = "transformation-map-lazy-text-input";
+
+  /**
+   * Property for indicating a Pentaho MapReduce mapper should keep its prepared
+   * transformation for all tasks executed by the same (reused) JVM instead of
+   * parsing and preparing it again for every task.
+   */
+  public static final String STRING_MAP_REUSE_TRANS = "transformation-map-reuse-trans";
+
   /**
    * Sets the MapReduce job name.
    * 
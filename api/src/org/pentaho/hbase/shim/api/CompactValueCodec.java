@@ -0,0 +1,277 @@
+/*******************************************************************************
+*
+* Pentaho Big Data
+*
+* Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+
+package org.pentaho.hbase.shim.api;
+
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Date;
+
+/**
+ * A compact binary encoding for BigDecimals and the common serializable types,
+ * as an alternative to Java serialization. An encoded value starts with a zero
+ * byte followed by a tag for its type; neither the string form of a
+ * BigDecimal nor a Java serialization stream can start with a zero byte, so
+ * values in this encoding can be told apart from the older ones on read.
+ * 
+ * BigDecimals are stored as their scale (a zig-zag varint) followed by the
+ * two's complement bytes of the unscaled value. Types without a compact
+ * encoding are left to Java serialization.
+ */
+public class CompactValueCodec {
+
+  /** First byte of every compactly encoded value */
+  public static final byte MARKER = 0;
+
+  protected static final byte TAG_BIG_DECIMAL = 1;
+  protected static final byte TAG_BIG_INTEGER = 2;
+  protected static final byte TAG_STRING = 3;
+  protected static final byte TAG_LONG = 4;
+  protected static final byte TAG_INTEGER = 5;
+  protected static final byte TAG_DOUBLE = 6;
+  protected static final byte TAG_FLOAT = 7;
+  protected static final byte TAG_BOOLEAN = 8;
+  protected static final byte TAG_SHORT = 9;
+  protected static final byte TAG_BYTE = 10;
+  protected static final byte TAG_DATE = 11;
+  protected static final byte TAG_BYTES = 12;
+  protected static final byte TAG_CHARACTER = 13;
+
+  /**
+   * @param raw a raw column value
+   * @return true if the value is in the compact encoding
+   */
+  public static boolean isCompact(byte[] raw) {
+    return raw != null && raw.length >= 2 && raw[0] == MARKER;
+  }
+
+  /**
+   * @param value a value
+   * @return true if the value has a compact encoding. Only the exact types are
+   *         supported, subclasses may carry more state than the encoding keeps
+   */
+  public static boolean canEncode(Object value) {
+    if (value == null) {
+      return false;
+    }
+    Class<?> c = value.getClass();
+    return c == BigDecimal.class || c == BigInteger.class || c == String.class
+        || c == Long.class || c == Integer.class || c == Double.class
+        || c == Float.class || c == Boolean.class || c == Short.class
+        || c == Byte.class || c == Date.class || c == byte[].class
+        || c == Character.class;
+  }
+
+  /**
+   * Encodes a value.
+   * 
+   * @param value the value to encode, {@link #canEncode(Object)} must be true
+   * @param buffer the buffer to append the encoded value to
+   * @return the number of bytes written
+   * @throws IllegalArgumentException if the value has no compact encoding
+   */
+  public static int encode(Object value, EncodeBuffer buffer) {
+    int start = buffer.getLength();
+    buffer.write(MARKER);
+
+    Class<?> c = value == null ? null : value.getClass();
+    if (c == BigDecimal.class) {
+      buffer.write(TAG_BIG_DECIMAL);
+      BigDecimal decimal = (BigDecimal) value;
+      writeVarInt((decimal.scale() << 1) ^ (decimal.scale() >> 31), buffer);
+      buffer.write(decimal.unscaledValue().toByteArray());
+    } else if (c == BigInteger.class) {
+      buffer.write(TAG_BIG_INTEGER);
+      buffer.write(((BigInteger) value).toByteArray());
+    } else if (c == String.class) {
+      buffer.write(TAG_STRING);
+      buffer.writeString((String) value);
+    } else if (c == Long.class) {
+      buffer.write(TAG_LONG);
+      buffer.writeLong(((Long) value).longValue());
+    } else if (c == Integer.class) {
+      buffer.write(TAG_INTEGER);
+      buffer.writeInt(((Integer) value).intValue());
+    } else if (c == Double.class) {
+      buffer.write(TAG_DOUBLE);
+      buffer.writeDouble(((Double) value).doubleValue());
+    } else if (c == Float.class) {
+      buffer.write(TAG_FLOAT);
+      buffer.writeFloat(((Float) value).floatValue());
+    } else if (c == Boolean.class) {
+      buffer.write(TAG_BOOLEAN);
+      buffer.write(((Boolean) value).booleanValue() ? 1 : 0);
+    } else if (c == Short.class) {
+      buffer.write(TAG_SHORT);
+      buffer.writeShort(((Short) value).shortValue());
+    } else if (c == Byte.class) {
+      buffer.write(TAG_BYTE);
+      buffer.write(((Byte) value).byteValue());
+    } else if (c == Date.class) {
+      buffer.write(TAG_DATE);
+      buffer.writeLong(((Date) value).getTime());
+    } else if (c == byte[].class) {
+      buffer.write(TAG_BYTES);
+      buffer.write((byte[]) value);
+    } else if (c == Character.class) {
+      buffer.write(TAG_CHARACTER);
+      buffer.writeShort((short) ((Character) value).charValue());
+    } else {
+      throw new IllegalArgumentException("No compact encoding for "
+          + (c == null ? "null" : c.getName()));
+    }
+
+    return buffer.getLength() - start;
+  }
+
+  /**
+   * Encodes a value into a new array.
+   * 
+   * @param value the value to encode, {@link #canEncode(Object)} must be true
+   * @return the encoded value
+   * @throws IllegalArgumentException if the value has no compact encoding
+   */
+  public static byte[] encode(Object value) {
+    EncodeBuffer buffer = new EncodeBuffer(32);
+    int length = encode(value, buffer);
+    return buffer.copyOf(0, length);
+  }
+
+  /**
+   * Decodes a value.
+   * 
+   * @param raw the encoded value, {@link #isCompact(byte[])} must be true
+   * @return the decoded value or null if the raw value isn't a valid compact
+   *         encoding
+   */
+  public static Object decode(byte[] raw) {
+    if (!isCompact(raw)) {
+      return null;
+    }
+
+    int length = raw.length - 2;
+    switch (raw[1]) {
+    case TAG_BIG_DECIMAL:
+      return decodeBigDecimal(raw);
+    case TAG_BIG_INTEGER:
+      return length > 0 ? new BigInteger(copy(raw, 2, length)) : null;
+    case TAG_STRING:
+      try {
+        return new String(raw, 2, length, "UTF-8");
+      } catch (UnsupportedEncodingException e) {
+        return null; // every JVM has UTF-8
+      }
+    case TAG_LONG:
+    case TAG_DATE:
+      if (length != 8) {
+        return null;
+      }
+      long l = readLong(raw, 2);
+      return raw[1] == TAG_DATE ? (Object) new Date(l) : (Object) Long
+          .valueOf(l);
+    case TAG_INTEGER:
+      return length == 4 ? Integer.valueOf(readInt(raw, 2)) : null;
+    case TAG_DOUBLE:
+      return length == 8 ? Double.valueOf(Double.longBitsToDouble(readLong(
+          raw, 2))) : null;
+    case TAG_FLOAT:
+      return length == 4 ? Float.valueOf(Float.intBitsToFloat(readInt(raw, 2)))
+          : null;
+    case TAG_BOOLEAN:
+      return length == 1 ? Boolean.valueOf(raw[2] != 0) : null;
+    case TAG_SHORT:
+      return length == 2 ? Short.valueOf(readShort(raw, 2)) : null;
+    case TAG_BYTE:
+      return length == 1 ? Byte.valueOf(raw[2]) : null;
+    case TAG_BYTES:
+      return copy(raw, 2, length);
+    case TAG_CHARACTER:
+      return length == 2 ? Character.valueOf((char) readShort(raw, 2)) : null;
+    }
+
+    return null;
+  }
+
+  /**
+   * Decodes a BigDecimal.
+   * 
+   * @param raw the encoded value
+   * @return the decoded value or null if the raw value isn't a compactly
+   *         encoded BigDecimal
+   */
+  public static BigDecimal decodeBigDecimal(byte[] raw) {
+    if (!isCompact(raw) || raw[1] != TAG_BIG_DECIMAL) {
+      return null;
+    }
+
+    // scale, zig-zag varint
+    int pos = 2;
+    int zigZag = 0;
+    for (int shift = 0; pos < raw.length && shift < 35; shift += 7) {
+      byte b = raw[pos++];
+      zigZag |= (b & 0x7f) << shift;
+      if (b >= 0) {
+        if (pos >= raw.length) {
+          return null; // no unscaled value
+        }
+        int scale = (zigZag >>> 1) ^ -(zigZag & 1);
+        return new BigDecimal(new BigInteger(copy(raw, pos, raw.length - pos)),
+            scale);
+      }
+    }
+
+    return null;
+  }
+
+  protected static void writeVarInt(int value, EncodeBuffer buffer) {
+    while ((value & ~0x7f) != 0) {
+      buffer.write((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    buffer.write(value);
+  }
+
+  protected static byte[] copy(byte[] raw, int offset, int length) {
+    byte[] result = new byte[length];
+    System.arraycopy(raw, offset, result, 0, length);
+    return result;
+  }
+
+  protected static long readLong(byte[] raw, int offset) {
+    long l = 0;
+    for (int i = offset; i < offset + 8; i++) {
+      l = (l << 8) | (raw[i] & 0xff);
+    }
+    return l;
+  }
+
+  protected static int readInt(byte[] raw, int offset) {
+    return ((raw[offset] & 0xff) << 24) | ((raw[offset + 1] & 0xff) << 16)
+        | ((raw[offset + 2] & 0xff) << 8) | (raw[offset + 3] & 0xff);
+  }
+
+  protected static short readShort(byte[] raw, int offset) {
+    return (short) (((raw[offset] & 0xff) << 8) | (raw[offset + 1] & 0xff));
+  }
+}
@@ -0,0 +1,179 @@
+/*******************************************************************************
+*
+* Pentaho Big Data
+*
+* Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+
+package org.pentaho.hbase.shim.api;
+
+import java.io.OutputStream;
+
+/**
+ * A growable byte array that keys and column values are encoded into, so that
+ * encoding a row doesn't allocate an array per value. Values are appended; an
+ * encoded value is the slice from the length before it was written to the
+ * length after. Numbers are written big-endian and strings as UTF-8, the same
+ * as HBase's Bytes.toBytes().
+ * 
+ * Growing the buffer replaces the backing array, so a slice must be used (or
+ * copied) before the next value is written. Call {@link #reset()} to reuse the
+ * buffer for the next row.
+ */
+public class EncodeBuffer extends OutputStream {
+
+  protected byte[] m_bytes;
+  protected int m_length;
+
+  public EncodeBuffer() {
+    this(256);
+  }
+
+  public EncodeBuffer(int initialCapacity) {
+    m_bytes = new byte[Math.max(initialCapacity, 16)];
+  }
+
+  /**
+   * @return the backing array, valid until the next write
+   */
+  public byte[] getBytes() {
+    return m_bytes;
+  }
+
+  /**
+   * @return the number of bytes written since the last reset
+   */
+  public int getLength() {
+    return m_length;
+  }
+
+  /**
+   * Discards everything written, keeping the backing array
+   */
+  public void reset() {
+    m_length = 0;
+  }
+
+  /**
+   * @param offset the start of a slice
+   * @param length the length of the slice
+   * @return a copy of the slice
+   */
+  public byte[] copyOf(int offset, int length) {
+    byte[] copy = new byte[length];
+    System.arraycopy(m_bytes, offset, copy, 0, length);
+    return copy;
+  }
+
+  protected void ensureCapacity(int additional) {
+    int required = m_length + additional;
+    if (required > m_bytes.length) {
+      byte[] bigger = new byte[Math.max(required, m_bytes.length * 2)];
+      System.arraycopy(m_bytes, 0, bigger, 0, m_length);
+      m_bytes = bigger;
+    }
+  }
+
+  @Override
+  public void write(int b) {
+    ensureCapacity(1);
+    m_bytes[m_length++] = (byte) b;
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) {
+    ensureCapacity(len);
+    System.arraycopy(b, off, m_bytes, m_length, len);
+    m_length += len;
+  }
+
+  @Override
+  public void write(byte[] b) {
+    write(b, 0, b.length);
+  }
+
+  public void writeShort(short value) {
+    ensureCapacity(2);
+    m_bytes[m_length++] = (byte) (value >>> 8);
+    m_bytes[m_length++] = (byte) value;
+  }
+
+  public void writeInt(int value) {
+    ensureCapacity(4);
+    m_bytes[m_length++] = (byte) (value >>> 24);
+    m_bytes[m_length++] = (byte) (value >>> 16);
+    m_bytes[m_length++] = (byte) (value >>> 8);
+    m_bytes[m_length++] = (byte) value;
+  }
+
+  public void writeLong(long value) {
+    ensureCapacity(8);
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      m_bytes[m_length++] = (byte) (value >>> shift);
+    }
+  }
+
+  public void writeFloat(float value) {
+    writeInt(Float.floatToRawIntBits(value));
+  }
+
+  public void writeDouble(double value) {
+    writeLong(Double.doubleToRawLongBits(value));
+  }
+
+  /**
+   * Writes a string as UTF-8. Unpaired surrogates are written as '?', as
+   * String.getBytes() does.
+   * 
+   * @param value the string to write
+   */
+  public void writeString(String value) {
+    int len = value.length();
+    // at most three bytes per char, a surrogate pair takes four for two chars
+    ensureCapacity(len * 3);
+    byte[] bytes = m_bytes;
+    int pos = m_length;
+    for (int i = 0; i < len; i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        bytes[pos++] = (byte) c;
+      } else if (c < 0x800) {
+        bytes[pos++] = (byte) (0xc0 | (c >> 6));
+        bytes[pos++] = (byte) (0x80 | (c & 0x3f));
+      } else if (c >= Character.MIN_SURROGATE
+          && c <= Character.MAX_SURROGATE) {
+        if (Character.isHighSurrogate(c) && i + 1 < len
+            && Character.isLowSurrogate(value.charAt(i + 1))) {
+          int cp = Character.toCodePoint(c, value.charAt(++i));
+          bytes[pos++] = (byte) (0xf0 | (cp >> 18));
+          bytes[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+          bytes[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+          bytes[pos++] = (byte) (0x80 | (cp & 0x3f));
+        } else {
+          bytes[pos++] = (byte) '?';
+        }
+      } else {
+        bytes[pos++] = (byte) (0xe0 | (c >> 12));
+        bytes[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+        bytes[pos++] = (byte) (0x80 | (c & 0x3f));
+      }
+    }
+    m_length = pos;
+  }
+}
@@ -30,7 +30,9 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.math.BigDecimal;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.exception.KettleException;
@@ -78,6 +80,13 @@ public class HBaseValueMeta extends ValueMeta {
    */
   protected boolean m_isLongOrDouble = true;
 
+  /**
+   * True if BigNumber and Serializable values of this column are written with
+   * the {@link CompactValueCodec} instead of as a string/Java serialization.
+   * Both forms can be read regardless of this setting
+   */
+  protected boolean m_compactEncoding;
+
   public HBaseValueMeta(String name, int type, int length, int precision)
       throws IllegalArgumentException {
 
@@ -274,6 +283,26 @@ public class HBaseValueMeta extends ValueMeta {
     return m_isLongOrDouble;
   }
 
+  /**
+   * Set whether BigNumber and Serializable values of this field are written in
+   * the compact binary encoding
+   * 
+   * @param compact true to use the compact encoding
+   */
+  public void setCompactEncoding(boolean compact) {
+    m_compactEncoding = compact;
+  }
+
+  /**
+   * Returns true if BigNumber and Serializable values of this field are
+   * written in the compact binary encoding
+   * 
+   * @return true if the compact encoding is used
+   */
+  public boolean getCompactEncoding() {
+    return m_compactEncoding;
+  }
+
   /**
    * Set whether this field is the key for the mapped table or not
    * 
@@ -306,6 +335,12 @@ public class HBaseValueMeta extends ValueMeta {
       ValueMetaInterface keyMeta, Mapping.KeyType keyType,
       HBaseBytesUtilShim bytesUtil) throws KettleException {
 
+    if (keyType == Mapping.KeyType.COMPOSITE) {
+      // the parts of a composite key are encoded by encodeCompositeKeyValue()
+      throw new KettleException(BaseMessages.getString(PKG,
+          "HBaseValueMeta.Error.CompositeKeyNeedsParts"));
+    }
+
     byte[] result = null;
 
     switch (keyType) {
@@ -329,7 +364,9 @@ public class HBaseValueMeta extends ValueMeta {
         throw new KettleException(BaseMessages.getString(PKG,
             "HBaseValueMeta.Error.UnsignedIngteger"));
       }
-      result = encodeKeyValue(new Integer(keyInt), keyType, bytesUtil);
+      // to ensure correct sort order we need to flip the sign bit
+      result = bytesUtil.toBytes(keyType == Mapping.KeyType.INTEGER ? keyInt
+          ^ (1 << 31) : keyInt);
       break;
     case LONG:
     case UNSIGNED_LONG:
@@ -338,7 +375,8 @@ public class HBaseValueMeta extends ValueMeta {
         throw new KettleException(BaseMessages.getString(PKG,
             "HBaseValueMeta.Error.UnsignedLong"));
       }
-      result = encodeKeyValue(new Long(keyLong), keyType, bytesUtil);
+      result = bytesUtil.toBytes(keyType == Mapping.KeyType.LONG ? keyLong
+          ^ (1L << 63) : keyLong);
       break;
 
     case BINARY:
@@ -354,6 +392,204 @@ public class HBaseValueMeta extends ValueMeta {
     return result;
   }
 
+  /**
+   * Encode a keyValue (with associated meta data) into the row key stored for
+   * it in the table of a mapping, i.e. salted if the mapping's key is salted.
+   * 
+   * @param keyValue the key value (object) to encode
+   * @param keyMeta meta data about the key value
+   * @param tableMapping the mapping of the table
+   * @param bytesUtil the byte utility to use
+   * @return the row key as an array of bytes
+   * @throws KettleException if something goes wrong
+   */
+  public static byte[] encodeKeyValue(Object keyValue,
+      ValueMetaInterface keyMeta, Mapping tableMapping,
+      HBaseBytesUtilShim bytesUtil) throws KettleException {
+
+    return saltKeyValue(
+        encodeKeyValue(keyValue, keyMeta, tableMapping.getKeyType(), bytesUtil),
+        tableMapping);
+  }
+
+  /**
+   * Encode a keyValue (with associated meta data) into a buffer as the row key
+   * stored for it in the table of a mapping, i.e. salted if the mapping's key
+   * is salted.
+   * 
+   * @param keyValue the key value (object) to encode
+   * @param keyMeta meta data about the key value
+   * @param tableMapping the mapping of the table
+   * @param buffer the buffer to append the row key to
+   * @return the number of bytes written
+   * @throws KettleException if something goes wrong
+   */
+  public static int encodeKeyValue(Object keyValue,
+      ValueMetaInterface keyMeta, Mapping tableMapping, EncodeBuffer buffer)
+      throws KettleException {
+
+    if (!tableMapping.isSaltedKey()) {
+      return encodeKeyValue(keyValue, keyMeta, tableMapping.getKeyType(),
+          buffer);
+    }
+
+    // reserve the salt byte, it is a hash of the key that follows
+    int start = buffer.getLength();
+    buffer.write(0);
+    int length = encodeKeyValue(keyValue, keyMeta, tableMapping.getKeyType(),
+        buffer);
+    buffer.getBytes()[start] = (byte) saltBucket(buffer.getBytes(), start + 1,
+        length, tableMapping.getSaltBuckets());
+
+    return length + 1;
+  }
+
+  /**
+   * Computes the salt bucket of an encoded key. The bytes are hashed as
+   * unsigned values, so keys that differ in their last byte only usually fall
+   * into consecutive buckets (modulo the number of buckets), which spreads
+   * sequential keys evenly.
+   * 
+   * @param key the array holding the encoded key
+   * @param offset the offset of the key in the array
+   * @param length the length of the key
+   * @param buckets the number of buckets
+   * @return the bucket, between 0 and buckets - 1
+   */
+  public static int saltBucket(byte[] key, int offset, int length, int buckets) {
+    int hash = 1;
+    for (int i = offset; i < offset + length; i++) {
+      hash = 31 * hash + (key[i] & 0xff);
+    }
+    return (hash & 0x7fffffff) % buckets;
+  }
+
+  /**
+   * Prefixes an encoded key by its salt bucket if the mapping's key is salted.
+   * Use this for keys that are encoded by other means than the mapping based
+   * encodeKeyValue() methods, e.g. composite keys.
+   * 
+   * @param key the encoded key
+   * @param tableMapping the mapping of the table
+   * @return the row key stored in the table
+   */
+  public static byte[] saltKeyValue(byte[] key, Mapping tableMapping) {
+    if (!tableMapping.isSaltedKey()) {
+      return key;
+    }
+
+    byte[] salted = new byte[key.length + 1];
+    salted[0] = (byte) saltBucket(key, 0, key.length,
+        tableMapping.getSaltBuckets());
+    System.arraycopy(key, 0, salted, 1, key.length);
+    return salted;
+  }
+
+  /**
+   * Strips the salt bucket from a row key if the mapping's key is salted
+   * 
+   * @param rawKey the row key stored in the table
+   * @param tableMapping the mapping of the table
+   * @return the encoded key
+   */
+  public static byte[] unsaltKeyValue(byte[] rawKey, Mapping tableMapping) {
+    if (!tableMapping.isSaltedKey() || rawKey.length == 0) {
+      return rawKey;
+    }
+
+    return Arrays.copyOfRange(rawKey, 1, rawKey.length);
+  }
+
+  /**
+   * Encode a keyValue (with associated meta data) into a buffer with respect
+   * to the key type specified in a mapping. Writes the same bytes as
+   * {@link #encodeKeyValue(Object, ValueMetaInterface, Mapping.KeyType, HBaseBytesUtilShim)}
+   * without allocating an array for them.
+   * 
+   * @param keyValue the key value (object) to encode
+   * @param keyMeta meta data about the key value
+   * @param keyType the target type of the encoded key value
+   * @param buffer the buffer to append the encoded key to
+   * @return the number of bytes written
+   * @throws KettleException if something goes wrong
+   */
+  public static int encodeKeyValue(Object keyValue,
+      ValueMetaInterface keyMeta, Mapping.KeyType keyType, EncodeBuffer buffer)
+      throws KettleException {
+
+    if (keyType == Mapping.KeyType.COMPOSITE) {
+      // the parts of a composite key are encoded by encodeCompositeKeyValue()
+      throw new KettleException(BaseMessages.getString(PKG,
+          "HBaseValueMeta.Error.CompositeKeyNeedsParts"));
+    }
+
+    int start = buffer.getLength();
+
+    switch (keyType) {
+    case STRING:
+      String stringKey = keyMeta.getString(keyValue);
+      if (!Const.isEmpty(stringKey)) {
+        buffer.writeString(stringKey);
+      }
+      break;
+    case DATE:
+    case UNSIGNED_DATE:
+      Date dateKey = keyMeta.getDate(keyValue);
+      if (dateKey == null) {
+        buffer.writeLong(0L);
+      } else if (keyType == Mapping.KeyType.UNSIGNED_DATE) {
+        if (dateKey.getTime() < 0) {
+          throw new KettleException(BaseMessages.getString(PKG,
+              "HBaseValueMeta.Error.UnsignedDate"));
+        }
+        buffer.writeLong(dateKey.getTime());
+      } else {
+        // to ensure correct sort order we need to flip the sign bit
+        buffer.writeLong(dateKey.getTime() ^ (1L << 63));
+      }
+      break;
+    case INTEGER:
+    case UNSIGNED_INTEGER:
+      int keyInt = keyMeta.getInteger(keyValue).intValue();
+      if (keyType == Mapping.KeyType.UNSIGNED_INTEGER) {
+        if (keyInt < 0) {
+          throw new KettleException(BaseMessages.getString(PKG,
+              "HBaseValueMeta.Error.UnsignedIngteger"));
+        }
+        buffer.writeInt(keyInt);
+      } else {
+        buffer.writeInt(keyInt ^ (1 << 31));
+      }
+      break;
+    case LONG:
+    case UNSIGNED_LONG:
+      long keyLong = keyMeta.getInteger(keyValue).longValue();
+      if (keyType == Mapping.KeyType.UNSIGNED_LONG) {
+        if (keyLong < 0) {
+          throw new KettleException(BaseMessages.getString(PKG,
+              "HBaseValueMeta.Error.UnsignedLong"));
+        }
+        buffer.writeLong(keyLong);
+      } else {
+        buffer.writeLong(keyLong ^ (1L << 63));
+      }
+      break;
+    case BINARY:
+      byte[] keyBinary = keyMeta.getBinary(keyValue);
+      if (keyBinary == null) {
+        throw new KettleException(BaseMessages.getString(PKG,
+            "HBaseValueMeta.Error.UnknownTableKeyType"));
+      }
+      buffer.write(keyBinary);
+      break;
+    default:
+      throw new KettleException(BaseMessages.getString(PKG,
+          "HBaseValueMeta.Error.UnknownTableKeyType"));
+    }
+
+    return buffer.getLength() - start;
+  }
+
   /**
    * Encode a key value (object) to an array of bytes with respect to the key
    * type specified in a mapping.
@@ -366,6 +602,12 @@ public class HBaseValueMeta extends ValueMeta {
   public static byte[] encodeKeyValue(Object keyValue, Mapping.KeyType keyType,
       HBaseBytesUtilShim bytesUtil) throws KettleException {
 
+    if (keyType == Mapping.KeyType.COMPOSITE) {
+      // the parts of a composite key are encoded by encodeCompositeKeyValue()
+      throw new KettleException(BaseMessages.getString(PKG,
+          "HBaseValueMeta.Error.CompositeKeyNeedsParts"));
+    }
+
     if (keyType == Mapping.KeyType.STRING) {
       return encodeKeyValue((String) keyValue, keyType, bytesUtil);
     }
@@ -446,6 +688,12 @@ public class HBaseValueMeta extends ValueMeta {
   public static byte[] encodeKeyValue(String keyValue, Mapping.KeyType keyType,
       HBaseBytesUtilShim bytesUtil) throws KettleException {
 
+    if (keyType == Mapping.KeyType.COMPOSITE) {
+      // the parts of a composite key are encoded by encodeCompositeKeyValue()
+      throw new KettleException(BaseMessages.getString(PKG,
+          "HBaseValueMeta.Error.CompositeKeyNeedsParts"));
+    }
+
     // if keyValue is null, we assume that the smallest possible value is wanted
 
     if (keyType == Mapping.KeyType.STRING) {
@@ -535,6 +783,11 @@ public class HBaseValueMeta extends ValueMeta {
     if (rawKey == null) {
       return null;
     }
+    rawKey = unsaltKeyValue(rawKey, tableMapping);
+
+    if (keyType == Mapping.KeyType.COMPOSITE) {
+      return decodeCompositeKeyValue(rawKey, tableMapping, bytesUtil);
+    }
 
     if (keyType == Mapping.KeyType.BINARY) {
       return rawKey; // raw bytes for the key
@@ -579,6 +832,298 @@ public class HBaseValueMeta extends ValueMeta {
         "HBaseValueMeta.Error.UnknownTableKeyType"));
   }
 
+  /**
+   * Encode the values of the leading parts of a composite key. If values are
+   * given for fewer parts than the key has, the result is the common prefix of
+   * all keys starting with these values: use it as the start row of a scan and
+   * {@link #compositeKeyPrefixStop(byte[])} of it as the stop row.
+   * 
+   * @param partValues the values of the leading key parts, in key order
+   * @param partMetas meta data about the part values
+   * @param tableMapping the mapping defining the key parts
+   * @return the key (or key prefix) encoded as an array of bytes
+   * @throws KettleException if a part value is null or can't be converted
+   */
+  public static byte[] encodeCompositeKeyValue(Object[] partValues,
+      ValueMetaInterface[] partMetas, Mapping tableMapping)
+      throws KettleException {
+
+    List<Mapping.KeyPart> parts = checkCompositeParts(tableMapping,
+        partValues.length);
+    EncodeBuffer buffer = new EncodeBuffer(64);
+    for (int i = 0; i < partValues.length; i++) {
+      Mapping.KeyPart part = parts.get(i);
+      ValueMetaInterface meta = partMetas[i];
+      Object value;
+      switch (part.getType()) {
+      case STRING:
+        value = meta.getString(partValues[i]);
+        break;
+      case DATE:
+      case UNSIGNED_DATE:
+        value = meta.getDate(partValues[i]);
+        break;
+      case BINARY:
+        value = meta.getBinary(partValues[i]);
+        break;
+      default:
+        value = meta.getInteger(partValues[i]);
+        break;
+      }
+      encodeKeyPart(value, part, buffer);
+    }
+
+    return buffer.copyOf(0, buffer.getLength());
+  }
+
+  /**
+   * Encode a composite key (or key prefix) given as a string, e.g. entered by
+   * the user as a scan bound. The part values are separated by
+   * {@link #SEPARATOR}; fewer values than the key has parts give a key prefix.
+   * An empty string gives the empty prefix (the start of the table).
+   * 
+   * @param keyValue the part values
+   * @param tableMapping the mapping defining the key parts
+   * @param bytesUtil the byte utility to use
+   * @return the key (or key prefix) encoded as an array of bytes
+   * @throws KettleException if a part value can't be parsed
+   */
+  public static byte[] encodeCompositeKeyValue(String keyValue,
+      Mapping tableMapping, HBaseBytesUtilShim bytesUtil)
+      throws KettleException {
+
+    if (Const.isEmpty(keyValue)) {
+      checkCompositeParts(tableMapping, 0);
+      return new byte[0];
+    }
+
+    String[] values = keyValue.split(SEPARATOR, -1);
+    List<Mapping.KeyPart> parts = checkCompositeParts(tableMapping,
+        values.length);
+    EncodeBuffer buffer = new EncodeBuffer(64);
+    for (int i = 0; i < values.length; i++) {
+      Mapping.KeyPart part = parts.get(i);
+      Object value;
+      try {
+        switch (part.getType()) {
+        case STRING:
+          value = values[i];
+          break;
+        case BINARY:
+          // assume we've been given a hex encoded string
+          value = bytesUtil.toBytesBinary(values[i]);
+          break;
+        case DATE:
+        case UNSIGNED_DATE:
+          throw new KettleException(BaseMessages.getString(PKG,
+              "HBaseValueMeta.Error.CantParseDateNoFormat"));
+        default:
+          value = Long.valueOf(values[i].trim());
+          break;
+        }
+      } catch (NumberFormatException e) {
+        throw new KettleException(BaseMessages.getString(PKG,
+            "HBaseValueMeta.Error.UnableToParseKeyPart", values[i],
+            part.getName()), e);
+      }
+      encodeKeyPart(value, part, buffer);
+    }
+
+    return buffer.copyOf(0, buffer.getLength());
+  }
+
+  /**
+   * Computes the exclusive upper bound of all keys that start with a prefix.
+   * 
+   * @param prefix the key prefix
+   * @return the smallest key that sorts after every key with the prefix, or
+   *         null if there is none (scan to the end of the table)
+   */
+  public static byte[] compositeKeyPrefixStop(byte[] prefix) {
+    for (int i = prefix.length - 1; i >= 0; i--) {
+      if (prefix[i] != (byte) 0xff) {
+        byte[] stop = new byte[i + 1];
+        System.arraycopy(prefix, 0, stop, 0, i + 1);
+        stop[i]++;
+        return stop;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Decode a raw composite key into the values of its parts
+   * 
+   * @param rawKey the key as an array of bytes
+   * @param tableMapping the mapping defining the key parts
+   * @param bytesUtil the byte utility to use
+   * @return the values of the key parts, in key order
+   * @throws KettleException if the key doesn't match the key parts
+   */
+  public static Object[] decodeCompositeKeyValue(byte[] rawKey,
+      Mapping tableMapping, HBaseBytesUtilShim bytesUtil)
+      throws KettleException {
+
+    List<Mapping.KeyPart> parts = checkCompositeParts(tableMapping, 0);
+    Object[] values = new Object[parts.size()];
+    int pos = 0;
+    for (int i = 0; i < values.length; i++) {
+      Mapping.KeyPart part = parts.get(i);
+      switch (part.getType()) {
+      case STRING:
+      case BINARY:
+        EncodeBuffer unescaped = new EncodeBuffer(32);
+        while (true) {
+          checkKeyPartLength(rawKey, pos, 1, part);
+          byte b = rawKey[pos++];
+          if (b != 0) {
+            unescaped.write(b);
+            continue;
+          }
+          checkKeyPartLength(rawKey, pos, 1, part);
+          if (rawKey[pos++] != ESCAPED_ZERO) {
+            break; // terminator
+          }
+          unescaped.write(0);
+        }
+        byte[] bytes = unescaped.copyOf(0, unescaped.getLength());
+        values[i] = part.getType() == Mapping.KeyType.BINARY ? bytes
+            : bytesUtil.toString(bytes);
+        break;
+      case INTEGER:
+      case UNSIGNED_INTEGER:
+        checkKeyPartLength(rawKey, pos, 4, part);
+        int intVal = readInt(rawKey, pos);
+        pos += 4;
+        if (part.getType() == Mapping.KeyType.INTEGER) {
+          intVal ^= (1 << 31);
+        }
+        values[i] = Long.valueOf(intVal);
+        break;
+      default:
+        checkKeyPartLength(rawKey, pos, 8, part);
+        long longVal = readLong(rawKey, pos);
+        pos += 8;
+        if (part.getType() == Mapping.KeyType.LONG
+            || part.getType() == Mapping.KeyType.DATE) {
+          longVal ^= (1L << 63);
+        }
+        if (part.getType() == Mapping.KeyType.DATE
+            || part.getType() == Mapping.KeyType.UNSIGNED_DATE) {
+          values[i] = new Date(longVal);
+        } else {
+          values[i] = Long.valueOf(longVal);
+        }
+        break;
+      }
+    }
+
+    return values;
+  }
+
+  // zero bytes in string and binary key parts are written as 0x00 0xff, a
+  // part ends with 0x00 0x01. The terminator sorts before any other byte (and
+  // escaped zero) so a shorter part sorts before a longer one it prefixes
+  private static final byte ESCAPED_ZERO = (byte) 0xff;
+  private static final byte PART_TERMINATOR = 1;
+
+  private static List<Mapping.KeyPart> checkCompositeParts(
+      Mapping tableMapping, int numValues) throws KettleException {
+    List<Mapping.KeyPart> parts = tableMapping.getKeyParts();
+    if (tableMapping.getKeyType() != Mapping.KeyType.COMPOSITE
+        || parts.isEmpty()) {
+      throw new KettleException(BaseMessages.getString(PKG,
+          "HBaseValueMeta.Error.NotACompositeKey"));
+    }
+    if (numValues > parts.size()) {
+      throw new KettleException(BaseMessages.getString(PKG,
+          "HBaseValueMeta.Error.TooManyKeyParts", String.valueOf(numValues),
+          String.valueOf(parts.size())));
+    }
+    return parts;
+  }
+
+  private static void encodeKeyPart(Object value, Mapping.KeyPart part,
+      EncodeBuffer buffer) throws KettleException {
+    if (value == null) {
+      throw new KettleException(BaseMessages.getString(PKG,
+          "HBaseValueMeta.Error.NullKeyPart", part.getName()));
+    }
+
+    switch (part.getType()) {
+    case STRING:
+    case BINARY:
+      int start = buffer.getLength();
+      if (part.getType() == Mapping.KeyType.STRING) {
+        buffer.writeString((String) value);
+      } else {
+        buffer.write((byte[]) value);
+      }
+      int end = buffer.getLength();
+      for (int i = start; i < end; i++) {
+        if (buffer.getBytes()[i] == 0) {
+          // escape in place, shifting the rest of the part along by one
+          buffer.write(0);
+          byte[] bytes = buffer.getBytes();
+          System.arraycopy(bytes, i + 1, bytes, i + 2, end - i - 1);
+          bytes[i + 1] = ESCAPED_ZERO;
+          i++;
+          end++;
+        }
+      }
+      buffer.write(0);
+      buffer.write(PART_TERMINATOR);
+      break;
+    case INTEGER:
+      buffer.writeInt(((Number) value).intValue() ^ (1 << 31));
+      break;
+    case UNSIGNED_INTEGER:
+      int intVal = ((Number) value).intValue();
+      if (intVal < 0) {
+        throw new KettleException(BaseMessages.getString(PKG,
+            "HBaseValueMeta.Error.UnsignedIngteger"));
+      }
+      buffer.writeInt(intVal);
+      break;
+    case LONG:
+      buffer.writeLong(((Number) value).longValue() ^ (1L << 63));
+      break;
+    case DATE:
+      buffer.writeLong(((Date) value).getTime() ^ (1L << 63));
+      break;
+    default:
+      long longVal = part.getType() == Mapping.KeyType.UNSIGNED_DATE
+          ? ((Date) value).getTime() : ((Number) value).longValue();
+      if (longVal < 0) {
+        throw new KettleException(BaseMessages.getString(PKG,
+            "HBaseValueMeta.Error.UnsignedDateLong"));
+      }
+      buffer.writeLong(longVal);
+      break;
+    }
+  }
+
+  private static void checkKeyPartLength(byte[] rawKey, int pos, int length,
+      Mapping.KeyPart part) throws KettleException {
+    if (pos + length > rawKey.length) {
+      throw new KettleException(BaseMessages.getString(PKG,
+          "HBaseValueMeta.Error.MalformedCompositeKey", part.getName()));
+    }
+  }
+
+  private static int readInt(byte[] raw, int offset) {
+    return ((raw[offset] & 0xff) << 24) | ((raw[offset + 1] & 0xff) << 16)
+        | ((raw[offset + 2] & 0xff) << 8) | (raw[offset + 3] & 0xff);
+  }
+
+  private static long readLong(byte[] raw, int offset) {
+    long l = 0;
+    for (int i = offset; i < offset + 8; i++) {
+      l = (l << 8) | (raw[i] & 0xff);
+    }
+    return l;
+  }
+
   public static byte[] encodeColumnValue(Object columnValue,
       ValueMetaInterface colMeta, HBaseValueMeta mappingColMeta,
       HBaseBytesUtilShim bytesUtil) throws KettleException {
@@ -616,12 +1161,21 @@ public class HBaseValueMeta extends ValueMeta {
       break;
     case TYPE_BIGNUMBER:
       BigDecimal bd = colMeta.getBigNumber(columnValue);
-      String bds = bd.toString();
-      encoded = bytesUtil.toBytes(bds);
+      if (mappingColMeta.getCompactEncoding()) {
+        encoded = CompactValueCodec.encode(bd);
+      } else {
+        String bds = bd.toString();
+        encoded = bytesUtil.toBytes(bds);
+      }
       break;
     case TYPE_SERIALIZABLE:
       try {
-        encoded = encodeObject(columnValue);
+        if (mappingColMeta.getCompactEncoding()
+            && CompactValueCodec.canEncode(columnValue)) {
+          encoded = CompactValueCodec.encode(columnValue);
+        } else {
+          encoded = encodeObject(columnValue);
+        }
       } catch (IOException e) {
         throw new KettleException(BaseMessages.getString(PKG,
             "HBaseValueMeta.Error.UnableToSerialize", colMeta.getName()), e);
@@ -640,6 +1194,88 @@ public class HBaseValueMeta extends ValueMeta {
     return encoded;
   }
 
+  /**
+   * Encode a column value into a buffer. Writes the same bytes as
+   * {@link #encodeColumnValue(Object, ValueMetaInterface, HBaseValueMeta, HBaseBytesUtilShim)}
+   * without allocating an array for them.
+   * 
+   * @param columnValue the value to encode
+   * @param colMeta meta data about the value
+   * @param mappingColMeta the mapped column the value is written to
+   * @param buffer the buffer to append the encoded value to
+   * @return the number of bytes written
+   * @throws KettleException if something goes wrong
+   */
+  public static int encodeColumnValue(Object columnValue,
+      ValueMetaInterface colMeta, HBaseValueMeta mappingColMeta,
+      EncodeBuffer buffer) throws KettleException {
+
+    int start = buffer.getLength();
+    switch (mappingColMeta.getType()) {
+    case TYPE_STRING:
+      buffer.writeString(colMeta.getString(columnValue));
+      break;
+    case TYPE_INTEGER:
+      long l = colMeta.getInteger(columnValue).longValue();
+      if (mappingColMeta.getIsLongOrDouble()) {
+        buffer.writeLong(l);
+      } else {
+        buffer.writeInt((int) l);
+      }
+      break;
+    case TYPE_NUMBER:
+      double d = colMeta.getNumber(columnValue).doubleValue();
+      if (mappingColMeta.getIsLongOrDouble()) {
+        buffer.writeDouble(d);
+      } else {
+        buffer.writeFloat((float) d);
+      }
+      break;
+    case TYPE_DATE:
+      buffer.writeLong(colMeta.getDate(columnValue).getTime());
+      break;
+    case TYPE_BOOLEAN:
+      buffer.write(colMeta.getBoolean(columnValue).booleanValue() ? 'Y' : 'N');
+      break;
+    case TYPE_BIGNUMBER:
+      BigDecimal bd = colMeta.getBigNumber(columnValue);
+      if (mappingColMeta.getCompactEncoding()) {
+        CompactValueCodec.encode(bd, buffer);
+      } else {
+        buffer.writeString(bd.toString());
+      }
+      break;
+    case TYPE_SERIALIZABLE:
+      if (mappingColMeta.getCompactEncoding()
+          && CompactValueCodec.canEncode(columnValue)) {
+        CompactValueCodec.encode(columnValue, buffer);
+        break;
+      }
+      try {
+        ObjectOutputStream oos = new ObjectOutputStream(buffer);
+        oos.writeObject(columnValue);
+        oos.flush();
+      } catch (IOException e) {
+        throw new KettleException(BaseMessages.getString(PKG,
+            "HBaseValueMeta.Error.UnableToSerialize", colMeta.getName()), e);
+      }
+      break;
+    case TYPE_BINARY:
+      byte[] binary = colMeta.getBinary(columnValue);
+      if (binary == null) {
+        throw new KettleException(BaseMessages.getString(PKG,
+            "HBaseValueMeta.Error.UnknownTypeForColumn"));
+      }
+      buffer.write(binary);
+      break;
+    default:
+      throw new KettleException(BaseMessages.getString(PKG,
+          "HBaseValueMeta.Error.UnknownTypeForColumn"));
+    }
+
+    return buffer.getLength() - start;
+  }
+
   /**
    * Decode a raw column value
    * 
@@ -771,12 +1407,17 @@ public class HBaseValueMeta extends ValueMeta {
   }
 
   /**
-   * Decode/deserialize an object from an array of bytes
+   * Decode/deserialize an object from an array of bytes. Handles both the
+   * {@link CompactValueCodec} encoding and Java serialization.
    * 
    * @param rawEncoded the raw encoded form
    * @return the deserialized object
    */
   public static Object decodeObject(byte[] rawEncoded) {
+    if (CompactValueCodec.isCompact(rawEncoded)) {
+      return CompactValueCodec.decode(rawEncoded);
+    }
+
     try {
       ByteArrayInputStream bis = new ByteArrayInputStream(rawEncoded);
       BufferedInputStream buf = new BufferedInputStream(bis);
@@ -792,8 +1433,10 @@ public class HBaseValueMeta extends ValueMeta {
   }
 
   /**
-   * Decode/deserialize a big decimal. Tries the raw value as a string first. If
-   * this fails then it tries to decode the big decimal as a serialized object.
+   * Decode/deserialize a big decimal. Values in the {@link CompactValueCodec}
+   * encoding are recognized by their first byte. Otherwise it tries the raw
+   * value as a string first. If this fails then it tries to decode the big
+   * decimal as a serialized object.
    * 
    * @param rawEncoded the encoded big decimal as an array of bytes
    * @return the big decimal as a BigDecimal object
@@ -801,6 +1444,10 @@ public class HBaseValueMeta extends ValueMeta {
   public static BigDecimal decodeBigDecimal(byte[] rawEncoded,
       HBaseBytesUtilShim bytesUtil) {
 
+    if (CompactValueCodec.isCompact(rawEncoded)) {
+      return CompactValueCodec.decodeBigDecimal(rawEncoded);
+    }
+
     // try string first
     String tempString = bytesUtil.toString(rawEncoded);
     try {
@@ -22,7 +22,10 @@
 
 package org.pentaho.hbase.shim.api;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -49,6 +52,21 @@ import org.w3c.dom.Node;
  * be reversed when reading key values.
  * <p>
  * 
+ * A key may also be a composite of several typed parts (see
+ * {@link KeyType#COMPOSITE}). The parts are encoded one after another so that
+ * the byte-wise order of the keys is the order of their parts: numbers and
+ * dates with the sign bit flipped (unsigned types as they are), strings and
+ * binary parts with zero bytes escaped and a terminator appended. Such keys
+ * can be range scanned on any leading subset of their parts.
+ * <p>
+ * 
+ * Keys that grow monotonically (e.g. time stamps) send all writes to the last
+ * region of a table. Salting the keys spreads them over a number of buckets:
+ * the stored key is prefixed by one byte, a hash of the encoded key modulo the
+ * number of buckets. Reading a range of keys then has to scan the range in
+ * every bucket (see {@link ScanOptions#setSaltBuckets(Integer)}).
+ * <p>
+ * 
  * Columns in HBase are uniquely identified by their name (qualifier) and column
  * family that they belong to. The user must supply these two bits of
  * information for a column to be mapped. An alias may optionally be supplied
@@ -81,7 +99,10 @@ public class Mapping {
     // >= the epoch)
     STRING("String"), INTEGER("Integer"), UNSIGNED_INTEGER("UnsignedInteger"), LONG(
         "Long"), UNSIGNED_LONG("UnsignedLong"), DATE("Date"), UNSIGNED_DATE(
-        "UnsignedDate"), BINARY("Binary");
+        "UnsignedDate"), BINARY("Binary"),
+
+    // several of the types above, see the composite key parts of the mapping
+    COMPOSITE("Composite");
 
     private final String m_stringVal;
 
@@ -97,6 +118,35 @@ public class Mapping {
 
   protected KeyType m_keyType = KeyType.STRING;
 
+  /** A part of a composite key */
+  public static class KeyPart {
+    protected final String m_name;
+    protected final KeyType m_type;
+
+    public KeyPart(String name, KeyType type) {
+      if (type == KeyType.COMPOSITE) {
+        throw new IllegalArgumentException(
+            "A composite key part can't be composite itself");
+      }
+      m_name = name;
+      m_type = type;
+    }
+
+    public String getName() {
+      return m_name;
+    }
+
+    public KeyType getType() {
+      return m_type;
+    }
+  }
+
+  /** The parts of the key, in key order, if the key type is COMPOSITE */
+  protected List<KeyPart> m_keyParts = new ArrayList<KeyPart>();
+
+  /** The number of salt buckets of the key, 0 if the key isn't salted */
+  protected int m_saltBuckets;
+
   /** Fast lookup by alias */
   protected Map<String, HBaseValueMeta> m_mappedColumnsByAlias = new HashMap<String, HBaseValueMeta>();
 
@@ -295,6 +345,73 @@ public class Mapping {
     return m_keyType;
   }
 
+  /**
+   * Append a part to the composite key
+   * 
+   * @param name the name of the part
+   * @param type the type of the part, any but COMPOSITE
+   */
+  public void addKeyPart(String name, KeyType type) {
+    m_keyParts.add(new KeyPart(name, type));
+  }
+
+  /**
+   * Remove all parts of the composite key
+   */
+  public void clearKeyParts() {
+    m_keyParts.clear();
+  }
+
+  /**
+   * Get the parts of the composite key
+   * 
+   * @return the parts of the key in key order, empty if the key isn't
+   *         composite
+   */
+  public List<KeyPart> getKeyParts() {
+    return Collections.unmodifiableList(m_keyParts);
+  }
+
+  /**
+   * Set the number of salt buckets of the key. Changing this for a table that
+   * already has rows makes them unreachable by key.
+   * 
+   * @param saltBuckets the number of buckets (at most 256, as the salt is one
+   *          byte), 0 or 1 if the key isn't salted
+   */
+  public void setSaltBuckets(int saltBuckets) {
+    if (saltBuckets < 0 || saltBuckets > 256) {
+      throw new IllegalArgumentException("Salt buckets must be between 0 and "
+          + "256: " + saltBuckets);
+    }
+    m_saltBuckets = saltBuckets;
+  }
+
+  /**
+   * Get the number of salt buckets of the key
+   * 
+   * @return the number of buckets, 0 or 1 if the key isn't salted
+   */
+  public int getSaltBuckets() {
+    return m_saltBuckets;
+  }
+
+  /**
+   * @return true if the stored keys are prefixed by a salt byte
+   */
+  public boolean isSaltedKey() {
+    return m_saltBuckets > 1;
+  }
+
+  protected static KeyType keyTypeFromString(String type) {
+    for (KeyType k : KeyType.values()) {
+      if (k.toString().equalsIgnoreCase(type)) {
+        return k;
+      }
+    }
+    throw new IllegalArgumentException("Unknown key type: " + type);
+  }
+
   public boolean isTupleMapping() {
     return m_tupleMapping;
   }
@@ -351,6 +468,17 @@ public class Mapping {
     rep.saveStepAttribute(id_transformation, id_step, 0, "key", keyName);
     rep.saveStepAttribute(id_transformation, id_step, 0, "key_type",
         getKeyType().toString());
+    for (int i = 0; i < m_keyParts.size(); i++) {
+      KeyPart part = m_keyParts.get(i);
+      rep.saveStepAttribute(id_transformation, id_step, i, "key_part_name",
+          part.getName());
+      rep.saveStepAttribute(id_transformation, id_step, i, "key_part_type",
+          part.getType().toString());
+    }
+    if (isSaltedKey()) {
+      rep.saveStepAttribute(id_transformation, id_step, 0, "salt_buckets",
+          getSaltBuckets());
+    }
 
     Set<String> aliases = m_mappedColumnsByAlias.keySet();
     if (aliases.size() > 0) {
@@ -370,6 +498,10 @@ public class Mapping {
           rep.saveStepAttribute(id_transformation, id_step, i, "indexed_vals",
               nomVals);
         }
+        if (vm.getCompactEncoding()) {
+          rep.saveStepAttribute(id_transformation, id_step, i,
+              "compact_encoding", true);
+        }
         i++;
       }
     }
@@ -403,6 +535,23 @@ public class Mapping {
     retval.append("\n      ").append(
         XMLHandler.addTagValue("key_type", getKeyType().toString()));
 
+    if (m_keyParts.size() > 0) {
+      retval.append("\n        ").append(XMLHandler.openTag("key_parts"));
+      for (KeyPart part : m_keyParts) {
+        retval.append("\n        ").append(XMLHandler.openTag("key_part"));
+        retval.append("\n          ").append(
+            XMLHandler.addTagValue("name", part.getName()));
+        retval.append("\n          ").append(
+            XMLHandler.addTagValue("type", part.getType().toString()));
+        retval.append("\n        ").append(XMLHandler.closeTag("key_part"));
+      }
+      retval.append("\n        ").append(XMLHandler.closeTag("key_parts"));
+    }
+    if (isSaltedKey()) {
+      retval.append("\n      ").append(
+          XMLHandler.addTagValue("salt_buckets", getSaltBuckets()));
+    }
+
     // field info
     Set<String> aliases = m_mappedColumnsByAlias.keySet();
     if (aliases.size() > 0) {
@@ -427,6 +576,10 @@ public class Mapping {
           retval.append("\n          ").append(
               XMLHandler.addTagValue("indexed_vals", nomVals));
         }
+        if (vm.getCompactEncoding()) {
+          retval.append("\n          ").append(
+              XMLHandler.addTagValue("compact_encoding", true));
+        }
 
         retval.append("\n        ")
             .append(XMLHandler.closeTag("mapped_column"));
@@ -474,6 +627,28 @@ public class Mapping {
       }
     }
 
+    clearKeyParts();
+    Node parts = XMLHandler.getSubNode(stepnode, "key_parts");
+    if (parts != null) {
+      int nrparts = XMLHandler.countNodes(parts, "key_part");
+      for (int i = 0; i < nrparts; i++) {
+        Node partNode = XMLHandler.getSubNodeByNr(parts, "key_part", i);
+        try {
+          addKeyPart(XMLHandler.getTagValue(partNode, "name"),
+              keyTypeFromString(XMLHandler.getTagValue(partNode, "type")));
+        } catch (IllegalArgumentException ex) {
+          throw new KettleXMLException(ex);
+        }
+      }
+    }
+
+    try {
+      setSaltBuckets(Const.toInt(
+          XMLHandler.getTagValue(stepnode, "salt_buckets"), 0));
+    } catch (IllegalArgumentException ex) {
+      throw new KettleXMLException(ex);
+    }
+
     Node fields = XMLHandler.getSubNode(stepnode, "mapped_columns");
     if (fields != null && XMLHandler.countNodes(fields, "mapped_column") > 0) {
       int nrfields = XMLHandler.countNodes(fields, "mapped_column");
@@ -500,6 +675,8 @@ public class Mapping {
           hbvm.setIndex(nomVals);
           hbvm.setStorageType(ValueMetaInterface.STORAGE_TYPE_INDEXED);
         }
+        hbvm.setCompactEncoding("Y".equalsIgnoreCase(XMLHandler.getTagValue(
+            fieldNode, "compact_encoding")));
 
         try {
           addMappedColumn(hbvm, isTupleMapping());
@@ -545,6 +722,25 @@ public class Mapping {
       }
     }
 
+    clearKeyParts();
+    int nrparts = rep.countNrStepAttributes(id_step, "key_part_name");
+    for (int i = 0; i < nrparts; i++) {
+      try {
+        addKeyPart(rep.getStepAttributeString(id_step, i, "key_part_name"),
+            keyTypeFromString(rep.getStepAttributeString(id_step, i,
+                "key_part_type")));
+      } catch (IllegalArgumentException ex) {
+        throw new KettleException(ex);
+      }
+    }
+
+    try {
+      setSaltBuckets((int) rep.getStepAttributeInteger(id_step, 0,
+          "salt_buckets"));
+    } catch (IllegalArgumentException ex) {
+      throw new KettleException(ex);
+    }
+
     int nrfields = rep.countNrStepAttributes(id_step, "column_family");
     if (nrfields > 0) {
       for (int i = 0; i < nrfields; i++) {
@@ -569,6 +765,8 @@ public class Mapping {
           hbvm.setIndex(nomVals);
           hbvm.setStorageType(ValueMetaInterface.STORAGE_TYPE_INDEXED);
         }
+        hbvm.setCompactEncoding(rep.getStepAttributeBoolean(id_step, i,
+            "compact_encoding"));
 
         try {
           addMappedColumn(hbvm, isTupleMapping());
@@ -595,6 +793,12 @@ public class Mapping {
         + getTableName() + "\":\n\n");
 
     result.append("\tKEY (" + getKeyName() + "): " + getKeyType().toString());
+    for (KeyPart part : m_keyParts) {
+      result.append("\n\t\t" + part.getName() + ": " + part.getType());
+    }
+    if (isSaltedKey()) {
+      result.append("\n\t\tsalted, " + getSaltBuckets() + " buckets");
+    }
     result.append("\n\n");
 
     if (aliases.size() > 0) {
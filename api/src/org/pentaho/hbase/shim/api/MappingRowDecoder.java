@@ -0,0 +1,402 @@
+/*******************************************************************************
+*
+* Pentaho Big Data
+*
+* Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+
+package org.pentaho.hbase.shim.api;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.hbase.shim.spi.HBaseBytesUtilShim;
+import org.pentaho.hbase.shim.spi.HBaseConnection;
+
+/**
+ * Decodes whole HBase rows for a fixed set of mapped columns. The type checks
+ * that {@link HBaseValueMeta#decodeColumnValue} makes for every cell are made
+ * once here, when the decoder is built: each column gets the decode function
+ * for its type, its encoded family and column name, and (for indexed strings)
+ * a hash lookup of its legal values. The decoded values are the same as those
+ * of {@link HBaseValueMeta#decodeColumnValue} and
+ * {@link HBaseValueMeta#decodeKeyValue}.
+ * 
+ * A decoder is not thread safe, and has to be rebuilt if the mapping or the
+ * columns change.
+ */
+public class MappingRowDecoder {
+
+  private static Class<?> PKG = MappingRowDecoder.class;
+
+  /** Decodes the raw value of one column */
+  protected abstract static class ValueDecoder {
+    public abstract Object decode(byte[] raw) throws KettleException;
+  }
+
+  protected final HBaseBytesUtilShim m_bytesUtil;
+
+  /** Decoder of the key, null if the key is not one of the columns */
+  protected final ValueDecoder m_keyDecoder;
+  protected final int m_keyIndex;
+  protected final boolean m_saltedKey;
+
+  /** Encoded family and column names, decoders and output indexes */
+  protected final byte[][] m_families;
+  protected final byte[][] m_columnNames;
+  protected final ValueDecoder[] m_decoders;
+  protected final int[] m_indexes;
+
+  protected final int m_rowSize;
+
+  /**
+   * Compiles a decoder. Columns are decoded into the output row at their
+   * position in the list, a column that {@link HBaseValueMeta#isKey()} gets
+   * the decoded row key.
+   * 
+   * @param mapping the mapping the columns belong to
+   * @param columns the columns to decode
+   * @param colNamesAreBinary true if the column names are binary
+   * @param bytesUtil the byte utility of the connection that reads the rows
+   * @throws KettleException if a column has a type that can't be decoded
+   */
+  public MappingRowDecoder(Mapping mapping, List<HBaseValueMeta> columns,
+      boolean colNamesAreBinary, HBaseBytesUtilShim bytesUtil)
+      throws KettleException {
+    m_bytesUtil = bytesUtil;
+    m_rowSize = columns.size();
+
+    ValueDecoder keyDecoder = null;
+    int keyIndex = -1;
+    int numColumns = 0;
+    for (HBaseValueMeta column : columns) {
+      if (!column.isKey()) {
+        numColumns++;
+      }
+    }
+
+    m_families = new byte[numColumns][];
+    m_columnNames = new byte[numColumns][];
+    m_decoders = new ValueDecoder[numColumns];
+    m_indexes = new int[numColumns];
+
+    int c = 0;
+    for (int i = 0; i < columns.size(); i++) {
+      HBaseValueMeta column = columns.get(i);
+      if (column.isKey()) {
+        keyDecoder = keyDecoder(mapping);
+        keyIndex = i;
+        continue;
+      }
+
+      m_families[c] = bytesUtil.toBytes(column.getColumnFamily());
+      m_columnNames[c] = colNamesAreBinary ? bytesUtil.toBytesBinary(column
+          .getColumnName()) : bytesUtil.toBytes(column.getColumnName());
+      m_decoders[c] = columnDecoder(column);
+      m_indexes[c] = i;
+      c++;
+    }
+
+    m_keyDecoder = keyDecoder;
+    m_keyIndex = keyIndex;
+    m_saltedKey = mapping.isSaltedKey();
+  }
+
+  /**
+   * Decodes a row.
+   * 
+   * @param connection the connection the row was read with
+   * @param aRow the HBase row
+   * @param outputRow the row to decode into, it is reused if it has room for
+   *          all columns. The values of columns the row has no cell for are
+   *          set to null
+   * @return the decoded row
+   * @throws Exception if a value can't be decoded or the row is not an HBase
+   *           row
+   */
+  public Object[] decodeRow(HBaseConnection connection, Object aRow,
+      Object[] outputRow) throws Exception {
+    if (outputRow == null || outputRow.length < m_rowSize) {
+      outputRow = new Object[m_rowSize];
+    }
+
+    if (m_keyDecoder != null) {
+      byte[] rawKey = getRowKey(connection, aRow);
+      if (rawKey != null && m_saltedKey && rawKey.length > 0) {
+        rawKey = Arrays.copyOfRange(rawKey, 1, rawKey.length);
+      }
+      outputRow[m_keyIndex] = rawKey == null ? null : m_keyDecoder
+          .decode(rawKey);
+    }
+
+    for (int i = 0; i < m_decoders.length; i++) {
+      byte[] raw = getRowColumnLatest(connection, aRow, m_families[i],
+          m_columnNames[i]);
+      outputRow[m_indexes[i]] = raw == null ? null : m_decoders[i].decode(raw);
+    }
+
+    return outputRow;
+  }
+
+  /**
+   * Reads the raw key of a row.
+   */
+  protected byte[] getRowKey(HBaseConnection connection, Object aRow)
+      throws Exception {
+    return connection.getRowKey(aRow);
+  }
+
+  /**
+   * Reads the latest raw value of a column of a row.
+   */
+  protected byte[] getRowColumnLatest(HBaseConnection connection,
+      Object aRow, byte[] family, byte[] columnName) throws Exception {
+    return connection.getRowColumnLatest(aRow, family, columnName);
+  }
+
+  protected ValueDecoder keyDecoder(final Mapping mapping)
+      throws KettleException {
+    switch (mapping.getKeyType()) {
+    case COMPOSITE:
+      return new ValueDecoder() {
+        @Override
+        public Object decode(byte[] raw) throws KettleException {
+          return HBaseValueMeta.decodeCompositeKeyValue(raw, mapping,
+              m_bytesUtil);
+        }
+      };
+    case BINARY:
+      return new ValueDecoder() {
+        @Override
+        public Object decode(byte[] raw) {
+          return raw;
+        }
+      };
+    case STRING:
+      return new ValueDecoder() {
+        @Override
+        public Object decode(byte[] raw) {
+          return m_bytesUtil.toString(raw);
+        }
+      };
+    case UNSIGNED_LONG:
+      return new ValueDecoder() {
+        @Override
+        public Object decode(byte[] raw) {
+          return Long.valueOf(m_bytesUtil.toLong(raw));
+        }
+      };
+    case UNSIGNED_DATE:
+      return new ValueDecoder() {
+        @Override
+        public Object decode(byte[] raw) {
+          return new Date(m_bytesUtil.toLong(raw));
+        }
+      };
+    case UNSIGNED_INTEGER:
+      return new ValueDecoder() {
+        @Override
+        public Object decode(byte[] raw) {
+          return Long.valueOf(m_bytesUtil.toInt(raw));
+        }
+      };
+    case INTEGER:
+      return new ValueDecoder() {
+        @Override
+        public Object decode(byte[] raw) {
+          // flip the sign bit
+          return Long.valueOf(m_bytesUtil.toInt(raw) ^ (1 << 31));
+        }
+      };
+    case LONG:
+      return new ValueDecoder() {
+        @Override
+        public Object decode(byte[] raw) {
+          // flip the sign bit
+          return Long.valueOf(m_bytesUtil.toLong(raw) ^ (1L << 63));
+        }
+      };
+    case DATE:
+      return new ValueDecoder() {
+        @Override
+        public Object decode(byte[] raw) {
+          // flip the sign bit
+          return new Date(m_bytesUtil.toLong(raw) ^ (1L << 63));
+        }
+      };
+    }
+
+    throw new KettleException(BaseMessages.getString(PKG,
+        "HBaseValueMeta.Error.UnknownTableKeyType"));
+  }
+
+  protected ValueDecoder columnDecoder(final HBaseValueMeta column)
+      throws KettleException {
+    if (column.isString()) {
+      if (column.getStorageType() == ValueMetaInterface.STORAGE_TYPE_INDEXED) {
+        return indexedStringDecoder(column);
+      }
+      return new ValueDecoder() {
+        @Override
+        public Object decode(byte[] raw) {
+          return m_bytesUtil.toString(raw);
+        }
+      };
+    }
+
+    if (column.isNumber()) {
+      return new ValueDecoder() {
+        @Override
+        public Object decode(byte[] raw) throws KettleException {
+          if (raw.length == m_bytesUtil.getSizeOfFloat()) {
+            return Double.valueOf(m_bytesUtil.toFloat(raw));
+          }
+          if (raw.length == m_bytesUtil.getSizeOfDouble()) {
+            return Double.valueOf(m_bytesUtil.toDouble(raw));
+          }
+          throw new KettleException(BaseMessages.getString(PKG,
+              "HBaseValueMeta.Error.UnknownTypeForColumn"));
+        }
+      };
+    }
+
+    if (column.isInteger()) {
+      return new ValueDecoder() {
+        @Override
+        public Object decode(byte[] raw) throws KettleException {
+          if (raw.length == m_bytesUtil.getSizeOfInt()) {
+            return Long.valueOf(m_bytesUtil.toInt(raw));
+          }
+          if (raw.length == m_bytesUtil.getSizeOfLong()) {
+            return Long.valueOf(m_bytesUtil.toLong(raw));
+          }
+          if (raw.length == m_bytesUtil.getSizeOfShort()) {
+            // be lenient on reading shorts, as decodeColumnValue() is
+            return Long.valueOf(m_bytesUtil.toShort(raw));
+          }
+          throw new KettleException(BaseMessages.getString(PKG,
+              "HBaseValueMeta.Error.IllegalIntegerLength"));
+        }
+      };
+    }
+
+    if (column.isBoolean()) {
+      return new ValueDecoder() {
+        @Override
+        public Object decode(byte[] raw) throws KettleException {
+          // try as a string first
+          Boolean result = HBaseValueMeta.decodeBoolFromString(raw,
+              m_bytesUtil);
+          if (result == null) {
+            result = HBaseValueMeta.decodeBoolFromNumber(raw, m_bytesUtil);
+          }
+          if (result == null) {
+            throw new KettleException(BaseMessages.getString(PKG,
+                "HBaseValueMeta.Error.UnableToDecodeBoolean"));
+          }
+          return result;
+        }
+      };
+    }
+
+    if (column.isBigNumber()) {
+      return new ValueDecoder() {
+        @Override
+        public Object decode(byte[] raw) throws KettleException {
+          BigDecimal result = HBaseValueMeta.decodeBigDecimal(raw,
+              m_bytesUtil);
+          if (result == null) {
+            throw new KettleException(BaseMessages.getString(PKG,
+                "HBaseValueMeta.Error.UnableToDecodeBigDecimal"));
+          }
+          return result;
+        }
+      };
+    }
+
+    if (column.isSerializableType()) {
+      return new ValueDecoder() {
+        @Override
+        public Object decode(byte[] raw) throws KettleException {
+          Object result = HBaseValueMeta.decodeObject(raw);
+          if (result == null) {
+            throw new KettleException(BaseMessages.getString(PKG,
+                "HBaseValueMeta.Error.UnableToDeserializeObject"));
+          }
+          return result;
+        }
+      };
+    }
+
+    if (column.isBinary()) {
+      return new ValueDecoder() {
+        @Override
+        public Object decode(byte[] raw) {
+          return raw;
+        }
+      };
+    }
+
+    if (column.isDate()) {
+      return new ValueDecoder() {
+        @Override
+        public Object decode(byte[] raw) throws KettleException {
+          if (raw.length != m_bytesUtil.getSizeOfLong()) {
+            throw new KettleException(BaseMessages.getString(PKG,
+                "HBaseValueMeta.Error.DateValueLengthNotEqualToLong"));
+          }
+          return new Date(m_bytesUtil.toLong(raw));
+        }
+      };
+    }
+
+    throw new KettleException(BaseMessages.getString(PKG,
+        "HBaseValueMeta.Error.UnknownTypeForColumn"));
+  }
+
+  protected ValueDecoder indexedStringDecoder(final HBaseValueMeta column) {
+    Object[] legalVals = column.getIndex();
+    final Map<String, Integer> indexes = new HashMap<String, Integer>();
+    for (int i = legalVals.length - 1; i >= 0; i--) {
+      // the first of equal values wins, as in decodeColumnValue()
+      indexes.put(legalVals[i].toString().trim(), Integer.valueOf(i));
+    }
+
+    return new ValueDecoder() {
+      @Override
+      public Object decode(byte[] raw) throws KettleException {
+        String convertedString = m_bytesUtil.toString(raw);
+        Integer index = indexes.get(convertedString.trim());
+        if (index == null) {
+          throw new KettleException(BaseMessages.getString(PKG,
+              "HBaseValueMeta.Error.IllegalIndexedColumnValue",
+              convertedString, column.getAlias()));
+        }
+        return index;
+      }
+    };
+  }
+}
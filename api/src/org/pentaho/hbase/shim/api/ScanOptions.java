@@ -0,0 +1,143 @@
+/*******************************************************************************
+*
+* Pentaho Big Data
+*
+* Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+
+package org.pentaho.hbase.shim.api;
+
+/**
+ * Optional settings for a source table scan. Settings that are left unset
+ * (null) keep the HBase defaults.
+ */
+public class ScanOptions {
+
+  public static enum KeyMode {
+    /** All cells of each row but without their values */
+    KEY_ONLY,
+
+    /**
+     * Only the first cell of each row, without its value - just enough for
+     * row keys and counts
+     */
+    FIRST_KEY_ONLY;
+  }
+
+  /** The maximum number of columns returned per call for wide rows */
+  protected Integer m_batch;
+
+  /** Whether the scanned blocks should be kept in the region server block cache */
+  protected Boolean m_cacheBlocks;
+
+  /** The maximum size in bytes of the rows returned per call */
+  protected Long m_maxResultSize;
+
+  /** Start (inclusive) of the time range of the cell versions to return */
+  protected Long m_timeRangeStart;
+
+  /** End (exclusive) of the time range of the cell versions to return */
+  protected Long m_timeRangeEnd;
+
+  /** The maximum number of versions of each column to return */
+  protected Integer m_maxVersions;
+
+  /** Return keys instead of full rows */
+  protected KeyMode m_keyMode;
+
+  /**
+   * The number of salt buckets of the table's keys (see
+   * {@link Mapping#getSaltBuckets()}), the scan bounds are unsalted
+   */
+  protected Integer m_saltBuckets;
+
+  public void setBatch(Integer batch) {
+    m_batch = batch;
+  }
+
+  public Integer getBatch() {
+    return m_batch;
+  }
+
+  public void setCacheBlocks(Boolean cacheBlocks) {
+    m_cacheBlocks = cacheBlocks;
+  }
+
+  public Boolean getCacheBlocks() {
+    return m_cacheBlocks;
+  }
+
+  public void setMaxResultSize(Long maxResultSize) {
+    m_maxResultSize = maxResultSize;
+  }
+
+  public Long getMaxResultSize() {
+    return m_maxResultSize;
+  }
+
+  /**
+   * Restrict the scan to the cell versions in a time range
+   * 
+   * @param start the start of the range (inclusive)
+   * @param end the end of the range (exclusive)
+   */
+  public void setTimeRange(Long start, Long end) {
+    m_timeRangeStart = start;
+    m_timeRangeEnd = end;
+  }
+
+  public Long getTimeRangeStart() {
+    return m_timeRangeStart;
+  }
+
+  public Long getTimeRangeEnd() {
+    return m_timeRangeEnd;
+  }
+
+  public void setMaxVersions(Integer maxVersions) {
+    m_maxVersions = maxVersions;
+  }
+
+  public Integer getMaxVersions() {
+    return m_maxVersions;
+  }
+
+  public void setKeyMode(KeyMode keyMode) {
+    m_keyMode = keyMode;
+  }
+
+  public KeyMode getKeyMode() {
+    return m_keyMode;
+  }
+
+  /**
+   * Scan a table with salted keys. The key range of the scan is read from
+   * every salt bucket and the rows of the buckets are merged.
+   * 
+   * @param saltBuckets the number of salt buckets of the table's keys, null or
+   *          less than 2 for keys that are not salted
+   */
+  public void setSaltBuckets(Integer saltBuckets) {
+    m_saltBuckets = saltBuckets;
+  }
+
+  public Integer getSaltBuckets() {
+    return m_saltBuckets;
+  }
+}
@@ -0,0 +1,106 @@
+/*******************************************************************************
+*
+* Pentaho Big Data
+*
+* Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+
+package org.pentaho.hbase.shim.spi;
+
+/**
+ * Statistics for the client side write batches a {@link HBaseConnection}
+ * sends to the target table. Each flush is one batched call to HBase, so the
+ * rows per flush are the rows sent per round trip. Flushes may be recorded by
+ * a background writer thread, so all methods are synchronized.
+ */
+public class BatchWriteStatistics {
+
+  private static final double NANOS_PER_MILLI = 1000000.0;
+
+  protected long m_flushCount;
+  protected long m_rowCount;
+  protected long m_totalFlushNanos;
+  protected long m_maxFlushNanos;
+  protected int m_lastFlushRows;
+  protected long m_lastFlushNanos;
+
+  /**
+   * Record a completed flush
+   * 
+   * @param rows the number of rows sent by the flush
+   * @param nanos the time the flush took in nanoseconds
+   */
+  public synchronized void recordFlush(int rows, long nanos) {
+    m_flushCount++;
+    m_rowCount += rows;
+    m_totalFlushNanos += nanos;
+    m_maxFlushNanos = Math.max(m_maxFlushNanos, nanos);
+    m_lastFlushRows = rows;
+    m_lastFlushNanos = nanos;
+  }
+
+  /**
+   * Clear all statistics
+   */
+  public synchronized void reset() {
+    m_flushCount = 0;
+    m_rowCount = 0;
+    m_totalFlushNanos = 0;
+    m_maxFlushNanos = 0;
+    m_lastFlushRows = 0;
+    m_lastFlushNanos = 0;
+  }
+
+  public synchronized long getFlushCount() {
+    return m_flushCount;
+  }
+
+  public synchronized long getRowCount() {
+    return m_rowCount;
+  }
+
+  public synchronized double getAverageRowsPerFlush() {
+    return m_flushCount == 0 ? 0 : (double) m_rowCount / m_flushCount;
+  }
+
+  public synchronized double getAverageFlushMillis() {
+    return m_flushCount == 0 ? 0 : m_totalFlushNanos / NANOS_PER_MILLI
+        / m_flushCount;
+  }
+
+  public synchronized double getMaxFlushMillis() {
+    return m_maxFlushNanos / NANOS_PER_MILLI;
+  }
+
+  public synchronized int getLastFlushRows() {
+    return m_lastFlushRows;
+  }
+
+  public synchronized double getLastFlushMillis() {
+    return m_lastFlushNanos / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format(
+        "flushes=%d, rows=%d, rows/flush=%.1f, avg flush=%.3f ms, max flush=%.3f ms",
+        getFlushCount(), getRowCount(), getAverageRowsPerFlush(),
+        getAverageFlushMillis(), getMaxFlushMillis());
+  }
+}
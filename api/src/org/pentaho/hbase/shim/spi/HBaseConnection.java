@@ -31,6 +31,7 @@ import java.util.Properties;
 import org.pentaho.di.core.variables.VariableSpace;
 import org.pentaho.hbase.shim.api.ColumnFilter;
 import org.pentaho.hbase.shim.api.HBaseValueMeta;
+import org.pentaho.hbase.shim.api.ScanOptions;
 
 public abstract class HBaseConnection {
 
@@ -65,6 +66,53 @@ public abstract class HBaseConnection {
   // constant HTable writing keys
   public static final String HTABLE_WRITE_BUFFER_SIZE_KEY = "htable.writeBufferSize";
 
+  // constant batched put keys. A put or delete batch is sent as soon as it
+  // holds the given number of rows or (estimated) bytes. If no batch size in
+  // bytes is given, the write buffer size is used when set
+  public static final String HTABLE_PUT_BATCH_ROWS_KEY = "htable.putBatchRows";
+  public static final String HTABLE_PUT_BATCH_BYTES_KEY = "htable.putBatchBytes";
+
+  public static final int DEFAULT_PUT_BATCH_ROWS = 1000;
+  public static final long DEFAULT_PUT_BATCH_BYTES = 2 * 1024 * 1024;
+
+  // constant asynchronous writing keys. If enabled, put batches are written by
+  // a background thread while the caller fills the next batch. The bytes of
+  // batches waiting to be written are bounded, the caller blocks when the limit
+  // is reached
+  public static final String HTABLE_ASYNC_WRITE_KEY = "htable.asyncWrite";
+  public static final String HTABLE_ASYNC_MAX_IN_FLIGHT_BYTES_KEY = "htable.asyncMaxInFlightBytes";
+
+  // number of rows fetched per call by the multi-row lookups if no batch size
+  // is given
+  public static final int DEFAULT_GET_BATCH_SIZE = 100;
+
+  public static final long DEFAULT_ASYNC_MAX_IN_FLIGHT_BYTES = 4 * DEFAULT_PUT_BATCH_BYTES;
+
+  // constant connection pooling keys (connection properties). Pooling is off
+  // unless hbase.connection.pooled is set to true. Pooled connections
+  // configured with the same ZooKeeper quorum, port and default/site
+  // configuration share one HBase connection (ZooKeeper session and region
+  // location cache) and reuse table handles. The limits are taken from the
+  // connection that opens the shared connection. Table handles that are idle
+  // for longer than the idle time are closed, the shared connection itself
+  // once no connection uses it anymore
+  public static final String CONNECTION_POOLED_KEY = "hbase.connection.pooled";
+  public static final String CONNECTION_POOL_MAX_TABLES_KEY = "hbase.connection.pool.maxTables";
+  public static final String CONNECTION_POOL_MAX_IDLE_TABLES_KEY = "hbase.connection.pool.maxIdleTables";
+  public static final String CONNECTION_POOL_IDLE_MILLIS_KEY = "hbase.connection.pool.idleMillis";
+  public static final String CONNECTION_POOL_MAX_WAIT_MILLIS_KEY = "hbase.connection.pool.maxWaitMillis";
+
+  // maximum number of pooled table handles (in use and idle) per shared
+  // connection. Handles needed beyond it are opened unpooled and closed when
+  // released
+  public static final int DEFAULT_POOL_MAX_TABLES = 64;
+  // maximum number of idle handles kept per table
+  public static final int DEFAULT_POOL_MAX_IDLE_TABLES = 8;
+  public static final long DEFAULT_POOL_IDLE_MILLIS = 60 * 1000;
+  // how long to wait for a pooled table handle when the maximum is in use
+  // before opening an unpooled one
+  public static final long DEFAULT_POOL_MAX_WAIT_MILLIS = 0;
+
   /**
    * Method for getting a byte utility implementation
    * 
@@ -160,6 +208,37 @@ public abstract class HBaseConnection {
    */
   public abstract void executeTargetTableDelete(byte[] rowKey) throws Exception;
 
+  /**
+   * Adds a delete of the given row to the client side delete batch of the
+   * current target table. Delete batches are limited and sent just like put
+   * batches (see <code>addTargetTablePutToBatch</code>). Pending puts are
+   * sent first so that writes are applied in order.
+   * 
+   * @param rowKey the key of the row to delete
+   * @throws Exception if no target table has been specified or a problem
+   *           occurs while sending a full batch
+   */
+  public abstract void addTargetTableDeleteToBatch(byte[] rowKey)
+      throws Exception;
+
+  /**
+   * Sends any deletes in the client side delete batch to the target table
+   * 
+   * @throws Exception if no target table has been specified or a problem
+   *           occurs
+   */
+  public abstract void flushTargetTableDeleteBatch() throws Exception;
+
+  /**
+   * Returns the statistics of the delete batches sent to the current target
+   * table
+   * 
+   * @return the delete batch statistics
+   * @throws Exception if no target table has been specified
+   */
+  public abstract BatchWriteStatistics getTargetTableDeleteBatchStatistics()
+      throws Exception;
+
   /**
    * Create the named table in HBase
    * 
@@ -199,6 +278,42 @@ public abstract class HBaseConnection {
    */
   public abstract boolean sourceTableRowExists(byte[] rowKey) throws Exception;
 
+  /**
+   * Checks which of the given row keys exist in the source table. The keys are
+   * looked up a batch at a time, with one call to HBase per batch.
+   * 
+   * @param rowKeys the row keys to check for
+   * @param batchSize the number of keys to look up per call to HBase (the
+   *          default batch size is used if <= 0)
+   * @return for each row key, in the same order, true if the source table
+   *         contains a row with that key
+   * @throws Exception if no source table has been specified or a problem
+   *           occurs
+   */
+  public abstract boolean[] sourceTableRowsExist(List<byte[]> rowKeys,
+      int batchSize) throws Exception;
+
+  /**
+   * Fetches the rows with the given keys from the source table. The keys are
+   * looked up a batch at a time, with one call to HBase per batch. The rows
+   * returned can be accessed with <code>getRowKey</code>,
+   * <code>getRowColumnLatest</code>, <code>getRowFamilyMap</code> and
+   * <code>getRowMap</code>.
+   * 
+   * @param rowKeys the keys of the rows to fetch
+   * @param columns the columns to fetch, or null to fetch all columns
+   * @param colNamesAreBinary true if the column names are binary
+   * @param batchSize the number of rows to fetch per call to HBase (the
+   *          default batch size is used if <= 0)
+   * @return for each row key, in the same order, the HBase row or null if the
+   *         source table doesn't contain a row with that key
+   * @throws Exception if no source table has been specified or a problem
+   *           occurs
+   */
+  public abstract List<Object> getSourceTableRows(List<byte[]> rowKeys,
+      List<HBaseValueMeta> columns, boolean colNamesAreBinary, int batchSize)
+      throws Exception;
+
   /**
    * Configure a new source table scan. HBase can do a full table scan if no
    * lower and upper bound are supplied or an open upper-ended scan if a lower
@@ -215,6 +330,41 @@ public abstract class HBaseConnection {
   public abstract void newSourceTableScan(byte[] keyLowerBound,
       byte[] keyUpperBound, int cacheSize) throws Exception;
 
+  /**
+   * Configure a new source table scan with additional scan settings. See
+   * <code>newSourceTableScan(byte[], byte[], int)</code> for the key range.
+   * 
+   * @param keyLowerBound the lower bound of the scan range (may be null for no
+   *          lower bound)
+   * @param keyUpperBound the upper bound of the scan range (man be null for no
+   *          upper bound).
+   * @param cacheSize the size of the scanner cache
+   * @param options batch size, block caching, result size, time range,
+   *          version and salt bucket settings for the scan (may be null). For
+   *          a salted scan the bounds are unsalted keys
+   * @throws Exception no source table has been specified, if an option is not
+   *           supported by this version of HBase or if a problem occurs
+   */
+  public abstract void newSourceTableScan(byte[] keyLowerBound,
+      byte[] keyUpperBound, int cacheSize, ScanOptions options)
+      throws Exception;
+
+  /**
+   * Counts the rows of the source table in a key range. Only the first key of
+   * each row is fetched and the regions of the range are counted in
+   * parallel. Column filters and the current scan are not affected.
+   * 
+   * @param keyLowerBound the lower bound of the key range (may be null for no
+   *          lower bound)
+   * @param keyUpperBound the upper bound (exclusive) of the key range (may be
+   *          null for no upper bound)
+   * @return the number of rows in the range
+   * @throws Exception if no source table has been specified or a problem
+   *           occurs
+   */
+  public abstract long countSourceTableRows(byte[] keyLowerBound,
+      byte[] keyUpperBound) throws Exception;
+
   /**
    * Configure a new target table put
    * 
@@ -226,6 +376,21 @@ public abstract class HBaseConnection {
   public abstract void newTargetTablePut(byte[] key, boolean writeToWAL)
       throws Exception;
 
+  /**
+   * Configure a new target table put for a key that is a slice of an array,
+   * e.g. one encoded into an {@link org.pentaho.hbase.shim.api.EncodeBuffer}.
+   * The slice is copied, the array can be reused afterwards.
+   * 
+   * @param key the array holding the key of the row
+   * @param offset the offset of the key in the array
+   * @param length the length of the key
+   * @param writeToWAL false to disable the write to WAL
+   * @throws Exception if no target table has been specified or if a problem
+   *           occurs
+   */
+  public abstract void newTargetTablePut(byte[] key, int offset, int length,
+      boolean writeToWAL) throws Exception;
+
   /**
    * Returns true if the target table is set up to automatically flush commits
    * 
@@ -243,6 +408,36 @@ public abstract class HBaseConnection {
    */
   public abstract void executeTargetTablePut() throws Exception;
 
+  /**
+   * Adds the last configured target table put to the client side put batch
+   * instead of executing it. The batch is sent to HBase with a single call once
+   * it holds the number of rows or bytes configured via the batched put keys,
+   * and also by <code>flushTargetTablePutBatch</code>,
+   * <code>flushCommitsTargetTable</code> and <code>closeTargetTable</code>.
+   * 
+   * @throws Exception if no target table or put has been specified or if a
+   *           problem occurs while sending a full batch
+   */
+  public abstract void addTargetTablePutToBatch() throws Exception;
+
+  /**
+   * Sends any puts in the client side put batch to the target table
+   * 
+   * @throws Exception if no target table has been specified or if a problem
+   *           occurs
+   */
+  public abstract void flushTargetTablePutBatch() throws Exception;
+
+  /**
+   * Returns the statistics of the put batches sent to the current target
+   * table
+   * 
+   * @return the put batch statistics
+   * @throws Exception if no target table has been specified
+   */
+  public abstract BatchWriteStatistics getTargetTablePutBatchStatistics()
+      throws Exception;
+
   /**
    * Flush any buffered commits for the target table
    * 
@@ -263,6 +458,22 @@ public abstract class HBaseConnection {
       String columnName, boolean colNameIsBinary, byte[] colValue)
       throws Exception;
 
+  /**
+   * Add a column value that is a slice of an array (e.g. one encoded into an
+   * {@link org.pentaho.hbase.shim.api.EncodeBuffer}) to the current target
+   * table put. The slice is copied, the array can be reused afterwards.
+   * 
+   * @param columnFamily the encoded name of the column family
+   * @param columnName the encoded name of the column
+   * @param colValue the array holding the encoded column value
+   * @param offset the offset of the value in the array
+   * @param length the length of the value
+   * @throws Exception if a problem occurs
+   */
+  public abstract void addColumnToTargetPut(byte[] columnFamily,
+      byte[] columnName, byte[] colValue, int offset, int length)
+      throws Exception;
+
   /**
    * Add a column filter to the list of filters that the scanner will apply to
    * rows server-side.
@@ -297,6 +508,45 @@ public abstract class HBaseConnection {
    */
   public abstract void executeSourceTableScan() throws Exception;
 
+  /**
+   * Execute the current source table scan by scanning the regions of the scan
+   * range concurrently. The rows are read with <code>resultSetNextRow</code>
+   * as for <code>executeSourceTableScan</code>.
+   * 
+   * @param maxThreads the maximum number of regions to scan at the same time.
+   *          A normal scan is executed if this is less than 2. An ordered
+   *          salted scan reads all salt buckets at the same time if there are
+   *          no more buckets than threads, and merges them on the caller's
+   *          thread otherwise
+   * @param ordered true to return the rows in key order, false to return them
+   *          in the order they arrive from the regions (faster)
+   * @throws Exception if a problem occurs
+   */
+  public abstract void executeSourceTableParallelScan(int maxThreads,
+      boolean ordered) throws Exception;
+
+  /**
+   * Execute the current source table scan with a background thread that
+   * fetches rows ahead of <code>resultSetNextRow</code>, so that the next
+   * round trip to HBase overlaps with the processing of the current rows.
+   * 
+   * @param prefetchRows the maximum number of rows to fetch ahead. If <= 0
+   *          twice the scanner cache size is used
+   * @throws Exception if a problem occurs
+   */
+  public abstract void executeSourceTablePrefetchScan(int prefetchRows)
+      throws Exception;
+
+  /**
+   * Returns the read-ahead statistics (queue depth and time spent waiting for
+   * rows) of the last executed prefetch or parallel source table scan.
+   * 
+   * @return the scan statistics
+   * @throws Exception if a problem occurs
+   */
+  public abstract ScanStatistics getSourceTableScanStatistics()
+      throws Exception;
+
   /**
    * Advance the source table scanner to the next row.
    * 
@@ -343,6 +593,21 @@ public abstract class HBaseConnection {
   public abstract byte[] getRowColumnLatest(Object aRow, String colFamilyName,
       String colName, boolean colNameIsBinary) throws Exception;
 
+  /**
+   * get the latest version of a column in the supplied row object, for callers
+   * that have the column family and column name already encoded
+   * 
+   * @param aRow an HBase row
+   * @param colFamily the encoded name of the column family
+   * @param colName the encoded name of the column
+   * @return the raw column value
+   * @throws Exception if the supplied object is not of the correct type for the
+   *           current instance/version of HBase wrapped by this HBaseAdmin or
+   *           if a problem occurs
+   */
+  public abstract byte[] getRowColumnLatest(Object aRow, byte[] colFamily,
+      byte[] colName) throws Exception;
+
   /**
    * Checks if the supplied object is a HBase "row" for the instance/version of
    * HBase wrapped by this HBaseAdmin
@@ -0,0 +1,102 @@
+/*******************************************************************************
+*
+* Pentaho Big Data
+*
+* Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+
+package org.pentaho.hbase.shim.spi;
+
+/**
+ * Statistics for a source table scan that reads ahead of the caller. The
+ * queue depth is the number of rows already fetched when the caller asked for
+ * the next row; a wait is a call that found no row fetched yet and had to
+ * block. Updated by the thread reading the rows.
+ */
+public class ScanStatistics {
+
+  private static final double NANOS_PER_MILLI = 1000000.0;
+
+  protected long m_rowCount;
+  protected long m_queueDepthSum;
+  protected int m_maxQueueDepth;
+  protected long m_waitCount;
+  protected long m_totalWaitNanos;
+
+  /**
+   * Record a row handed to the caller
+   * 
+   * @param queueDepth the number of rows fetched ahead when the row was
+   *          requested
+   * @param waitNanos the time the caller had to wait for the row
+   */
+  public void recordRow(int queueDepth, long waitNanos) {
+    m_rowCount++;
+    m_queueDepthSum += queueDepth;
+    m_maxQueueDepth = Math.max(m_maxQueueDepth, queueDepth);
+    if (waitNanos > 0) {
+      m_waitCount++;
+      m_totalWaitNanos += waitNanos;
+    }
+  }
+
+  /**
+   * Clear all statistics
+   */
+  public void reset() {
+    m_rowCount = 0;
+    m_queueDepthSum = 0;
+    m_maxQueueDepth = 0;
+    m_waitCount = 0;
+    m_totalWaitNanos = 0;
+  }
+
+  public long getRowCount() {
+    return m_rowCount;
+  }
+
+  public double getAverageQueueDepth() {
+    return m_rowCount == 0 ? 0 : (double) m_queueDepthSum / m_rowCount;
+  }
+
+  public int getMaxQueueDepth() {
+    return m_maxQueueDepth;
+  }
+
+  public long getWaitCount() {
+    return m_waitCount;
+  }
+
+  public double getTotalWaitMillis() {
+    return m_totalWaitNanos / NANOS_PER_MILLI;
+  }
+
+  public double getAverageWaitMillis() {
+    return m_waitCount == 0 ? 0 : m_totalWaitNanos / NANOS_PER_MILLI
+        / m_waitCount;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "rows=%d, avg queue depth=%.1f, max queue depth=%d, waits=%d, total wait=%.3f ms",
+        getRowCount(), getAverageQueueDepth(), getMaxQueueDepth(),
+        getWaitCount(), getTotalWaitMillis());
+  }
+}
@@ -0,0 +1,226 @@
+/*******************************************************************************
+*
+* Pentaho Big Data
+*
+* Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+
+
+package org.pentaho.hbase.shim.api;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.xml.XMLHandler;
+import org.pentaho.hbase.shim.spi.HBaseBytesUtilShim;
+import org.w3c.dom.Node;
+
+/**
+ * Tests for {@link CompactValueCodec} and the decoding of compactly encoded
+ * values next to the older string and Java serialization encodings.
+ */
+public class CompactValueCodecTest {
+
+  private static final HBaseBytesUtilShim BYTES_UTIL = new MockBytesUtil();
+
+  private static List<Object> valuesOfEveryType() {
+    return Arrays.<Object> asList(new BigDecimal("-123.4500"),
+        new BigInteger("-98765432109876543210"), "string \u00e9\u20ac",
+        Long.valueOf(Long.MIN_VALUE), Integer.valueOf(-42),
+        Double.valueOf(-0.5d), Float.valueOf(3.25f), Boolean.TRUE,
+        Short.valueOf((short) -2), Byte.valueOf((byte) -128), new Date(
+            -86400000L), new byte[] { 0, 1, -1 }, Character.valueOf('\uffff'));
+  }
+
+  private static void assertRoundTrip(Object value) {
+    assertTrue(value.getClass().getName(), CompactValueCodec.canEncode(value));
+    byte[] encoded = CompactValueCodec.encode(value);
+    assertTrue(CompactValueCodec.isCompact(encoded));
+
+    Object decoded = CompactValueCodec.decode(encoded);
+    assertEquals(value.getClass(), decoded.getClass());
+    if (value instanceof byte[]) {
+      assertArrayEquals((byte[]) value, (byte[]) decoded);
+    } else {
+      assertEquals(value, decoded);
+    }
+  }
+
+  @Test
+  public void testRoundTripEveryTag() {
+    for (Object value : valuesOfEveryType()) {
+      assertRoundTrip(value);
+    }
+
+    assertRoundTrip(Boolean.FALSE);
+    assertRoundTrip(Long.valueOf(Long.MAX_VALUE));
+    assertRoundTrip(Double.valueOf(Double.NaN));
+    assertRoundTrip(BigInteger.ZERO);
+    assertRoundTrip("\ud83d\ude00");
+  }
+
+  @Test
+  public void testBigDecimalScales() {
+    BigDecimal[] values = { BigDecimal.ZERO, new BigDecimal("0.000"),
+        new BigDecimal("-1.5"), new BigDecimal(BigInteger.valueOf(-5), -3),
+        new BigDecimal(BigInteger.valueOf(7), -1000),
+        new BigDecimal(BigInteger.valueOf(7), 1000),
+        new BigDecimal(BigInteger.ONE, Integer.MIN_VALUE),
+        new BigDecimal(BigInteger.ONE, Integer.MAX_VALUE),
+        new BigDecimal("98765432109876543210.0123456789") };
+
+    for (BigDecimal value : values) {
+      byte[] encoded = CompactValueCodec.encode(value);
+      BigDecimal decoded = CompactValueCodec.decodeBigDecimal(encoded);
+      // equals() compares the scale too
+      assertEquals(value, decoded);
+      assertEquals(value, CompactValueCodec.decode(encoded));
+      assertEquals(value, HBaseValueMeta.decodeBigDecimal(encoded, BYTES_UTIL));
+    }
+  }
+
+  @Test
+  public void testZeroLengthValues() {
+    byte[] encoded = CompactValueCodec.encode("");
+    assertEquals(2, encoded.length);
+    assertEquals("", CompactValueCodec.decode(encoded));
+    assertEquals("", HBaseValueMeta.decodeObject(encoded));
+
+    encoded = CompactValueCodec.encode(new byte[0]);
+    assertEquals(2, encoded.length);
+    assertArrayEquals(new byte[0], (byte[]) CompactValueCodec.decode(encoded));
+    assertArrayEquals(new byte[0], (byte[]) HBaseValueMeta
+        .decodeObject(encoded));
+  }
+
+  @Test
+  public void testOlderEncodingsStillDecode() throws Exception {
+    BigDecimal decimal = new BigDecimal("-123.4500");
+
+    byte[] asString = BYTES_UTIL.toBytes(decimal.toString());
+    assertFalse(CompactValueCodec.isCompact(asString));
+    assertEquals(decimal,
+        HBaseValueMeta.decodeBigDecimal(asString, BYTES_UTIL));
+
+    byte[] serialized = HBaseValueMeta.encodeBigDecimal(decimal);
+    assertFalse(CompactValueCodec.isCompact(serialized));
+    assertEquals(decimal,
+        HBaseValueMeta.decodeBigDecimal(serialized, BYTES_UTIL));
+
+    for (Object value : Arrays.asList(new ArrayList<String>(Arrays.asList(
+        "a", "b")), "string", Long.valueOf(42), new Date(1000L))) {
+      serialized = HBaseValueMeta.encodeObject(value);
+      assertFalse(CompactValueCodec.isCompact(serialized));
+      assertEquals(value, HBaseValueMeta.decodeObject(serialized));
+    }
+  }
+
+  @Test
+  public void testCompactValuesDecodeAsColumnValues() throws Exception {
+    HBaseValueMeta bigNumber = new HBaseValueMeta("family,decimal",
+        ValueMetaInterface.TYPE_BIGNUMBER, -1, -1);
+    HBaseValueMeta serializable = new HBaseValueMeta("family,object",
+        ValueMetaInterface.TYPE_SERIALIZABLE, -1, -1);
+    BigDecimal decimal = new BigDecimal("1E+5");
+
+    assertEquals(decimal, HBaseValueMeta.decodeColumnValue(
+        CompactValueCodec.encode(decimal), bigNumber, BYTES_UTIL));
+    assertEquals(decimal, HBaseValueMeta.decodeColumnValue(
+        BYTES_UTIL.toBytes(decimal.toString()), bigNumber, BYTES_UTIL));
+    assertEquals(decimal, HBaseValueMeta.decodeColumnValue(
+        HBaseValueMeta.encodeBigDecimal(decimal), bigNumber, BYTES_UTIL));
+
+    Date date = new Date(1370000000000L);
+    assertEquals(date, HBaseValueMeta.decodeColumnValue(
+        CompactValueCodec.encode(date), serializable, BYTES_UTIL));
+    assertEquals(date, HBaseValueMeta.decodeColumnValue(
+        HBaseValueMeta.encodeObject(date), serializable, BYTES_UTIL));
+  }
+
+  @Test
+  public void testTruncatedInput() {
+    for (Object value : valuesOfEveryType()) {
+      byte[] encoded = CompactValueCodec.encode(value);
+      boolean variableLength = value instanceof String
+          || value instanceof byte[] || value instanceof BigInteger
+          || value instanceof BigDecimal;
+
+      for (int length = 0; length < encoded.length; length++) {
+        byte[] truncated = Arrays.copyOf(encoded, length);
+        // must not throw; a shorter string or byte array is still valid
+        Object decoded = CompactValueCodec.decode(truncated);
+        if (!variableLength || length < 2) {
+          assertNull(value.getClass().getName() + " truncated to " + length,
+              decoded);
+        }
+      }
+    }
+
+    // no unscaled value, or a multi-byte scale cut short
+    assertNull(CompactValueCodec.decode(Arrays.copyOf(
+        CompactValueCodec.encode(BigInteger.ONE), 2)));
+    byte[] encoded = CompactValueCodec.encode(new BigDecimal(BigInteger.ONE,
+        1000));
+    assertNull(CompactValueCodec.decodeBigDecimal(Arrays.copyOf(encoded, 2)));
+    assertNull(CompactValueCodec.decodeBigDecimal(Arrays.copyOf(encoded, 3)));
+    assertNull(CompactValueCodec.decodeBigDecimal(Arrays.copyOf(encoded, 4)));
+
+    // an unknown tag
+    assertNull(CompactValueCodec.decode(new byte[] { CompactValueCodec.MARKER,
+        99, 1, 2 }));
+  }
+
+  @Test
+  public void testCompactEncodingXmlRoundTrip() throws Exception {
+    Mapping mapping = new Mapping("table", "mapping", "key",
+        Mapping.KeyType.STRING);
+    HBaseValueMeta compact = new HBaseValueMeta("family,decimal,decimal",
+        ValueMetaInterface.TYPE_BIGNUMBER, -1, -1);
+    compact.setCompactEncoding(true);
+    mapping.addMappedColumn(compact, false);
+    HBaseValueMeta plain = new HBaseValueMeta("family,object,object",
+        ValueMetaInterface.TYPE_SERIALIZABLE, -1, -1);
+    mapping.addMappedColumn(plain, false);
+
+    String xml = mapping.getXML();
+    assertTrue(xml.indexOf("<compact_encoding>") >= 0);
+    assertEquals(xml.indexOf("<compact_encoding>"),
+        xml.lastIndexOf("<compact_encoding>"));
+
+    Node step = XMLHandler.getSubNode(XMLHandler.loadXMLString("<step>" + xml
+        + "</step>"), "step");
+    Mapping loaded = new Mapping();
+    assertTrue(loaded.loadXML(step));
+
+    assertTrue(loaded.getMappedColumns().get("decimal").getCompactEncoding());
+    assertFalse(loaded.getMappedColumns().get("object").getCompactEncoding());
+  }
+}
@@ -0,0 +1,249 @@
+/*******************************************************************************
+*
+* Pentaho Big Data
+*
+* Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+
+
+package org.pentaho.hbase.shim.api;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.ValueMeta;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.xml.XMLHandler;
+import org.pentaho.hbase.shim.spi.HBaseBytesUtilShim;
+
+/**
+ * Tests for the composite key encoding of {@link HBaseValueMeta} and the
+ * persistence of composite key parts by {@link Mapping}.
+ */
+public class CompositeKeyTest {
+
+  private static final HBaseBytesUtilShim BYTES_UTIL = new MockBytesUtil();
+
+  private static Mapping compositeMapping(Object... namesAndTypes) {
+    Mapping mapping = new Mapping("table", "mapping", "key",
+        Mapping.KeyType.COMPOSITE);
+    for (int i = 0; i < namesAndTypes.length; i += 2) {
+      mapping.addKeyPart((String) namesAndTypes[i],
+          (Mapping.KeyType) namesAndTypes[i + 1]);
+    }
+    return mapping;
+  }
+
+  private static ValueMetaInterface metaFor(Mapping.KeyType type) {
+    switch (type) {
+    case STRING:
+      return new ValueMeta("part", ValueMetaInterface.TYPE_STRING);
+    case DATE:
+    case UNSIGNED_DATE:
+      return new ValueMeta("part", ValueMetaInterface.TYPE_DATE);
+    case BINARY:
+      return new ValueMeta("part", ValueMetaInterface.TYPE_BINARY);
+    default:
+      return new ValueMeta("part", ValueMetaInterface.TYPE_INTEGER);
+    }
+  }
+
+  private static byte[] encode(Mapping mapping, Object... values)
+      throws KettleException {
+    ValueMetaInterface[] metas = new ValueMetaInterface[values.length];
+    for (int i = 0; i < values.length; i++) {
+      metas[i] = metaFor(mapping.getKeyParts().get(i).getType());
+    }
+    return HBaseValueMeta.encodeCompositeKeyValue(values, metas, mapping);
+  }
+
+  /** Unsigned lexicographic comparison, as HBase orders row keys */
+  private static int compare(byte[] a, byte[] b) {
+    for (int i = 0; i < Math.min(a.length, b.length); i++) {
+      int diff = (a[i] & 0xff) - (b[i] & 0xff);
+      if (diff != 0) {
+        return diff;
+      }
+    }
+    return a.length - b.length;
+  }
+
+  private static void assertAscending(byte[]... keys) {
+    for (int i = 1; i < keys.length; i++) {
+      assertTrue("key " + (i - 1) + " must sort before key " + i,
+          compare(keys[i - 1], keys[i]) < 0);
+    }
+  }
+
+  @Test
+  public void testNumericPartsSortInValueOrder() throws Exception {
+    long[] values = { Integer.MIN_VALUE, -1000, -1, 0, 1, 1000,
+        Integer.MAX_VALUE };
+
+    for (Mapping.KeyType type : new Mapping.KeyType[] {
+        Mapping.KeyType.INTEGER, Mapping.KeyType.LONG, Mapping.KeyType.DATE }) {
+      Mapping mapping = compositeMapping("number", type, "name",
+          Mapping.KeyType.STRING);
+      byte[][] keys = new byte[values.length][];
+      for (int i = 0; i < values.length; i++) {
+        Object value = type == Mapping.KeyType.DATE ? (Object) new Date(
+            values[i] * 1000L) : (Object) Long.valueOf(values[i]);
+        keys[i] = encode(mapping, value, "a");
+      }
+      assertAscending(keys);
+    }
+
+    Mapping mapping = compositeMapping("number", Mapping.KeyType.LONG);
+    assertAscending(encode(mapping, Long.MIN_VALUE), encode(mapping, -1L),
+        encode(mapping, 0L), encode(mapping, Long.MAX_VALUE));
+
+    mapping = compositeMapping("number", Mapping.KeyType.UNSIGNED_INTEGER);
+    assertAscending(encode(mapping, 0L), encode(mapping, 1L), encode(mapping,
+        (long) Integer.MAX_VALUE));
+  }
+
+  @Test
+  public void testStringPartsWithZeroBytes() throws Exception {
+    Mapping mapping = compositeMapping("name", Mapping.KeyType.STRING,
+        "number", Mapping.KeyType.INTEGER);
+    String[] names = { "", "\u0000", "\u0000\u0000", "a", "a\u0000",
+        "a\u0000\u0000", "a\u0000b", "a\u0001", "ab" };
+
+    byte[][] keys = new byte[names.length][];
+    for (int i = 0; i < names.length; i++) {
+      keys[i] = encode(mapping, names[i], Long.valueOf(-7));
+      Object[] decoded = HBaseValueMeta.decodeCompositeKeyValue(keys[i],
+          mapping, BYTES_UTIL);
+      assertEquals(names[i], decoded[0]);
+      assertEquals(Long.valueOf(-7), decoded[1]);
+    }
+    // the names are in (byte) order already
+    assertAscending(keys);
+  }
+
+  @Test
+  public void testPrefixSortsBeforeItsExtensions() throws Exception {
+    Mapping mapping = compositeMapping("name", Mapping.KeyType.STRING,
+        "number", Mapping.KeyType.LONG);
+
+    byte[] prefix = encode(mapping, "ab");
+    byte[] stop = HBaseValueMeta.compositeKeyPrefixStop(prefix);
+    byte[] first = encode(mapping, "ab", Long.MIN_VALUE);
+    byte[] last = encode(mapping, "ab", Long.MAX_VALUE);
+
+    assertAscending(encode(mapping, "a", Long.MAX_VALUE), prefix, first,
+        encode(mapping, "ab", 0L), last, stop, encode(mapping, "ab\u0000",
+            Long.MIN_VALUE), encode(mapping, "abc", Long.MIN_VALUE));
+
+    // the empty prefix is the start of the table
+    assertEquals(0, encode(mapping).length);
+    assertEquals(0, HBaseValueMeta.encodeCompositeKeyValue("", mapping,
+        BYTES_UTIL).length);
+  }
+
+  @Test
+  public void testCompositeKeyPrefixStop() {
+    assertArrayEquals(new byte[] { 1, 3 },
+        HBaseValueMeta.compositeKeyPrefixStop(new byte[] { 1, 2 }));
+    assertArrayEquals(new byte[] { (byte) 0x80 },
+        HBaseValueMeta.compositeKeyPrefixStop(new byte[] { 0x7f }));
+    assertArrayEquals(new byte[] { 2 },
+        HBaseValueMeta.compositeKeyPrefixStop(new byte[] { 1, (byte) 0xff }));
+    assertArrayEquals(new byte[] { 1, 1 }, HBaseValueMeta
+        .compositeKeyPrefixStop(new byte[] { 1, 0, (byte) 0xff, (byte) 0xff }));
+    assertNull(HBaseValueMeta.compositeKeyPrefixStop(new byte[] { (byte) 0xff,
+        (byte) 0xff }));
+    assertNull(HBaseValueMeta.compositeKeyPrefixStop(new byte[0]));
+  }
+
+  @Test
+  public void testRoundTripEveryPartType() throws Exception {
+    Mapping mapping = compositeMapping("s", Mapping.KeyType.STRING, "i",
+        Mapping.KeyType.INTEGER, "ui", Mapping.KeyType.UNSIGNED_INTEGER, "l",
+        Mapping.KeyType.LONG, "ul", Mapping.KeyType.UNSIGNED_LONG, "d",
+        Mapping.KeyType.DATE, "ud", Mapping.KeyType.UNSIGNED_DATE, "b",
+        Mapping.KeyType.BINARY);
+    Object[] values = { "caf\u00e9\u0000\ud83d\ude00", Long.valueOf(-5),
+        Long.valueOf(Integer.MAX_VALUE), Long.valueOf(Long.MIN_VALUE),
+        Long.valueOf(Long.MAX_VALUE), new Date(-86400000L),
+        new Date(1370000000000L), new byte[] { 0, (byte) 0xff, 0, 1 } };
+
+    byte[] key = encode(mapping, values);
+    Object[] decoded = HBaseValueMeta.decodeCompositeKeyValue(key, mapping,
+        BYTES_UTIL);
+
+    assertEquals(values.length, decoded.length);
+    for (int i = 0; i < values.length - 1; i++) {
+      assertEquals(values[i], decoded[i]);
+    }
+    assertArrayEquals((byte[]) values[values.length - 1],
+        (byte[]) decoded[values.length - 1]);
+
+    // a prefix given as a string is encoded the same way
+    assertArrayEquals(encode(mapping, "caf\u00e9", Long.valueOf(-5)),
+        HBaseValueMeta.encodeCompositeKeyValue("caf\u00e9,-5", mapping,
+            BYTES_UTIL));
+  }
+
+  @Test
+  public void testMalformedKey() throws Exception {
+    Mapping mapping = compositeMapping("name", Mapping.KeyType.STRING,
+        "number", Mapping.KeyType.LONG);
+    byte[] key = encode(mapping, "ab", Long.valueOf(1));
+
+    for (int length = 0; length < key.length; length++) {
+      byte[] truncated = new byte[length];
+      System.arraycopy(key, 0, truncated, 0, length);
+      try {
+        HBaseValueMeta.decodeCompositeKeyValue(truncated, mapping, BYTES_UTIL);
+        fail("Decoded a key truncated to " + length + " bytes");
+      } catch (KettleException expected) {
+        // the key is shorter than its parts
+      }
+    }
+  }
+
+  @Test
+  public void testKeyPartsXmlRoundTrip() throws Exception {
+    Mapping mapping = compositeMapping("name", Mapping.KeyType.STRING,
+        "number", Mapping.KeyType.UNSIGNED_LONG, "when", Mapping.KeyType.DATE);
+
+    Mapping loaded = new Mapping();
+    assertTrue(loaded.loadXML(XMLHandler.getSubNode(XMLHandler
+        .loadXMLString("<step>" + mapping.getXML() + "</step>"), "step")));
+
+    assertEquals(Mapping.KeyType.COMPOSITE, loaded.getKeyType());
+    List<Mapping.KeyPart> parts = loaded.getKeyParts();
+    assertEquals(3, parts.size());
+    for (int i = 0; i < parts.size(); i++) {
+      assertEquals(mapping.getKeyParts().get(i).getName(), parts.get(i)
+          .getName());
+      assertEquals(mapping.getKeyParts().get(i).getType(), parts.get(i)
+          .getType());
+    }
+  }
+}
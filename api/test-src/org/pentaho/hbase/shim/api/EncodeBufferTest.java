@@ -0,0 +1,270 @@
+/*******************************************************************************
+*
+* Pentaho Big Data
+*
+* Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+
+
+package org.pentaho.hbase.shim.api;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Test;
+import org.pentaho.di.core.row.ValueMeta;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.hbase.shim.spi.HBaseBytesUtilShim;
+
+/**
+ * Tests for {@link EncodeBuffer} and the buffer based encodeKeyValue() and
+ * encodeColumnValue() methods of {@link HBaseValueMeta}, which must write the
+ * same bytes as their array based counterparts.
+ */
+public class EncodeBufferTest {
+
+  private static final HBaseBytesUtilShim BYTES_UTIL = new MockBytesUtil();
+
+  // written before every value so the encoded slices don't start at 0
+  private static final byte[] PREFIX = { 1, 2, 3 };
+
+  private static byte[] slice(EncodeBuffer buffer, int start, int length) {
+    assertEquals(start + length, buffer.getLength());
+    return buffer.copyOf(start, length);
+  }
+
+  private static byte[] writeString(EncodeBuffer buffer, String value) {
+    int start = buffer.getLength();
+    buffer.writeString(value);
+    return slice(buffer, start, buffer.getLength() - start);
+  }
+
+  private static void assertKeyEncoding(Object value, int kettleType,
+      Mapping.KeyType keyType) throws Exception {
+    ValueMetaInterface meta = new ValueMeta("key", kettleType);
+    byte[] expected = HBaseValueMeta.encodeKeyValue(value, meta, keyType,
+        BYTES_UTIL);
+
+    EncodeBuffer buffer = new EncodeBuffer(16);
+    buffer.write(PREFIX);
+    int length = HBaseValueMeta.encodeKeyValue(value, meta, keyType, buffer);
+
+    assertArrayEquals(keyType + " " + value, expected,
+        slice(buffer, PREFIX.length, length));
+  }
+
+  private static void assertColumnEncoding(Object value, int type,
+      boolean longOrDouble, boolean compact) throws Exception {
+    ValueMetaInterface meta = new ValueMeta("value", type);
+    HBaseValueMeta column = new HBaseValueMeta("family,column", type, -1, -1);
+    column.setIsLongOrDouble(longOrDouble);
+    column.setCompactEncoding(compact);
+    byte[] expected = HBaseValueMeta.encodeColumnValue(value, meta, column,
+        BYTES_UTIL);
+
+    EncodeBuffer buffer = new EncodeBuffer(16);
+    buffer.write(PREFIX);
+    int length = HBaseValueMeta.encodeColumnValue(value, meta, column, buffer);
+
+    assertArrayEquals(type + " " + value, expected,
+        slice(buffer, PREFIX.length, length));
+  }
+
+  @Test
+  public void testWriteStringMatchesUtf8() throws Exception {
+    EncodeBuffer buffer = new EncodeBuffer();
+    for (String s : new String[] { "", "plain", "caf\u00e9", "\u20ac 5",
+        "\u65e5\u672c\u8a9e", "\u007f\u0080\u07ff\u0800\uffff" }) {
+      assertArrayEquals(s, s.getBytes("UTF-8"), writeString(buffer, s));
+    }
+  }
+
+  @Test
+  public void testWriteStringSurrogatePairs() throws Exception {
+    EncodeBuffer buffer = new EncodeBuffer();
+    for (String s : new String[] { "\ud83d\ude00", "a\ud83d\ude00b",
+        "\ud800\udc00\udbff\udfff" }) {
+      byte[] encoded = writeString(buffer, s);
+      assertArrayEquals(s, s.getBytes("UTF-8"), encoded);
+      assertEquals(s, new String(encoded, "UTF-8"));
+    }
+  }
+
+  @Test
+  public void testWriteStringUnpairedSurrogates() throws Exception {
+    EncodeBuffer buffer = new EncodeBuffer();
+    for (String s : new String[] { "\ud83d", "\ude00", "a\ud83db",
+        "a\ude00b", "\ude00\ud83d", "x\ud83d" }) {
+      assertArrayEquals(s, s.getBytes("UTF-8"), writeString(buffer, s));
+    }
+  }
+
+  @Test
+  public void testGrowthKeepsWrittenBytes() throws Exception {
+    EncodeBuffer buffer = new EncodeBuffer(16);
+    byte[] initial = buffer.getBytes();
+    ArrayList<byte[]> expected = new ArrayList<byte[]>();
+
+    // every kind of write, each one crossing the capacity at some point
+    for (int i = 0; i < 200; i++) {
+      int start = buffer.getLength();
+      switch (i % 6) {
+      case 0:
+        buffer.write(i);
+        expected.add(new byte[] { (byte) i });
+        break;
+      case 1:
+        buffer.writeShort((short) (i * 31));
+        expected.add(new byte[] { (byte) ((i * 31) >>> 8), (byte) (i * 31) });
+        break;
+      case 2:
+        buffer.writeInt(i * 1000003);
+        expected.add(BYTES_UTIL.toBytes(i * 1000003));
+        break;
+      case 3:
+        buffer.writeLong(i * 1000000007L);
+        expected.add(BYTES_UTIL.toBytes(i * 1000000007L));
+        break;
+      case 4:
+        buffer.writeDouble(i / 3.0d);
+        expected.add(BYTES_UTIL.toBytes(i / 3.0d));
+        break;
+      default:
+        // three bytes per char, longer than the whole initial capacity
+        char[] chars = new char[i / 10 + 6];
+        Arrays.fill(chars, '\u20ac');
+        String s = new String(chars);
+        buffer.writeString(s);
+        expected.add(s.getBytes("UTF-8"));
+      }
+      assertEquals(expected.get(i).length, buffer.getLength() - start);
+    }
+    assertTrue(buffer.getBytes() != initial);
+
+    int pos = 0;
+    for (byte[] value : expected) {
+      assertArrayEquals(value, buffer.copyOf(pos, value.length));
+      pos += value.length;
+    }
+    assertEquals(pos, buffer.getLength());
+
+    buffer.reset();
+    assertEquals(0, buffer.getLength());
+  }
+
+  @Test
+  public void testEncodeKeyValueMatchesArrayEncoding() throws Exception {
+    assertKeyEncoding("row\u00e9\ud83d\ude00", ValueMetaInterface.TYPE_STRING,
+        Mapping.KeyType.STRING);
+    assertKeyEncoding("", ValueMetaInterface.TYPE_STRING,
+        Mapping.KeyType.STRING);
+
+    for (long value : new long[] { Integer.MIN_VALUE, -1, 0, 1,
+        Integer.MAX_VALUE }) {
+      assertKeyEncoding(Long.valueOf(value), ValueMetaInterface.TYPE_INTEGER,
+          Mapping.KeyType.INTEGER);
+      assertKeyEncoding(Long.valueOf(value), ValueMetaInterface.TYPE_INTEGER,
+          Mapping.KeyType.LONG);
+      if (value >= 0) {
+        assertKeyEncoding(Long.valueOf(value),
+            ValueMetaInterface.TYPE_INTEGER, Mapping.KeyType.UNSIGNED_INTEGER);
+        assertKeyEncoding(Long.valueOf(value),
+            ValueMetaInterface.TYPE_INTEGER, Mapping.KeyType.UNSIGNED_LONG);
+      }
+    }
+    assertKeyEncoding(Long.valueOf(Long.MIN_VALUE),
+        ValueMetaInterface.TYPE_INTEGER, Mapping.KeyType.LONG);
+    assertKeyEncoding(Long.valueOf(Long.MAX_VALUE),
+        ValueMetaInterface.TYPE_INTEGER, Mapping.KeyType.UNSIGNED_LONG);
+
+    for (long time : new long[] { -86400000L, 0, 1370000000000L }) {
+      assertKeyEncoding(new Date(time), ValueMetaInterface.TYPE_DATE,
+          Mapping.KeyType.DATE);
+      if (time >= 0) {
+        assertKeyEncoding(new Date(time), ValueMetaInterface.TYPE_DATE,
+            Mapping.KeyType.UNSIGNED_DATE);
+      }
+    }
+
+    assertKeyEncoding(new byte[] { 0, -1, 127, -128 },
+        ValueMetaInterface.TYPE_BINARY, Mapping.KeyType.BINARY);
+  }
+
+  @Test
+  public void testEncodeColumnValueMatchesArrayEncoding() throws Exception {
+    assertColumnEncoding("value \u00e9\ud83d\ude00\ud83d",
+        ValueMetaInterface.TYPE_STRING, true, false);
+    assertColumnEncoding("", ValueMetaInterface.TYPE_STRING, true, false);
+
+    for (long value : new long[] { Long.MIN_VALUE, -1, 0, 42,
+        Long.MAX_VALUE }) {
+      assertColumnEncoding(Long.valueOf(value),
+          ValueMetaInterface.TYPE_INTEGER, true, false);
+      assertColumnEncoding(Long.valueOf(value),
+          ValueMetaInterface.TYPE_INTEGER, false, false);
+    }
+
+    for (double value : new double[] { -1.5d, 0d, Math.PI, Double.NaN,
+        Double.MAX_VALUE }) {
+      assertColumnEncoding(Double.valueOf(value),
+          ValueMetaInterface.TYPE_NUMBER, true, false);
+      assertColumnEncoding(Double.valueOf(value),
+          ValueMetaInterface.TYPE_NUMBER, false, false);
+    }
+
+    assertColumnEncoding(new Date(-1000L), ValueMetaInterface.TYPE_DATE, true,
+        false);
+    assertColumnEncoding(new Date(1370000000000L),
+        ValueMetaInterface.TYPE_DATE, true, false);
+
+    assertColumnEncoding(Boolean.TRUE, ValueMetaInterface.TYPE_BOOLEAN, true,
+        false);
+    assertColumnEncoding(Boolean.FALSE, ValueMetaInterface.TYPE_BOOLEAN, true,
+        false);
+
+    for (BigDecimal value : new BigDecimal[] { new BigDecimal("-123.4500"),
+        BigDecimal.ZERO, new BigDecimal("1E+12"),
+        new BigDecimal("98765432109876543210.0123456789") }) {
+      assertColumnEncoding(value, ValueMetaInterface.TYPE_BIGNUMBER, true,
+          false);
+      assertColumnEncoding(value, ValueMetaInterface.TYPE_BIGNUMBER, true,
+          true);
+    }
+
+    ArrayList<String> list = new ArrayList<String>(Arrays.asList("a", "b"));
+    assertColumnEncoding(list, ValueMetaInterface.TYPE_SERIALIZABLE, true,
+        false);
+    // no compact encoding for a list, it is serialized either way
+    assertColumnEncoding(list, ValueMetaInterface.TYPE_SERIALIZABLE, true,
+        true);
+    assertColumnEncoding(Long.valueOf(42), ValueMetaInterface.TYPE_SERIALIZABLE,
+        true, false);
+    assertColumnEncoding(Long.valueOf(42), ValueMetaInterface.TYPE_SERIALIZABLE,
+        true, true);
+
+    assertColumnEncoding(new byte[] { 0, -1, 127, -128 },
+        ValueMetaInterface.TYPE_BINARY, true, false);
+  }
+}
@@ -0,0 +1,318 @@
+/*******************************************************************************
+*
+* Pentaho Big Data
+*
+* Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+
+
+package org.pentaho.hbase.shim.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.ValueMeta;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.hbase.shim.spi.HBaseBytesUtilShim;
+import org.pentaho.hbase.shim.spi.HBaseConnection;
+
+/**
+ * Tests for {@link MappingRowDecoder}, which must decode the same values as
+ * {@link HBaseValueMeta#decodeColumnValue} and
+ * {@link HBaseValueMeta#decodeKeyValue}.
+ */
+public class MappingRowDecoderTest {
+
+  private static final HBaseBytesUtilShim BYTES_UTIL = new MockBytesUtil();
+
+  /** An HBase row: its key and the latest value of each cell */
+  private static class Row {
+    final byte[] m_key;
+    final Map<String, byte[]> m_cells = new HashMap<String, byte[]>();
+
+    Row(byte[] key) {
+      m_key = key;
+    }
+
+    Row add(HBaseValueMeta column, byte[] value, boolean colNamesAreBinary) {
+      m_cells.put(cell(column, colNamesAreBinary), value);
+      return this;
+    }
+  }
+
+  private static String cell(byte[] family, byte[] columnName) {
+    return Arrays.toString(family) + Arrays.toString(columnName);
+  }
+
+  private static String cell(HBaseValueMeta column,
+      boolean colNamesAreBinary) {
+    byte[] columnName = colNamesAreBinary ? BYTES_UTIL.toBytesBinary(column
+        .getColumnName()) : BYTES_UTIL.toBytes(column.getColumnName());
+    return cell(BYTES_UTIL.toBytes(column.getColumnFamily()), columnName);
+  }
+
+  /** Reads {@link Row}s instead of rows of a connection */
+  private static class RowDecoder extends MappingRowDecoder {
+    RowDecoder(Mapping mapping, List<HBaseValueMeta> columns,
+        boolean colNamesAreBinary) throws KettleException {
+      super(mapping, columns, colNamesAreBinary, BYTES_UTIL);
+    }
+
+    @Override
+    protected byte[] getRowKey(HBaseConnection connection, Object aRow) {
+      return ((Row) aRow).m_key;
+    }
+
+    @Override
+    protected byte[] getRowColumnLatest(HBaseConnection connection,
+        Object aRow, byte[] family, byte[] columnName) {
+      return ((Row) aRow).m_cells.get(cell(family, columnName));
+    }
+  }
+
+  private static HBaseValueMeta column(String name, int type) {
+    return new HBaseValueMeta("family," + name, type, -1, -1);
+  }
+
+  private static HBaseValueMeta keyColumn() {
+    HBaseValueMeta key = new HBaseValueMeta("family,key,key",
+        ValueMetaInterface.TYPE_STRING, -1, -1);
+    key.setKey(true);
+    return key;
+  }
+
+  private static byte[] shortBytes(short value) {
+    return ByteBuffer.allocate(2).putShort(value).array();
+  }
+
+  private static byte[] floatBytes(float value) {
+    return BYTES_UTIL.toBytes(value);
+  }
+
+  /**
+   * Decodes the column of a row both ways and checks that the values are
+   * equal and of the same class.
+   */
+  private static void assertDecodesColumn(HBaseValueMeta column, byte[] raw)
+      throws Exception {
+    List<HBaseValueMeta> columns = new ArrayList<HBaseValueMeta>();
+    columns.add(column);
+    Mapping mapping = new Mapping("table", "mapping", "key",
+        Mapping.KeyType.STRING);
+    Row row = new Row(BYTES_UTIL.toBytes("row")).add(column, raw, false);
+
+    Object expected = HBaseValueMeta.decodeColumnValue(raw, column, BYTES_UTIL);
+    Object actual = new RowDecoder(mapping, columns, false).decodeRow(null,
+        row, null)[0];
+
+    assertEquals(expected, actual);
+    assertEquals(expected.getClass(), actual.getClass());
+  }
+
+  /**
+   * Decodes the key of a row both ways and checks that the values are equal.
+   */
+  private static void assertDecodesKey(Mapping mapping, byte[] rowKey)
+      throws Exception {
+    List<HBaseValueMeta> columns = new ArrayList<HBaseValueMeta>();
+    columns.add(keyColumn());
+
+    Object expected = HBaseValueMeta.decodeKeyValue(rowKey, mapping,
+        BYTES_UTIL);
+    Object actual = new RowDecoder(mapping, columns, false).decodeRow(null,
+        new Row(rowKey), null)[0];
+
+    assertTrue(expected + " != " + actual, Arrays.deepEquals(
+        new Object[] { expected }, new Object[] { actual }));
+  }
+
+  @Test
+  public void indexed_strings() throws Exception {
+    HBaseValueMeta column = column("label", ValueMetaInterface.TYPE_STRING);
+    column.setStorageType(ValueMetaInterface.STORAGE_TYPE_INDEXED);
+    // duplicate labels, trimmed or not, resolve to the first one
+    column.setIndex(new Object[] { "low", " mid ", "high", "mid", "low " });
+
+    for (String label : new String[] { "low", "mid", " mid", "high ",
+        "low " }) {
+      assertDecodesColumn(column, BYTES_UTIL.toBytes(label));
+    }
+    assertEquals(Integer.valueOf(1), HBaseValueMeta.decodeColumnValue(
+        BYTES_UTIL.toBytes("mid"), column, BYTES_UTIL));
+  }
+
+  @Test
+  public void indexed_string_not_in_index() throws Exception {
+    HBaseValueMeta column = column("label", ValueMetaInterface.TYPE_STRING);
+    column.setStorageType(ValueMetaInterface.STORAGE_TYPE_INDEXED);
+    column.setIndex(new Object[] { "low", "high" });
+    List<HBaseValueMeta> columns = new ArrayList<HBaseValueMeta>();
+    columns.add(column);
+    RowDecoder decoder = new RowDecoder(new Mapping("table", "mapping",
+        "key", Mapping.KeyType.STRING), columns, false);
+    byte[] raw = BYTES_UTIL.toBytes("mid");
+
+    try {
+      HBaseValueMeta.decodeColumnValue(raw, column, BYTES_UTIL);
+      fail("Expected an illegal index value");
+    } catch (KettleException expected) {
+      // both fail
+    }
+    try {
+      decoder.decodeRow(null, new Row(BYTES_UTIL.toBytes("row")).add(column,
+          raw, false), null);
+      fail("Expected an illegal index value");
+    } catch (KettleException expected) {
+      // both fail
+    }
+  }
+
+  @Test
+  public void plain_strings() throws Exception {
+    HBaseValueMeta column = column("name", ValueMetaInterface.TYPE_STRING);
+
+    assertDecodesColumn(column, BYTES_UTIL.toBytes(""));
+    assertDecodesColumn(column, BYTES_UTIL.toBytes(" caf\u00e9 "));
+  }
+
+  @Test
+  public void numbers_from_float_and_double() throws Exception {
+    HBaseValueMeta column = column("amount", ValueMetaInterface.TYPE_NUMBER);
+
+    assertDecodesColumn(column, floatBytes(1.1f));
+    assertDecodesColumn(column, floatBytes(-0.0f));
+    assertDecodesColumn(column, BYTES_UTIL.toBytes(1.1d));
+    assertDecodesColumn(column, BYTES_UTIL.toBytes(Double.NaN));
+  }
+
+  @Test
+  public void integers_from_short_int_and_long() throws Exception {
+    HBaseValueMeta column = column("count", ValueMetaInterface.TYPE_INTEGER);
+
+    assertDecodesColumn(column, shortBytes((short) -7));
+    assertDecodesColumn(column, BYTES_UTIL.toBytes(Integer.MIN_VALUE));
+    assertDecodesColumn(column, BYTES_UTIL.toBytes(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void other_column_types() throws Exception {
+    assertDecodesColumn(column("flag", ValueMetaInterface.TYPE_BOOLEAN),
+        BYTES_UTIL.toBytes("Y"));
+    assertDecodesColumn(column("when", ValueMetaInterface.TYPE_DATE),
+        BYTES_UTIL.toBytes(1234567890123L));
+  }
+
+  @Test
+  public void salted_keys() throws Exception {
+    ValueMetaInterface longMeta = new ValueMeta("key",
+        ValueMetaInterface.TYPE_INTEGER);
+    for (Mapping.KeyType keyType : new Mapping.KeyType[] {
+        Mapping.KeyType.LONG, Mapping.KeyType.UNSIGNED_LONG,
+        Mapping.KeyType.INTEGER }) {
+      Mapping mapping = new Mapping("table", "mapping", "key", keyType);
+      mapping.setSaltBuckets(16);
+      for (long value : new long[] { 0, 42, Integer.MAX_VALUE }) {
+        assertDecodesKey(mapping, HBaseValueMeta.encodeKeyValue(value,
+            longMeta, mapping, BYTES_UTIL));
+      }
+    }
+
+    Mapping signedMapping = new Mapping("table", "mapping", "key",
+        Mapping.KeyType.LONG);
+    signedMapping.setSaltBuckets(16);
+    assertDecodesKey(signedMapping, HBaseValueMeta.encodeKeyValue(
+        Long.valueOf(-5), longMeta, signedMapping, BYTES_UTIL));
+
+    Mapping stringMapping = new Mapping("table", "mapping", "key",
+        Mapping.KeyType.STRING);
+    stringMapping.setSaltBuckets(256);
+    assertDecodesKey(stringMapping, HBaseValueMeta.encodeKeyValue("row 1",
+        new ValueMeta("key", ValueMetaInterface.TYPE_STRING), stringMapping,
+        BYTES_UTIL));
+
+    Mapping dateMapping = new Mapping("table", "mapping", "key",
+        Mapping.KeyType.DATE);
+    dateMapping.setSaltBuckets(3);
+    assertDecodesKey(dateMapping, HBaseValueMeta.encodeKeyValue(new Date(
+        -1000L), new ValueMeta("key", ValueMetaInterface.TYPE_DATE),
+        dateMapping, BYTES_UTIL));
+  }
+
+  @Test
+  public void composite_keys() throws Exception {
+    for (int buckets : new int[] { 0, 8 }) {
+      Mapping mapping = new Mapping("table", "mapping", "key",
+          Mapping.KeyType.COMPOSITE);
+      mapping.addKeyPart("customer", Mapping.KeyType.STRING);
+      mapping.addKeyPart("order", Mapping.KeyType.LONG);
+      mapping.setSaltBuckets(buckets);
+      byte[] key = HBaseValueMeta.encodeCompositeKeyValue(new Object[] {
+          "acme", Long.valueOf(-3) }, new ValueMetaInterface[] {
+          new ValueMeta("customer", ValueMetaInterface.TYPE_STRING),
+          new ValueMeta("order", ValueMetaInterface.TYPE_INTEGER) }, mapping);
+
+      assertDecodesKey(mapping, HBaseValueMeta.saltKeyValue(key, mapping));
+    }
+  }
+
+  @Test
+  public void decodeRow_with_key_and_binary_column_names() throws Exception {
+    Mapping mapping = new Mapping("table", "mapping", "key",
+        Mapping.KeyType.LONG);
+    mapping.setSaltBuckets(4);
+    HBaseValueMeta count = new HBaseValueMeta("family,\\x01\\x02,count",
+        ValueMetaInterface.TYPE_INTEGER, -1, -1);
+    HBaseValueMeta missing = new HBaseValueMeta("family,\\x03,missing",
+        ValueMetaInterface.TYPE_STRING, -1, -1);
+    List<HBaseValueMeta> columns = new ArrayList<HBaseValueMeta>();
+    columns.add(count);
+    columns.add(keyColumn());
+    columns.add(missing);
+
+    byte[] rowKey = HBaseValueMeta.encodeKeyValue(Long.valueOf(7),
+        new ValueMeta("key", ValueMetaInterface.TYPE_INTEGER), mapping,
+        BYTES_UTIL);
+    byte[] rawCount = BYTES_UTIL.toBytes(99L);
+    Row row = new Row(rowKey).add(count, rawCount, true);
+
+    // a reused output row gets the values of missing cells cleared
+    Object[] output = new Object[] { "x", "y", "z", "extra" };
+    Object[] decoded = new RowDecoder(mapping, columns, true).decodeRow(null,
+        row, output);
+
+    assertTrue(decoded == output);
+    assertEquals(HBaseValueMeta.decodeColumnValue(rawCount, count,
+        BYTES_UTIL), decoded[0]);
+    assertEquals(HBaseValueMeta.decodeKeyValue(rowKey, mapping, BYTES_UTIL),
+        decoded[1]);
+    assertNull(decoded[2]);
+  }
+}
@@ -0,0 +1,123 @@
+/*******************************************************************************
+*
+* Pentaho Big Data
+*
+* Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+
+
+package org.pentaho.hbase.shim.api;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.pentaho.hbase.shim.spi.HBaseBytesUtilShim;
+
+/**
+ * Byte utility for tests that don't have HBase on the class path. Encodes the
+ * same way as HBase's Bytes: numbers big-endian, strings as UTF-8.
+ */
+public class MockBytesUtil implements HBaseBytesUtilShim {
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  public int getSizeOfFloat() {
+    return 4;
+  }
+
+  public int getSizeOfDouble() {
+    return 8;
+  }
+
+  public int getSizeOfInt() {
+    return 4;
+  }
+
+  public int getSizeOfLong() {
+    return 8;
+  }
+
+  public int getSizeOfShort() {
+    return 2;
+  }
+
+  public int getSizeOfByte() {
+    return 1;
+  }
+
+  public byte[] toBytes(String aString) {
+    return aString.getBytes(UTF8);
+  }
+
+  public byte[] toBytes(int anInt) {
+    return ByteBuffer.allocate(4).putInt(anInt).array();
+  }
+
+  public byte[] toBytes(long aLong) {
+    return ByteBuffer.allocate(8).putLong(aLong).array();
+  }
+
+  public byte[] toBytes(float aFloat) {
+    return ByteBuffer.allocate(4).putFloat(aFloat).array();
+  }
+
+  public byte[] toBytes(double aDouble) {
+    return ByteBuffer.allocate(8).putDouble(aDouble).array();
+  }
+
+  public byte[] toBytesBinary(String value) {
+    // \xNN escapes as written by HBase's Bytes.toStringBinary()
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '\\' && i + 3 < value.length() && value.charAt(i + 1) == 'x') {
+        out.write(Integer.parseInt(value.substring(i + 2, i + 4), 16));
+        i += 3;
+      } else {
+        out.write((byte) c);
+      }
+    }
+    return out.toByteArray();
+  }
+
+  public String toString(byte[] value) {
+    return new String(value, UTF8);
+  }
+
+  public long toLong(byte[] value) {
+    return ByteBuffer.wrap(value).getLong();
+  }
+
+  public int toInt(byte[] value) {
+    return ByteBuffer.wrap(value).getInt();
+  }
+
+  public float toFloat(byte[] value) {
+    return ByteBuffer.wrap(value).getFloat();
+  }
+
+  public double toDouble(byte[] value) {
+    return ByteBuffer.wrap(value).getDouble();
+  }
+
+  public short toShort(byte[] value) {
+    return ByteBuffer.wrap(value).getShort();
+  }
+}
@@ -0,0 +1,148 @@
+/*******************************************************************************
+*
+* Pentaho Big Data
+*
+* Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+
+
+package org.pentaho.hbase.shim.api;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.ValueMeta;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.hbase.shim.spi.HBaseBytesUtilShim;
+
+/**
+ * Tests for the key salting of {@link HBaseValueMeta}.
+ */
+public class SaltedKeyTest {
+
+  private static final HBaseBytesUtilShim BYTES_UTIL = new MockBytesUtil();
+
+  private static Mapping mapping(Mapping.KeyType keyType, int saltBuckets) {
+    Mapping mapping = new Mapping("table", "mapping", "key", keyType);
+    mapping.setSaltBuckets(saltBuckets);
+    return mapping;
+  }
+
+  @Test
+  public void saltKeyValue_prefixes_bucket() {
+    Mapping mapping = mapping(Mapping.KeyType.BINARY, 16);
+    for (int i = 0; i < 1000; i++) {
+      byte[] key = BYTES_UTIL.toBytes("key" + i);
+      byte[] salted = HBaseValueMeta.saltKeyValue(key, mapping);
+
+      assertEquals(key.length + 1, salted.length);
+      assertEquals(HBaseValueMeta.saltBucket(key, 0, key.length, 16),
+          salted[0] & 0xff);
+      assertTrue((salted[0] & 0xff) < 16);
+      assertArrayEquals(key, HBaseValueMeta.unsaltKeyValue(salted, mapping));
+    }
+  }
+
+  @Test
+  public void unsalted_mapping_keeps_key() {
+    byte[] key = BYTES_UTIL.toBytes("key");
+    for (int buckets : new int[] { 0, 1 }) {
+      Mapping mapping = mapping(Mapping.KeyType.BINARY, buckets);
+
+      assertSame(key, HBaseValueMeta.saltKeyValue(key, mapping));
+      assertSame(key, HBaseValueMeta.unsaltKeyValue(key, mapping));
+    }
+  }
+
+  @Test
+  public void decodeKeyValue_unsalts_key() throws KettleException {
+    Mapping longMapping = mapping(Mapping.KeyType.LONG, 256);
+    ValueMetaInterface longMeta = new ValueMeta("key",
+        ValueMetaInterface.TYPE_INTEGER);
+    for (long value : new long[] { Long.MIN_VALUE, -1L, 0L, 42L,
+        Long.MAX_VALUE }) {
+      byte[] rowKey = HBaseValueMeta.encodeKeyValue(value, longMeta,
+          longMapping, BYTES_UTIL);
+
+      assertEquals(value, HBaseValueMeta.decodeKeyValue(rowKey, longMapping,
+          BYTES_UTIL));
+    }
+
+    Mapping stringMapping = mapping(Mapping.KeyType.STRING, 7);
+    ValueMetaInterface stringMeta = new ValueMeta("key",
+        ValueMetaInterface.TYPE_STRING);
+    byte[] rowKey = HBaseValueMeta.encodeKeyValue("row \u00e9", stringMeta,
+        stringMapping, BYTES_UTIL);
+    assertEquals("row \u00e9", HBaseValueMeta.decodeKeyValue(rowKey,
+        stringMapping, BYTES_UTIL));
+
+    assertNull(HBaseValueMeta.decodeKeyValue(null, stringMapping, BYTES_UTIL));
+  }
+
+  @Test
+  public void buffer_encoding_matches_array_encoding() throws KettleException {
+    Mapping mapping = mapping(Mapping.KeyType.LONG, 32);
+    ValueMetaInterface meta = new ValueMeta("key",
+        ValueMetaInterface.TYPE_INTEGER);
+    EncodeBuffer buffer = new EncodeBuffer(4);
+    for (long value = -300; value < 300; value += 7) {
+      byte[] expected = HBaseValueMeta.encodeKeyValue(value, meta, mapping,
+          BYTES_UTIL);
+
+      buffer.reset();
+      buffer.write(0x55);
+      int length = HBaseValueMeta.encodeKeyValue(value, meta, mapping, buffer);
+
+      assertEquals(expected.length, length);
+      assertEquals(1 + length, buffer.getLength());
+      assertArrayEquals(expected, Arrays.copyOfRange(buffer.getBytes(), 1,
+          buffer.getLength()));
+    }
+  }
+
+  @Test
+  public void saltBucket_is_consecutive_across_sign_boundary() {
+    // bytes are hashed unsigned, so 0x7f and 0x80 are neighbours as well
+    int buckets = 8;
+    int previous = HBaseValueMeta.saltBucket(new byte[] { 0 }, 0, 1, buckets);
+    for (int b = 1; b < 256; b++) {
+      int bucket = HBaseValueMeta.saltBucket(new byte[] { (byte) b }, 0, 1,
+          buckets);
+
+      assertEquals("byte " + b, (previous + 1) % buckets, bucket);
+      previous = bucket;
+    }
+  }
+
+  @Test
+  public void saltBucket_uses_key_range_only() {
+    byte[] key = new byte[] { 1, 2, 3 };
+    byte[] embedded = new byte[] { (byte) 0xff, 1, 2, 3, (byte) 0xfe };
+
+    assertEquals(HBaseValueMeta.saltBucket(key, 0, 3, 256),
+        HBaseValueMeta.saltBucket(embedded, 1, 3, 256));
+  }
+}
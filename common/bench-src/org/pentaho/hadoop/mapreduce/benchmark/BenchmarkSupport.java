@@ -0,0 +1,77 @@
+/*******************************************************************************
+*
+* Pentaho Big Data
+*
+* Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+
+package org.pentaho.hadoop.mapreduce.benchmark;
+
+import java.io.File;
+
+import org.apache.hadoop.mapred.JobConf;
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.trans.TransConfiguration;
+import org.pentaho.di.trans.TransExecutionConfiguration;
+import org.pentaho.di.trans.TransMeta;
+
+/**
+ * Shared setup for the MapReduce benchmarks: locates the test transformations and builds the job configuration
+ * Pentaho MapReduce would submit for them.
+ */
+public class BenchmarkSupport {
+  /**
+   * System property pointing to the directory holding the test transformations (test-res)
+   */
+  public static final String PROPERTY_TEST_RES_DIR = "pentaho.bench.test-res.dir";
+
+  private BenchmarkSupport() {
+  }
+
+  /**
+   * Load a transformation from the test resources and serialize it the way it is passed to the MapReduce tasks.
+   * 
+   * @param transformation File name of the transformation, e.g. {@code wordcount-mapper.ktr}
+   * @return The transformation configuration XML
+   */
+  public static String getTransformationXml(String transformation) throws Exception {
+    KettleEnvironment.init();
+    File file = new File(System.getProperty(PROPERTY_TEST_RES_DIR, "../test-res"), transformation);
+    TransMeta transMeta = new TransMeta(file.getAbsolutePath());
+    return new TransConfiguration(transMeta, new TransExecutionConfiguration()).getXML();
+  }
+
+  /**
+   * Create a job configuration for running {@code transformation} as mapper, combiner or reducer.
+   * 
+   * @param type One of {@code map}, {@code combiner} or {@code reduce}
+   * @param transformation File name of the transformation
+   * @param inputStepName Name of the injector step
+   * @param outputStepName Name of the output step
+   */
+  public static JobConf createJobConf(String type, String transformation, String inputStepName, String outputStepName)
+    throws Exception {
+    JobConf job = new JobConf();
+    job.set("transformation-" + type + "-xml", getTransformationXml(transformation));
+    job.set("transformation-" + type + "-input-stepname", inputStepName);
+    job.set("transformation-" + type + "-output-stepname", outputStepName);
+    job.set("debug", "false");
+    return job;
+  }
+}
@@ -0,0 +1,62 @@
+/*******************************************************************************
+*
+* Pentaho Big Data
+*
+* Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+
+package org.pentaho.hadoop.mapreduce.benchmark;
+
+import java.io.IOException;
+
+import org.apache.hadoop.mapred.OutputCollector;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Output collector that counts the collected records and hands them to a JMH {@link Blackhole} so the work producing
+ * them can't be optimized away.
+ */
+public class CountingOutputCollector<K, V> implements OutputCollector<K, V> {
+  private Blackhole blackhole;
+
+  private long count;
+
+  public CountingOutputCollector(Blackhole blackhole) {
+    this.blackhole = blackhole;
+  }
+
+  @Override
+  public void collect(K key, V value) throws IOException {
+    blackhole.consume(key);
+    blackhole.consume(value);
+    count++;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * Clears the count and consumes further records into {@code blackhole}.
+   */
+  public void reset(Blackhole blackhole) {
+    this.blackhole = blackhole;
+    count = 0;
+  }
+}
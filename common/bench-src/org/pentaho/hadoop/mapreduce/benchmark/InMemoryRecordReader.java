@@ -0,0 +1,90 @@
+/*******************************************************************************
+*
+* Pentaho Big Data
+*
+* Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+
+package org.pentaho.hadoop.mapreduce.benchmark;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.RecordReader;
+
+/**
+ * Record reader handing out a fixed set of lines from memory, keyed by their offset like {@code TextInputFormat} does.
+ * The same key and value instances are filled for every record, as Hadoop's record readers do.
+ */
+public class InMemoryRecordReader implements RecordReader<LongWritable, Text> {
+  private final Text[] lines;
+
+  private int position;
+
+  private long offset;
+
+  public InMemoryRecordReader(Text[] lines) {
+    this.lines = lines;
+  }
+
+  /**
+   * Start reading from the first line again.
+   */
+  public void rewind() {
+    position = 0;
+    offset = 0;
+  }
+
+  @Override
+  public boolean next(LongWritable key, Text value) throws IOException {
+    if (position >= lines.length) {
+      return false;
+    }
+    Text line = lines[position++];
+    key.set(offset);
+    value.set(line);
+    offset += line.getLength() + 1;
+    return true;
+  }
+
+  @Override
+  public LongWritable createKey() {
+    return new LongWritable();
+  }
+
+  @Override
+  public Text createValue() {
+    return new Text();
+  }
+
+  @Override
+  public long getPos() throws IOException {
+    return offset;
+  }
+
+  @Override
+  public void close() throws IOException {
+  }
+
+  @Override
+  public float getProgress() throws IOException {
+    return lines.length == 0 ? 1.0f : (float) position / lines.length;
+  }
+}
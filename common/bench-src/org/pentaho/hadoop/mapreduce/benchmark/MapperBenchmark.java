@@ -0,0 +1,112 @@
+/*******************************************************************************
+*
+* Pentaho Big Data
+*
+* Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+
+package org.pentaho.hadoop.mapreduce.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.Reporter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.pentaho.hadoop.mapreduce.PentahoMapRunnable;
+
+import static org.pentaho.hadoop.shim.api.Configuration.STRING_MAP_INJECTION_BATCH_SIZE;
+import static org.pentaho.hadoop.shim.api.Configuration.STRING_MAP_SINGLE_THREADED;
+
+/**
+ * Measures {@link PentahoMapRunnable#run} over in-memory text input. One operation is one input record: throughput is
+ * reported in records per second and average time as latency per record. Run with {@code -prof gc} for the allocation
+ * rate.
+ * <p>
+ * {@code mr-passthrough.ktr} uses the Hadoop Enter/Exit steps of the Big Data plugin, which must then be available
+ * from the Kettle plugin folders ({@code -p transformation=mr-passthrough.ktr}).
+ */
+@State(Scope.Benchmark)
+public class MapperBenchmark {
+  private static final int RECORDS = 100000;
+
+  @Param({ "wordcount-mapper.ktr" })
+  public String transformation;
+
+  @Param({ "false", "true" })
+  public boolean singleThreaded;
+
+  @Param({ "0", "1000" })
+  public int injectionBatchSize;
+
+  private PentahoMapRunnable<LongWritable, Text, Text, LongWritable> mapper;
+
+  private InMemoryRecordReader reader;
+
+  @Setup
+  public void setup() throws Exception {
+    JobConf job = BenchmarkSupport.createJobConf("map", transformation, "Injector", "Output");
+    job.setMapOutputKeyClass(Text.class);
+    job.setMapOutputValueClass(LongWritable.class);
+    job.set(STRING_MAP_SINGLE_THREADED, Boolean.toString(singleThreaded));
+    job.setInt(STRING_MAP_INJECTION_BATCH_SIZE, injectionBatchSize);
+
+    mapper = new PentahoMapRunnable<LongWritable, Text, Text, LongWritable>();
+    mapper.configure(job);
+
+    Text[] lines = new Text[RECORDS];
+    for (int i = 0; i < RECORDS; i++) {
+      lines[i] = new Text("the quick brown fox jumps over the lazy dog " + (i % 1000));
+    }
+    reader = new InMemoryRecordReader(lines);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OperationsPerInvocation(RECORDS)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public long recordsPerSecond(Blackhole blackhole) throws Exception {
+    return run(blackhole);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OperationsPerInvocation(RECORDS)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public long nanosPerRecord(Blackhole blackhole) throws Exception {
+    return run(blackhole);
+  }
+
+  private long run(Blackhole blackhole) throws Exception {
+    CountingOutputCollector<Text, LongWritable> output = new CountingOutputCollector<Text, LongWritable>(blackhole);
+    reader.rewind();
+    mapper.run(reader, output, Reporter.NULL);
+    return output.getCount();
+  }
+}
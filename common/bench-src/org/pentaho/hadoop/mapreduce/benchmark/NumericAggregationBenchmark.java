@@ -0,0 +1,155 @@
+/*******************************************************************************
+*
+* Pentaho Big Data
+*
+* Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+
+
+package org.pentaho.hadoop.mapreduce.benchmark;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.Reporter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.pentaho.hadoop.mapreduce.GenericTransReduce;
+import org.pentaho.hadoop.mapreduce.converter.BoxedValueCache;
+
+import static org.pentaho.hadoop.shim.api.Configuration.STRING_REDUCE_STREAMING;
+
+/**
+ * Measures a numeric aggregation job: {@link GenericTransReduce} summing word count like values per key. The values are
+ * converted to {@link Long} by the numeric type converters, which box through {@link BoxedValueCache}. One operation is
+ * one input value: throughput is reported in records per second and average time as latency per record. Run with
+ * {@code -prof gc} for the allocation rate. {@link NumericBoxingBenchmark} compares the boxing on its own.
+ */
+@State(Scope.Benchmark)
+public class NumericAggregationBenchmark {
+  private static final int KEYS = 1000;
+
+  private static final int VALUES_PER_KEY = 20;
+
+  @Param({ "wordcount-reducer.ktr" })
+  public String transformation;
+
+  /**
+   * Writable type of the values, each one is converted to {@link Long} by a different converter
+   */
+  @Param({ "IntWritable", "LongWritable", "DoubleWritable" })
+  public String valueClass;
+
+  /**
+   * {@code default} recreates the transformation for every key, {@code streaming} keeps one transformation for the
+   * whole task.
+   */
+  @Param({ "default", "streaming" })
+  public String mode;
+
+  private JobConf job;
+
+  private GenericTransReduce<Text, Iterator<Writable>, Text, LongWritable> reducer;
+
+  private Text[] keys;
+
+  private Writable[][] values;
+
+  @Setup
+  public void setup() throws Exception {
+    job = BenchmarkSupport.createJobConf("reduce", transformation, "Injector", "Output");
+    job.setOutputKeyClass(Text.class);
+    job.setOutputValueClass(LongWritable.class);
+    job.set(STRING_REDUCE_STREAMING, Boolean.toString("streaming".equals(mode)));
+
+    // Word count like distribution: mostly small counts with the occasional large one
+    keys = new Text[KEYS];
+    values = new Writable[KEYS][VALUES_PER_KEY];
+    int record = 0;
+    for (int i = 0; i < KEYS; i++) {
+      keys[i] = new Text(String.format("word%06d", i));
+      for (int j = 0; j < VALUES_PER_KEY; j++, record++) {
+        values[i][j] = createValue(record % 100 == 0 ? 100000 + record : record % 50);
+      }
+    }
+  }
+
+  private Writable createValue(int value) {
+    if ("IntWritable".equals(valueClass)) {
+      return new IntWritable(value);
+    } else if ("LongWritable".equals(valueClass)) {
+      return new LongWritable(value);
+    } else if ("DoubleWritable".equals(valueClass)) {
+      return new DoubleWritable(value);
+    }
+    throw new IllegalArgumentException("Unsupported value class: " + valueClass);
+  }
+
+  /**
+   * A task's reducer is configured once and closed after the last key, start every invocation with a fresh one.
+   */
+  @Setup(Level.Invocation)
+  public void configure() throws Exception {
+    reducer = new GenericTransReduce<Text, Iterator<Writable>, Text, LongWritable>();
+    reducer.configure(job);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OperationsPerInvocation(KEYS * VALUES_PER_KEY)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public long recordsPerSecond(Blackhole blackhole) throws Exception {
+    return run(blackhole);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OperationsPerInvocation(KEYS * VALUES_PER_KEY)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public long nanosPerRecord(Blackhole blackhole) throws Exception {
+    return run(blackhole);
+  }
+
+  @SuppressWarnings( { "unchecked", "rawtypes" })
+  private long run(Blackhole blackhole) throws Exception {
+    CountingOutputCollector<Text, LongWritable> output = new CountingOutputCollector<Text, LongWritable>(blackhole);
+    GenericTransReduce rawReducer = reducer;
+    for (int i = 0; i < KEYS; i++) {
+      rawReducer.reduce(keys[i], Arrays.asList(values[i]).iterator(), output, Reporter.NULL);
+    }
+    reducer.close();
+    return output.getCount();
+  }
+}
@@ -0,0 +1,152 @@
+/*******************************************************************************
+*
+* Pentaho Big Data
+*
+* Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+
+package org.pentaho.hadoop.mapreduce.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Writable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.hadoop.mapreduce.converter.BoxedValueCache;
+import org.pentaho.hadoop.mapreduce.converter.TypeConversionException;
+import org.pentaho.hadoop.mapreduce.converter.converters.DoubleWritableToDoubleConverter;
+import org.pentaho.hadoop.mapreduce.converter.converters.IntWritableToLongConverter;
+import org.pentaho.hadoop.mapreduce.converter.converters.LongWritableToLongConverter;
+import org.pentaho.hadoop.mapreduce.converter.spi.ITypeConverter;
+
+/**
+ * Compares the boxing of the numeric type converters through {@link BoxedValueCache} with plain {@link Long#valueOf}
+ * and {@link Double#valueOf}, which only share the values -128..127 of {@link Long}. One operation is one converted
+ * value. Run with {@code -prof gc} for the allocation rate, which is what the cache is meant to reduce.
+ */
+@State(Scope.Benchmark)
+public class NumericBoxingBenchmark {
+  private static final int VALUES = 10000;
+
+  /**
+   * {@code cache} uses the converters as shipped, {@code valueOf} the same conversions boxing with the JDK methods
+   */
+  @Param({ "cache", "valueOf" })
+  public String boxing;
+
+  @Param({ "IntWritable", "LongWritable", "DoubleWritable" })
+  public String valueClass;
+
+  /**
+   * The values are drawn from 0 up to this bound, the cache covers up to {@link BoxedValueCache#HIGH}
+   */
+  @Param({ "100", "1000", "1000000" })
+  public int maxValue;
+
+  private ITypeConverter<Writable, Object> converter;
+
+  private Writable[] values;
+
+  @Setup
+  @SuppressWarnings("unchecked")
+  public void setup() {
+    Random random = new Random(42);
+    values = new Writable[VALUES];
+    for (int i = 0; i < VALUES; i++) {
+      values[i] = createValue(random.nextInt(maxValue));
+    }
+
+    ITypeConverter<?, ?> selected;
+    if ("cache".equals(boxing)) {
+      selected = cachingConverter();
+    } else if ("valueOf".equals(boxing)) {
+      selected = valueOfConverter();
+    } else {
+      throw new IllegalArgumentException("Unsupported boxing: " + boxing);
+    }
+    converter = (ITypeConverter<Writable, Object>) selected;
+  }
+
+  private Writable createValue(int value) {
+    if ("IntWritable".equals(valueClass)) {
+      return new IntWritable(value);
+    } else if ("LongWritable".equals(valueClass)) {
+      return new LongWritable(value);
+    } else if ("DoubleWritable".equals(valueClass)) {
+      return new DoubleWritable(value);
+    }
+    throw new IllegalArgumentException("Unsupported value class: " + valueClass);
+  }
+
+  private ITypeConverter<?, ?> cachingConverter() {
+    if ("IntWritable".equals(valueClass)) {
+      return new IntWritableToLongConverter();
+    } else if ("LongWritable".equals(valueClass)) {
+      return new LongWritableToLongConverter();
+    }
+    return new DoubleWritableToDoubleConverter();
+  }
+
+  private ITypeConverter<?, ?> valueOfConverter() {
+    if ("IntWritable".equals(valueClass)) {
+      return new IntWritableToLongConverter() {
+        @Override
+        public Long convert(ValueMetaInterface meta, IntWritable obj) throws TypeConversionException {
+          return Long.valueOf(obj.get());
+        }
+      };
+    } else if ("LongWritable".equals(valueClass)) {
+      return new LongWritableToLongConverter() {
+        @Override
+        public Long convert(ValueMetaInterface meta, LongWritable obj) throws TypeConversionException {
+          return Long.valueOf(obj.get());
+        }
+      };
+    }
+    return new DoubleWritableToDoubleConverter() {
+      @Override
+      public Double convert(ValueMetaInterface meta, DoubleWritable obj) throws TypeConversionException {
+        return Double.valueOf(obj.get());
+      }
+    };
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OperationsPerInvocation(VALUES)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public void nanosPerValue(Blackhole blackhole) throws Exception {
+    for (Writable value : values) {
+      blackhole.consume(converter.convert(null, value));
+    }
+  }
+}
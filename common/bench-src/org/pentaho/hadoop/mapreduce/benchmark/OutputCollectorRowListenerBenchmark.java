@@ -0,0 +1,106 @@
+/*******************************************************************************
+*
+* Pentaho Big Data
+*
+* Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+
+package org.pentaho.hadoop.mapreduce.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.Reporter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMeta;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.hadoop.mapreduce.OutputCollectorRowListener;
+
+/**
+ * Measures the conversion of transformation output rows into Writables by {@link OutputCollectorRowListener}, without
+ * a transformation in front of it. One operation is one row. Run with {@code -prof gc} to compare the allocation rate
+ * with and without output object reuse.
+ */
+@State(Scope.Benchmark)
+public class OutputCollectorRowListenerBenchmark {
+  private static final int ROWS = 10000;
+
+  @Param({ "false", "true" })
+  public boolean reuseOutputObjects;
+
+  private RowMetaInterface rowMeta;
+
+  private Object[][] rows;
+
+  private CountingOutputCollector<Text, LongWritable> output;
+
+  private OutputCollectorRowListener<Text, LongWritable> listener;
+
+  @Setup
+  public void setup() {
+    rowMeta = new RowMeta();
+    rowMeta.addValueMeta(new ValueMeta("outKey", ValueMetaInterface.TYPE_STRING));
+    rowMeta.addValueMeta(new ValueMeta("outValue", ValueMetaInterface.TYPE_INTEGER));
+
+    rows = new Object[ROWS][];
+    for (int i = 0; i < ROWS; i++) {
+      rows[i] = new Object[] { String.format("word%06d", i % 1000), Long.valueOf(i) };
+    }
+
+    output = new CountingOutputCollector<Text, LongWritable>(null);
+    listener = new OutputCollectorRowListener<Text, LongWritable>(output, Text.class, LongWritable.class,
+        Reporter.NULL, false, reuseOutputObjects);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OperationsPerInvocation(ROWS)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public long rowsPerSecond(Blackhole blackhole) throws Exception {
+    return run(blackhole);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OperationsPerInvocation(ROWS)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public long nanosPerRow(Blackhole blackhole) throws Exception {
+    return run(blackhole);
+  }
+
+  private long run(Blackhole blackhole) throws Exception {
+    output.reset(blackhole);
+    for (Object[] row : rows) {
+      listener.rowWrittenEvent(rowMeta, row);
+    }
+    return output.getCount();
+  }
+}
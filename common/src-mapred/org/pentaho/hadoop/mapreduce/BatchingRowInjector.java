@@ -0,0 +1,141 @@
+/*******************************************************************************
+*
+* Pentaho Big Data
+*
+* Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+
+package org.pentaho.hadoop.mapreduce;
+
+import org.apache.hadoop.mapred.Reporter;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.trans.RowProducer;
+import org.pentaho.hadoop.mapreduce.PentahoMapRunnable.Counter;
+
+/**
+ * Collects converted input rows into a fixed size block and hands the block to a {@link RowProducer} in one go. This
+ * keeps record reading and type conversion in a tight loop and isolates the (potentially blocking) hand off to the
+ * injector step so the time spent waiting on the transformation can be measured.<p>
+ * The row producer has no bulk put, so every row is still put into the injector's row set on its own: batching groups
+ * the hand offs (and the counter updates) but doesn't reduce their number, and it delays the first rows of a block
+ * until the block is full.<p>
+ * The block itself is reused between flushes. The row arrays are not: once a row has been put into the
+ * transformation a downstream step may hold on to it (e.g. Sort rows, Group by) so it must never be written to again.
+ */
+public class BatchingRowInjector {
+
+  private final RowProducer rowProducer;
+
+  private final RowMetaInterface rowMeta;
+
+  private final Object[][] batch;
+
+  private int fill;
+
+  private long batches;
+
+  private long rows;
+
+  private long stallNanos;
+
+  /**
+   * @param rowProducer Producer to inject rows with
+   * @param rowMeta Row meta describing every row injected
+   * @param batchSize Number of rows to collect before handing them to {@code rowProducer}
+   */
+  public BatchingRowInjector(RowProducer rowProducer, RowMetaInterface rowMeta, int batchSize) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("batchSize must be greater than zero: " + batchSize); //$NON-NLS-1$
+    }
+    this.rowProducer = rowProducer;
+    this.rowMeta = rowMeta;
+    this.batch = new Object[batchSize][];
+  }
+
+  /**
+   * Add a row to the current block, flushing the block to the row producer when it is full.
+   * 
+   * @param row Row to inject
+   * @return {@code true} if adding this row caused the block to be handed to the row producer
+   */
+  public boolean addRow(Object[] row) {
+    batch[fill++] = row;
+    if (fill == batch.length) {
+      flush();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Hand all rows collected so far to the row producer, one {@link RowProducer#putRow} call per row.
+   */
+  public void flush() {
+    if (fill == 0) {
+      return;
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < fill; i++) {
+      rowProducer.putRow(rowMeta, batch[i]);
+      // Don't keep the row reachable from here once the transformation owns it
+      batch[i] = null;
+    }
+    stallNanos += System.nanoTime() - start;
+    batches++;
+    rows += fill;
+    fill = 0;
+  }
+
+  /**
+   * Flush any remaining rows and signal the row producer no more rows will be injected.
+   */
+  public void finished() {
+    flush();
+    rowProducer.finished();
+  }
+
+  /**
+   * Report the batching statistics as counters. The batch fill ratio is
+   * {@link Counter#INJECTION_BATCH_ROWS} / {@link Counter#INJECTION_BATCH_CAPACITY}.
+   * 
+   * @param reporter Reporter to increment counters with
+   */
+  public void reportCounters(Reporter reporter) {
+    reporter.incrCounter(Counter.INJECTION_BATCHES, batches);
+    reporter.incrCounter(Counter.INJECTION_BATCH_ROWS, rows);
+    reporter.incrCounter(Counter.INJECTION_BATCH_CAPACITY, batches * batch.length);
+    reporter.incrCounter(Counter.INJECTION_STALL_MILLIS, stallNanos / 1000000L);
+  }
+
+  public int getBatchSize() {
+    return batch.length;
+  }
+
+  public long getBatches() {
+    return batches;
+  }
+
+  public long getRows() {
+    return rows;
+  }
+
+  public long getStallNanos() {
+    return stallNanos;
+  }
+}
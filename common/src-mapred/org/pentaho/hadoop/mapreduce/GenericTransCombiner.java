@@ -42,6 +42,19 @@ public class GenericTransCombiner<K extends WritableComparable<?>, V extends Ite
     return combineSingleThreaded;
   }
 
+  @Override
+  public boolean isStreaming() {
+    return combineStreaming && !isSingleThreaded();
+  }
+
+  /**
+   * The combiner output is serialized into the map output buffer right away, the output Writables can always be reused.
+   */
+  @Override
+  public boolean isReuseOutputWritables() {
+    return true;
+  }
+
   @Override
   public String getInputStepName() {
     return combinerInputStepName;
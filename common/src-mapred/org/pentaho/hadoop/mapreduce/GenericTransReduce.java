@@ -49,6 +49,13 @@ import org.pentaho.hadoop.mapreduce.converter.spi.ITypeConverter;
 
 /**
  * A reducer class that just emits the sum of the input values.
+ * <p>
+ * By default the (multi threaded) transformation is prepared, started and disposed of for every key. When
+ * {@code transformation-reduce-streaming} is set to {@code true} the transformation is started once per task, all key
+ * groups are streamed through it and it is only finished in {@link #close()}. Hadoop hands the key groups over sorted,
+ * so steps working on the key field keep seeing one contiguous group per key. If the injector step defines a field
+ * named {@value #GROUP_START_FIELD_NAME} it is set to {@code true} on the first row of every key group and to
+ * {@code false} on all others.
  */
 @SuppressWarnings("deprecation")
 public class GenericTransReduce<K extends WritableComparable<?>, V extends Iterator<Writable>, K2, V2> extends PentahoMapReduceBase<K2, V2> implements
@@ -62,6 +69,17 @@ public class GenericTransReduce<K extends WritableComparable<?>, V extends Itera
   protected ITypeConverter inConverterV = null;
   protected RowMetaInterface injectorRowMeta;
   protected SingleThreadedTransExecutor executor;
+
+  /**
+   * Name of the optional injector field marking the first row of a key group in streaming mode.
+   */
+  public static final String GROUP_START_FIELD_NAME = "groupStart";
+
+  // ordinal of the group start marker field in the injector row, -1 if the field is not defined or not streaming
+  protected int groupStartOrdinal = -1;
+
+  // reporter of the task, kept to finish a streaming transformation in close()
+  protected Reporter streamingReporter;
   
   public GenericTransReduce() throws KettleException {
       super();
@@ -73,6 +91,20 @@ public class GenericTransReduce<K extends WritableComparable<?>, V extends Itera
     return reduceSingleThreaded;
   }
   
+  /**
+   * @return {@code true} if the multi threaded transformation should be started once and process all key groups
+   */
+  public boolean isStreaming() {
+    return reduceStreaming && !isSingleThreaded();
+  }
+
+  /**
+   * @return {@code true} if the same output key and value instances may be passed to the output collector for every row
+   */
+  public boolean isReuseOutputWritables() {
+    return reduceReuseOutputWritables;
+  }
+
   public String getInputStepName() {
     return reduceInputStepName;
   }
@@ -132,6 +164,31 @@ public class GenericTransReduce<K extends WritableComparable<?>, V extends Itera
         //
         executor.oneIteration();
 
+      } else if (isStreaming()) {
+
+        // Only prepare and start the transformation for the first key group, it's finished in close()
+        //
+        if (streamingReporter == null) {
+          KettleLogStore.discardLines(trans.getLogChannelId(), true);
+
+          trans = MRUtil.recreateTrans(trans);
+
+          shareVariableSpaceWithTrans(reporter);
+          setTransLogLevel(reporter);
+          prepareExecution(reporter);
+          addInjectorAndProducerToTrans(key, values, output, reporter, getInputStepName(), getOutputStepName());
+          streamingReporter = reporter;
+        }
+
+        // Inject this key group, the transformation keeps running in the background
+        //
+        injectValues(key, values, output, reporter);
+
+        if (getException() != null) {
+          setDebugStatus(reporter, "An exception was generated by the transformation");
+          throw getException();
+        }
+
       } else {
         
         // Clean up old logging
@@ -159,20 +216,7 @@ public class GenericTransReduce<K extends WritableComparable<?>, V extends Itera
         }
       }
 
-      if (trans.getErrors() > 0) {
-        setDebugStatus(reporter, "Errors detected in reducer/combiner transformation");
-        
-        List<KettleLoggingEvent> logList = KettleLogStore.getLogBufferFromTo(trans.getLogChannelId(), false, 0, KettleLogStore.getLastBufferLineNr());
-
-        StringBuffer buff = new StringBuffer();
-        for (KettleLoggingEvent le : logList) {
-          if (le.getLevel() == LogLevel.ERROR) {
-            buff.append(le.getMessage().toString()).append("\n");
-          }
-        }
-        throw new Exception("Errors were detected for reducer/combiner transformation:\n\n" 
-            + buff.toString());
-      }
+      checkForErrors(reporter);
 
     } catch (Exception e) {
       printException(reporter, e);
@@ -182,6 +226,50 @@ public class GenericTransReduce<K extends WritableComparable<?>, V extends Itera
     if (debug) reporter.setStatus("Completed processing record");
   }
 
+  private void checkForErrors(Reporter reporter) throws Exception {
+    if (trans.getErrors() > 0) {
+      setDebugStatus(reporter, "Errors detected in reducer/combiner transformation");
+      
+      List<KettleLoggingEvent> logList = KettleLogStore.getLogBufferFromTo(trans.getLogChannelId(), false, 0, KettleLogStore.getLastBufferLineNr());
+
+      StringBuffer buff = new StringBuffer();
+      for (KettleLoggingEvent le : logList) {
+        if (le.getLevel() == LogLevel.ERROR) {
+          buff.append(le.getMessage().toString()).append("\n");
+        }
+      }
+      throw new Exception("Errors were detected for reducer/combiner transformation:\n\n" 
+          + buff.toString());
+    }
+  }
+
+  /**
+   * Signal the end of the input to a streaming transformation, wait for it to process all key groups and dispose of it.
+   */
+  private void finishStreaming() throws IOException {
+    Reporter reporter = streamingReporter;
+    streamingReporter = null;
+    try {
+      try {
+        if (rowProducer != null) {
+          rowProducer.finished();
+        }
+        trans.waitUntilFinished();
+        setDebugStatus(reporter, "Transformation has finished");
+      } finally {
+        disposeTransformation();
+      }
+
+      if (getException() != null) {
+        setDebugStatus(reporter, "An exception was generated by the transformation");
+        throw getException();
+      }
+      checkForErrors(reporter);
+    } catch (Exception e) {
+      printException(reporter, e);
+    }
+  }
+
   private void printException(Reporter reporter, Exception e) throws IOException {
     e.printStackTrace(System.err);
     setDebugStatus(reporter, "An exception was raised");
@@ -207,29 +295,40 @@ public class GenericTransReduce<K extends WritableComparable<?>, V extends Itera
       // Execute row injection
       // We loop through the values to do this
 
+      boolean groupStart = true;
       if (value != null) {
-        if(inOrdinals != null) {
-          injectValue(key, inOrdinals.getKeyOrdinal(), inConverterK, value, inOrdinals.getValueOrdinal(), inConverterV, injectorRowMeta, rowProducer, reporter);
-        } else {
-          injectValue(key, inConverterK, value, inConverterV, injectorRowMeta, rowProducer, reporter);
-        }
+        injectValue(key, value, groupStart, reporter);
+        groupStart = false;
       }
 
       while (values.hasNext()) {
         value = values.next();
         
-        if(inOrdinals != null) {
-          injectValue(key, inOrdinals.getKeyOrdinal(), inConverterK, value, inOrdinals.getValueOrdinal(), inConverterV, injectorRowMeta, rowProducer, reporter);
-        } else {
-          injectValue(key, inConverterK, value, inConverterV, injectorRowMeta, rowProducer, reporter);
-        }
+        injectValue(key, value, groupStart, reporter);
+        groupStart = false;
       }
       
       // make sure we don't pick up a bogus row next time this method is called without rows.
       //
       value = null; 
       
-      rowProducer.finished();
+      // A streaming transformation receives more key groups, it's only finished in close()
+      //
+      if (!isStreaming()) {
+        rowProducer.finished();
+      }
+    }
+  }
+
+  private void injectValue(final K key, final Object value, boolean groupStart, final Reporter reporter) throws Exception {
+    if (groupStartOrdinal >= 0) {
+      Object[] row = createInjectorRow(key, inOrdinals.getKeyOrdinal(), inConverterK, value, inOrdinals.getValueOrdinal(), inConverterV, injectorRowMeta, reporter);
+      row[groupStartOrdinal] = Boolean.valueOf(groupStart);
+      rowProducer.putRow(injectorRowMeta, row);
+    } else if(inOrdinals != null) {
+      injectValue(key, inOrdinals.getKeyOrdinal(), inConverterK, value, inOrdinals.getValueOrdinal(), inConverterV, injectorRowMeta, rowProducer, reporter);
+    } else {
+      injectValue(key, inConverterK, value, inConverterV, injectorRowMeta, rowProducer, reporter);
     }
   }
 
@@ -287,7 +386,7 @@ public class GenericTransReduce<K extends WritableComparable<?>, V extends Itera
     setDebugStatus(reporter, "Locating output step: " + outputStepName);
     StepInterface outputStep = trans.findRunThread(outputStepName);
     if (outputStep != null) {
-      rowCollector = new OutputCollectorRowListener(output, outClassK, outClassV, reporter, debug);
+      rowCollector = new OutputCollectorRowListener(output, outClassK, outClassV, reporter, debug, isReuseOutputWritables());
       outputStep.addRowListener(rowCollector);
 
       injectorRowMeta = new RowMeta();
@@ -310,6 +409,8 @@ public class GenericTransReduce<K extends WritableComparable<?>, V extends Itera
           if(inOrdinals.getKeyOrdinal() < 0 || inOrdinals.getValueOrdinal() < 0) {
             throw new KettleException("key or value is not defined in transformation injector step");
           }
+
+          groupStartOrdinal = isStreaming() ? injectorRowMeta.indexOfValue(GROUP_START_FIELD_NAME) : -1;
           
           // Get a converter for the Key if the value meta has a concrete Java class we can use.
           // If no converter can be found here we wont do any type conversion.
@@ -353,6 +454,15 @@ public class GenericTransReduce<K extends WritableComparable<?>, V extends Itera
   
   @Override
   public void close() throws IOException {
+
+    // Finish the streaming transformation, if it has been started
+    if (streamingReporter != null) {
+      try {
+        finishStreaming();
+      } finally {
+        KettleLogStore.discardLines(trans.getLogChannelId(), true);
+      }
+    }
     
     // Stop the executor if any is defined...
     if (isSingleThreaded() && executor!=null) {
@@ -27,6 +27,10 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.sql.Date;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import org.apache.commons.lang.StringUtils;
@@ -61,11 +65,49 @@ public class MRUtil {
    * Hadoop Configuration for setting KETTLE_HOME. See {@link Const.getKettleDirectory()} for usage.
    */
   public static final String PROPERTY_PENTAHO_KETTLE_HOME = "pentaho.kettle.home";
-  
+
+  /**
+   * Maximum number of parsed transformations kept per JVM (map, combine and reduce transformations of one job).
+   */
+  private static final int MAX_CACHED_TRANS_CONFIGURATIONS = 3;
+
+  /**
+   * Parsed transformation configurations keyed by their XML and whether they are run single threaded. Only used when a
+   * caller asks for the parsed transformation to be reused, e.g. when task JVMs are reused. {@link #getTrans} sets the
+   * engine of the shared {@link TransMeta}, so single threaded and normal callers of the same XML don't share one.
+   */
+  private static final Map<List<Object>, TransConfiguration> transConfigurationCache = new LinkedHashMap<List<Object>, TransConfiguration>(
+      MAX_CACHED_TRANS_CONFIGURATIONS + 1, 0.75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<List<Object>, TransConfiguration> eldest) {
+      return size() > MAX_CACHED_TRANS_CONFIGURATIONS;
+    }
+  };
+
   public static Trans getTrans(final Configuration conf, final String transXml, boolean singleThreaded) throws KettleException {
+    return getTrans(conf, transXml, singleThreaded, false);
+  }
+
+  /**
+   * Create a transformation from its XML representation.
+   * 
+   * @param conf Configuration to initialize the Kettle environment with
+   * @param transXml Transformation configuration XML
+   * @param singleThreaded Should the transformation be executed with the single threaded engine?
+   * @param reuseTransMeta If {@code true} the parsed transformation is kept for the lifetime of this JVM and
+   *          subsequent calls with the same XML and {@code singleThreaded} will share its {@link TransMeta} instead of
+   *          parsing it again.
+   * @return A new transformation ready to be prepared for execution
+   * @throws KettleException Error parsing the transformation
+   */
+  public static Trans getTrans(final Configuration conf, final String transXml, boolean singleThreaded,
+      boolean reuseTransMeta) throws KettleException {
     initKettleEnvironment(conf);
 
-    TransConfiguration transConfiguration = TransConfiguration.fromXML(transXml);
+    TransConfiguration transConfiguration = reuseTransMeta ? getCachedTransConfiguration(transXml, singleThreaded)
+        : TransConfiguration.fromXML(transXml);
     TransMeta transMeta = transConfiguration.getTransMeta();
     String carteObjectId = UUID.randomUUID().toString();
     SimpleLoggingObject servletLoggingObject = new SimpleLoggingObject("HADOOP_MAPPER", LoggingObjectType.CARTE, null); //$NON-NLS-1$
@@ -89,6 +131,19 @@ public class MRUtil {
     return new Trans(transMeta, servletLoggingObject);
   }
 
+  private static TransConfiguration getCachedTransConfiguration(final String transXml, boolean singleThreaded)
+    throws KettleException {
+    List<Object> key = Arrays.<Object> asList(transXml, Boolean.valueOf(singleThreaded));
+    synchronized (transConfigurationCache) {
+      TransConfiguration transConfiguration = transConfigurationCache.get(key);
+      if (transConfiguration == null) {
+        transConfiguration = TransConfiguration.fromXML(transXml);
+        transConfigurationCache.put(key, transConfiguration);
+      }
+      return transConfiguration;
+    }
+  }
+
   /**
    * Initialize the Kettle environment with settings from the provided configuration
    * 
@@ -27,9 +27,12 @@ import org.apache.hadoop.mapred.Reporter;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleStepException;
 import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.trans.step.RowAdapter;
 import org.pentaho.hadoop.mapreduce.PentahoMapRunnable.Counter;
+import org.pentaho.hadoop.mapreduce.converter.TypeConversionException;
 import org.pentaho.hadoop.mapreduce.converter.TypeConverterFactory;
+import org.pentaho.hadoop.mapreduce.converter.spi.IReusableTypeConverter;
 import org.pentaho.hadoop.mapreduce.converter.spi.ITypeConverter;
 
 /**
@@ -47,21 +50,80 @@ public class OutputCollectorRowListener<K, V> extends RowAdapter {
 
   private OutputCollector<K, V> output;
 
+  private boolean reuseOutputObjects;
+
   private Exception exception;
   
   private OutKeyValueOrdinals outOrdinals;
   
   private TypeConverterFactory typeConverterFactory;
 
+  private FieldConversion keyConversion;
+
+  private FieldConversion valueConversion;
+
+  /**
+   * Converter for one output field. The converter is resolved for the runtime class of the first value seen and only
+   * looked up again when a value of a different class is written. If output objects may be reused and the converter
+   * supports it, every value is converted into the same instance.
+   */
+  private class FieldConversion {
+    private final Class<?> to;
+
+    private boolean resolved;
+
+    private Class<?> from;
+
+    private ITypeConverter converter;
+
+    private Object reusable;
+
+    private FieldConversion(Class<?> to) {
+      this.to = to;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object convert(ValueMetaInterface meta, Object value) throws TypeConversionException {
+      ITypeConverter converter = getConverter(value);
+      if (reuseOutputObjects && converter instanceof IReusableTypeConverter) {
+        reusable = ((IReusableTypeConverter) converter).convertInto(meta, value, reusable);
+        return reusable;
+      }
+      return converter.convert(meta, value);
+    }
+
+    private ITypeConverter getConverter(Object value) throws TypeConversionException {
+      Class<?> valueClass = value == null ? null : value.getClass();
+      if (!resolved || valueClass != from) {
+        converter = typeConverterFactory.getConverter(valueClass, to);
+        from = valueClass;
+        resolved = true;
+      }
+      return converter;
+    }
+  }
+
   public OutputCollectorRowListener(OutputCollector<K, V> output, Class<K> outClassK, Class<V> outClassV,
       Reporter reporter, boolean debug) {
+    this(output, outClassK, outClassV, reporter, debug, false);
+  }
+
+  /**
+   * @param reuseOutputObjects If {@code true} the same key and value instances are passed to {@code output} for every
+   *          row. Only use this if the output collector serializes or copies the objects before returning.
+   */
+  public OutputCollectorRowListener(OutputCollector<K, V> output, Class<K> outClassK, Class<V> outClassV,
+      Reporter reporter, boolean debug, boolean reuseOutputObjects) {
     this.output = output;
+    this.reuseOutputObjects = reuseOutputObjects;
     this.outClassK = outClassK;
     this.outClassV = outClassV;
     this.reporter = reporter;
     this.debug = debug;
 
     this.typeConverterFactory = new TypeConverterFactory();
+    this.keyConversion = new FieldConversion(outClassK);
+    this.valueConversion = new FieldConversion(outClassV);
     
     outOrdinals = null;
   }
@@ -83,40 +145,29 @@ public class OutputCollectorRowListener<K, V> extends RowAdapter {
           }
         }
 
-        // TODO Implement type safe converters
-        
+        int keyOrdinal = outOrdinals.getKeyOrdinal();
+        int valueOrdinal = outOrdinals.getValueOrdinal();
+        Object key = row[keyOrdinal];
+        Object value = row[valueOrdinal];
+
+        if (debug) {
+          setDebugStatus(reporter, "Begin conversion of output key [from:" + (key == null ? null : key.getClass()) //$NON-NLS-1$
+              + "] [to:" + outClassK + "]"); //$NON-NLS-1$ //$NON-NLS-2$
+          setDebugStatus(reporter, "ordinals key: " + keyOrdinal); //$NON-NLS-1$
+          setDebugStatus(reporter, "rowMeta: " + rowMeta.getMetaXML()); //$NON-NLS-1$
+          setDebugStatus(reporter, "meta: " + rowMeta.getValueMeta(keyOrdinal)); //$NON-NLS-1$
+          setDebugStatus(reporter, "key: " + key); //$NON-NLS-1$
+        }
+        Object outKey = keyConversion.convert(rowMeta.getValueMeta(keyOrdinal), key);
+
         if (debug) {
-          setDebugStatus( reporter,
-            "Begin conversion of output key [from:" + (row[outOrdinals.getKeyOrdinal()] == null ? null : row[outOrdinals.getKeyOrdinal()].getClass()) + "] [to:" + outClassK + "]"); //$NON-NLS-1$ //$NON-NLS-2$
+          setDebugStatus(reporter, "Begin conversion of output value [from:" + (value == null ? null : value.getClass()) //$NON-NLS-1$
+              + "] [to:" + outClassV + "]"); //$NON-NLS-1$ //$NON-NLS-2$
+          setDebugStatus(reporter, "ordinals value: " + valueOrdinal); //$NON-NLS-1$
+          setDebugStatus(reporter, "meta: " + rowMeta.getValueMeta(valueOrdinal)); //$NON-NLS-1$
+          setDebugStatus(reporter, "value: " + value); //$NON-NLS-1$
         }
-        setDebugStatus(reporter, "getConverter: " + (row[outOrdinals.getKeyOrdinal()] == null ? null : row[outOrdinals.getKeyOrdinal()].getClass()));
-        setDebugStatus(reporter, "out class: " + outClassK);
-
-        ITypeConverter converter = typeConverterFactory
-            .getConverter(
-                row[outOrdinals.getKeyOrdinal()] == null ? null : row[outOrdinals.getKeyOrdinal()].getClass(),
-                outClassK);
-        setDebugStatus(reporter, "ordinals key: " + outOrdinals.getKeyOrdinal());
-        setDebugStatus(reporter, "rowMeta: " + rowMeta);
-        setDebugStatus(reporter, "rowMeta: " + rowMeta.getMetaXML());
-        setDebugStatus(reporter, "meta: " + rowMeta.getValueMeta(outOrdinals.getKeyOrdinal()));
-        setDebugStatus(reporter, "key: " + row[outOrdinals.getKeyOrdinal()]);
-        Object outKey = converter.convert(rowMeta.getValueMeta(outOrdinals.getKeyOrdinal()), row[outOrdinals.getKeyOrdinal()]);
-
-       if (debug) {
-         setDebugStatus(reporter,
-            "Begin conversion of output value [from:" + (row[outOrdinals.getValueOrdinal()] == null ? null //$NON-NLS-1$
-                : row[outOrdinals.getValueOrdinal()].getClass()) + "] [to:" + outClassV + "]")  ; //$NON-NLS-1$ //$NON-NLS-2$
-       }
-        ITypeConverter valueConverter = typeConverterFactory.getConverter(
-            row[outOrdinals.getValueOrdinal()] == null ? null : row[outOrdinals.getValueOrdinal()].getClass(),
-            outClassV);
-        setDebugStatus(reporter, "ordinals value: " + outOrdinals.getValueOrdinal());
-        setDebugStatus(reporter, "rowMeta: " + rowMeta);
-        setDebugStatus(reporter, "rowMeta: " + rowMeta.getMetaXML());
-        setDebugStatus(reporter, "meta: " + rowMeta.getValueMeta(outOrdinals.getValueOrdinal()));
-        setDebugStatus(reporter, "value: " + row[outOrdinals.getValueOrdinal()]);
-        Object outVal = valueConverter.convert(rowMeta.getValueMeta(outOrdinals.getValueOrdinal()), row[outOrdinals.getValueOrdinal()]);
+        Object outVal = valueConversion.convert(rowMeta.getValueMeta(valueOrdinal), value);
 
         if (outKey != null && outVal != null) {
           if (debug) setDebugStatus(reporter, "Collecting output record [" + outKey + "] - [" + outVal + "]"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
@@ -152,7 +203,7 @@ public class OutputCollectorRowListener<K, V> extends RowAdapter {
         }
       }
     } catch (Exception ex) {
-      setDebugStatus(reporter, "Unexpected exception recieved: " + ex.getMessage()); //$NON-NLS-1$
+      if (debug) setDebugStatus(reporter, "Unexpected exception recieved: " + ex.getMessage()); //$NON-NLS-1$
       exception = ex;
       throw new RuntimeException(ex);
     }
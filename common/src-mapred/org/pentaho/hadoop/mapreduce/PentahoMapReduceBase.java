@@ -88,6 +88,9 @@ public class PentahoMapReduceBase<K, V> extends MapReduceBase {
   protected OutputCollectorRowListener<K, V> rowCollector;
   protected boolean combineSingleThreaded;
   protected boolean reduceSingleThreaded;
+  protected boolean combineStreaming;
+  protected boolean reduceStreaming;
+  protected boolean reduceReuseOutputWritables;
   
   public PentahoMapReduceBase() throws KettleException {
   }
@@ -107,9 +110,12 @@ public class PentahoMapReduceBase<K, V> extends MapReduceBase {
     combinerInputStepName = job.get("transformation-combiner-input-stepname");
     combinerOutputStepName = job.get("transformation-combiner-output-stepname");
     combineSingleThreaded = isCombinerSingleThreaded(job);
+    combineStreaming = "true".equalsIgnoreCase(job.get(STRING_COMBINE_STREAMING));
     reduceInputStepName = job.get("transformation-reduce-input-stepname");
     reduceOutputStepName = job.get("transformation-reduce-output-stepname");
     reduceSingleThreaded = isReducerSingleThreaded(job);
+    reduceStreaming = "true".equalsIgnoreCase(job.get(STRING_REDUCE_STREAMING));
+    reduceReuseOutputWritables = "true".equalsIgnoreCase(job.get(STRING_REDUCE_REUSE_OUTPUT_WRITABLES));
     String xmlVariableSpace = job.get("variableSpace");
     
     if (!Const.isEmpty(xmlVariableSpace)) {
@@ -184,6 +190,17 @@ public class PentahoMapReduceBase<K, V> extends MapReduceBase {
                           Object value, int valueOrdinal, ITypeConverter inConverterV,
                           RowMetaInterface injectorRowMeta, RowProducer rowProducer, Reporter reporter)
                           throws Exception {
+    Object[] row = createInjectorRow(key, keyOrdinal, inConverterK, value, valueOrdinal, inConverterV, injectorRowMeta, reporter);
+
+    rowProducer.putRow(injectorRowMeta, row);
+  }
+
+  /**
+   * Convert a key/value pair into a new row suitable for injection into the transformation.
+   */
+  protected Object[] createInjectorRow(Object key, int keyOrdinal, ITypeConverter inConverterK,
+                                       Object value, int valueOrdinal, ITypeConverter inConverterV,
+                                       RowMetaInterface injectorRowMeta, Reporter reporter) throws Exception {
     Object[] row = new Object[injectorRowMeta.size()];
     row[keyOrdinal] = inConverterK != null ? inConverterK.convert(injectorRowMeta.getValueMeta(keyOrdinal), key) : key;
     row[valueOrdinal] = inConverterV != null ? inConverterV.convert(injectorRowMeta.getValueMeta(valueOrdinal), value) : value;
@@ -191,8 +208,8 @@ public class PentahoMapReduceBase<K, V> extends MapReduceBase {
     if (debug) {
       setDebugStatus(reporter, "Injecting input record [" + row[keyOrdinal] + "] - [" + row[valueOrdinal] + "]");
     }
-    
-    rowProducer.putRow(injectorRowMeta, row);
+
+    return row;
   }
 
   protected void createTrans(final Configuration conf) {
@@ -24,6 +24,7 @@ package org.pentaho.hadoop.mapreduce;
 
 import com.thoughtworks.xstream.XStream;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapred.*;
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.exception.KettleException;
@@ -32,14 +33,18 @@ import org.pentaho.di.core.logging.KettleLoggingEvent;
 import org.pentaho.di.core.logging.LogLevel;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.core.variables.VariableSpace;
 import org.pentaho.di.core.variables.Variables;
 import org.pentaho.di.trans.RowProducer;
+import org.pentaho.di.trans.SingleThreadedTransExecutor;
 import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
 import org.pentaho.di.trans.step.BaseStepMeta;
 import org.pentaho.di.trans.step.StepInterface;
 import org.pentaho.di.trans.step.StepMetaInterface;
 import org.pentaho.hadoop.mapreduce.converter.TypeConverterFactory;
+import org.pentaho.hadoop.mapreduce.converter.TypeConverterRegistry;
 import org.pentaho.hadoop.mapreduce.converter.spi.ITypeConverter;
 
 import java.io.IOException;
@@ -48,14 +53,29 @@ import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
+import static org.pentaho.hadoop.shim.api.Configuration.STRING_MAP_INJECTION_BATCH_SIZE;
+import static org.pentaho.hadoop.shim.api.Configuration.STRING_MAP_LAZY_TEXT_INPUT;
+import static org.pentaho.hadoop.shim.api.Configuration.STRING_MAP_REUSE_TRANS;
+import static org.pentaho.hadoop.shim.api.Configuration.STRING_MAP_SINGLE_THREADED;
+import static org.pentaho.hadoop.shim.api.Configuration.STRING_REDUCE_REUSE_OUTPUT_WRITABLES;
+
 /**
- * Map runner that uses the normal Kettle execution engine to process all input data during one single run.<p>
+ * Map runner that uses the normal Kettle execution engine to process all input data during one single run. The single
+ * threaded engine may be used instead by setting {@code transformation-map-single-threaded} to {@code true}.<p>
  * This relies on newly un-@Deprecated interfaces ({@link MapRunnable}, {@link JobConf}) in Hadoop 0.21.0.
  */
 public class PentahoMapRunnable<K1, V1, K2, V2> implements MapRunnable<K1, V1, K2, V2> {
 
+  /**
+   * Number of records injected between two iterations of the single threaded engine when no explicit injection batch
+   * size has been configured.
+   */
+  public static final int DEFAULT_SINGLE_THREADED_BATCH_SIZE = 1000;
+
   protected static enum Counter {
-    INPUT_RECORDS, OUTPUT_RECORDS, OUT_RECORD_WITH_NULL_KEY, OUT_RECORD_WITH_NULL_VALUE
+    INPUT_RECORDS, OUTPUT_RECORDS, OUT_RECORD_WITH_NULL_KEY, OUT_RECORD_WITH_NULL_VALUE,
+    INJECTION_BATCHES, INJECTION_BATCH_ROWS, INJECTION_BATCH_CAPACITY, INJECTION_STALL_MILLIS,
+    SETUP_MILLIS, PROCESSING_MILLIS
   };
 
   protected String transMapXml;
@@ -78,6 +98,28 @@ public class PentahoMapRunnable<K1, V1, K2, V2> implements MapRunnable<K1, V1, K
 
   protected boolean debug = false;
 
+  // number of records to convert before handing them to the transformation, 0 disables batching
+  protected int injectionBatchSize = 0;
+
+  protected boolean mapSingleThreaded = false;
+
+  protected SingleThreadedTransExecutor executor;
+
+  // inject Text input as undecoded binary strings
+  protected boolean lazyTextInput = false;
+
+  // keep the parsed transformation and the injection setup for all tasks run by this JVM
+  protected boolean reuseTrans = false;
+
+  // pass the same output key and value instances to the output collector for every row
+  protected boolean reuseOutputWritables = false;
+
+  // time spent creating the transformation in configure(), reported with the setup time of the next run
+  protected long configureNanos = 0;
+
+  // injection setup of the last task, only used when reuseTrans is enabled
+  private static volatile PreparedInjection preparedInjection;
+
   //  the transformation that will be used as a mapper or reducer
   protected Trans trans;
   
@@ -99,6 +141,14 @@ public class PentahoMapRunnable<K1, V1, K2, V2> implements MapRunnable<K1, V1, K
     mapOutputStepName = job.get("transformation-map-output-stepname");
     reduceInputStepName = job.get("transformation-reduce-input-stepname");
     reduceOutputStepName = job.get("transformation-reduce-output-stepname");
+    injectionBatchSize = job.getInt(STRING_MAP_INJECTION_BATCH_SIZE, 0);
+    mapSingleThreaded = isMapperSingleThreaded(job);
+    reuseTrans = "true".equalsIgnoreCase(job.get(STRING_MAP_REUSE_TRANS));
+    lazyTextInput = "true".equalsIgnoreCase(job.get(STRING_MAP_LAZY_TEXT_INPUT));
+    // The map output buffer serializes every record right away. A map-only job writes straight to the OutputFormat,
+    // which may hold on to the records, so there reuse is opt-in as it is for the reducer.
+    reuseOutputWritables = job.getNumReduceTasks() > 0
+        || "true".equalsIgnoreCase(job.get(STRING_REDUCE_REUSE_OUTPUT_WRITABLES));
     String xmlVariableSpace = job.get("variableSpace");
     
     outClassK = (Class<K2>) job.getMapOutputKeyClass();
@@ -163,7 +213,9 @@ public class PentahoMapRunnable<K1, V1, K2, V2> implements MapRunnable<K1, V1, K
        System.out.println("Could not retrieve the log level from the job configuration.  logLevel will not be set.");
     }
     
+    long start = System.nanoTime();
     createTrans(job);
+    configureNanos = System.nanoTime() - start;
   }
 
   public void injectValue(Object key, ITypeConverter inConverterK, Object value, ITypeConverter inConverterV,
@@ -175,6 +227,17 @@ public class PentahoMapRunnable<K1, V1, K2, V2> implements MapRunnable<K1, V1, K
   public void injectValue(Object key, int keyOrdinal, ITypeConverter inConverterK, Object value, int valueOrdinal,
       ITypeConverter inConverterV, RowMeta injectorRowMeta, RowProducer rowProducer, Reporter reporter)
       throws Exception {
+    Object[] row = createInjectorRow(key, keyOrdinal, inConverterK, value, valueOrdinal, inConverterV, injectorRowMeta,
+        reporter);
+
+    rowProducer.putRow(injectorRowMeta, row);
+  }
+
+  /**
+   * Convert a key/value pair into a new row suitable for injection into the mapper transformation.
+   */
+  protected Object[] createInjectorRow(Object key, int keyOrdinal, ITypeConverter inConverterK, Object value,
+      int valueOrdinal, ITypeConverter inConverterV, RowMeta injectorRowMeta, Reporter reporter) throws Exception {
     Object[] row = new Object[injectorRowMeta.size()];
     row[keyOrdinal] = inConverterK != null ? inConverterK.convert(injectorRowMeta.getValueMeta(keyOrdinal), key) : key;
     row[valueOrdinal] = inConverterV != null ? inConverterV.convert(injectorRowMeta.getValueMeta(valueOrdinal), value)
@@ -184,19 +247,28 @@ public class PentahoMapRunnable<K1, V1, K2, V2> implements MapRunnable<K1, V1, K
       setDebugStatus(reporter, "Injecting input record [" + row[keyOrdinal] + "] - [" + row[valueOrdinal] + "]");
     }
 
-    rowProducer.putRow(injectorRowMeta, row);
+    return row;
   }
 
   protected void createTrans(final Configuration conf) {
 
     try {
       setDebugStatus("Creating a transformation for a map.");
-      trans = MRUtil.getTrans(conf, transMapXml, false);
+      trans = MRUtil.getTrans(conf, transMapXml, isMapperSingleThreaded(conf),
+          "true".equalsIgnoreCase(conf.get(STRING_MAP_REUSE_TRANS)));
     } catch (KettleException ke) {
       throw new RuntimeException("Error loading transformation", ke); //$NON-NLS-1$
     }
   }
 
+  private boolean isMapperSingleThreaded(final Configuration conf) {
+    return "true".equalsIgnoreCase(conf.get(STRING_MAP_SINGLE_THREADED));
+  }
+
+  public boolean isSingleThreaded() {
+    return mapSingleThreaded;
+  }
+
   public String getTransMapXml() {
     return transMapXml;
   }
@@ -277,6 +349,41 @@ public class PentahoMapRunnable<K1, V1, K2, V2> implements MapRunnable<K1, V1, K
     this.id = id;
   }
 
+  public boolean isLazyTextInput() {
+    return lazyTextInput;
+  }
+
+  public void setLazyTextInput(boolean lazyTextInput) {
+    this.lazyTextInput = lazyTextInput;
+  }
+
+  public boolean isReuseTrans() {
+    return reuseTrans;
+  }
+
+  public void setReuseTrans(boolean reuseTrans) {
+    this.reuseTrans = reuseTrans;
+  }
+
+  /**
+   * @return {@code true} if the same output key and value instances may be passed to the output collector for every row
+   */
+  public boolean isReuseOutputWritables() {
+    return reuseOutputWritables;
+  }
+
+  public void setReuseOutputWritables(boolean reuseOutputWritables) {
+    this.reuseOutputWritables = reuseOutputWritables;
+  }
+
+  public int getInjectionBatchSize() {
+    return injectionBatchSize;
+  }
+
+  public void setInjectionBatchSize(int injectionBatchSize) {
+    this.injectionBatchSize = injectionBatchSize;
+  }
+
   public Exception getException() {
     return rowCollector != null ? rowCollector.getException() : null;
   }
@@ -296,6 +403,7 @@ public class PentahoMapRunnable<K1, V1, K2, V2> implements MapRunnable<K1, V1, K
 
   public void run(RecordReader<K1, V1> input, final OutputCollector<K2, V2> output, final Reporter reporter)
       throws IOException {
+    long setupStart = System.nanoTime();
     try {
       if (trans == null) {
         throw new RuntimeException("Error initializing transformation.  See error log."); //$NON-NLS-1$
@@ -356,7 +464,8 @@ public class PentahoMapRunnable<K1, V1, K2, V2> implements MapRunnable<K1, V1, K
         setDebugStatus(reporter, "Locating output step: " + mapOutputStepName);
         StepInterface outputStep = trans.findRunThread(mapOutputStepName);
         if (outputStep != null) {
-          rowCollector = new OutputCollectorRowListener(output, outClassK, outClassV, reporter, debug);
+          rowCollector = new OutputCollectorRowListener(output, outClassK, outClassV, reporter, debug,
+              isReuseOutputWritables());
 //          rowCollector = OutputCollectorRowListener.build(output, outputRowMeta, outClassK, outClassV, reporter, debug);
           outputStep.addRowListener(rowCollector);
 
@@ -374,7 +483,15 @@ public class PentahoMapRunnable<K1, V1, K2, V2> implements MapRunnable<K1, V1, K
             StepMetaInterface inputStepMeta = inputStep.getStepMeta().getStepMetaInterface();
 
             InKeyValueOrdinals inOrdinals = null;
-            if (inputStepMeta instanceof BaseStepMeta) {
+            PreparedInjection prepared = reuseTrans ? preparedInjection : null;
+            if (prepared != null && prepared.matches(trans.getTransMeta(), mapInputStepName, key.getClass(),
+                value.getClass())) {
+              setDebugStatus(reporter, "Reusing the converters prepared by a previous task in this JVM");
+              injectorRowMeta = prepared.injectorRowMeta;
+              inOrdinals = prepared.inOrdinals;
+              inConverterK = prepared.inConverterK;
+              inConverterV = prepared.inConverterV;
+            } else if (inputStepMeta instanceof BaseStepMeta) {
               setDebugStatus(reporter,
                   "Generating converters from RowMeta for injection into the mapper transformation");
 
@@ -398,24 +515,85 @@ public class PentahoMapRunnable<K1, V1, K2, V2> implements MapRunnable<K1, V1, K
               if (injectorRowMeta.getValueMeta(inOrdinals.getValueOrdinal()) != null) {
                 inConverterV = typeConverterFactory.getConverter(value.getClass(), injectorRowMeta.getValueMeta(inOrdinals.getValueOrdinal()));
               }
+
+              // Hand Text over as UTF-8 bytes, they're only decoded if a step actually reads the field
+              if (lazyTextInput) {
+                if (key instanceof Text && useBinaryStringStorage(injectorRowMeta.getValueMeta(inOrdinals.getKeyOrdinal()))) {
+                  inConverterK = typeConverterFactory.getConverter(Text.class, byte[].class);
+                }
+                if (value instanceof Text && useBinaryStringStorage(injectorRowMeta.getValueMeta(inOrdinals.getValueOrdinal()))) {
+                  inConverterV = typeConverterFactory.getConverter(Text.class, byte[].class);
+                }
+              }
+
+              if (debug) {
+                setDebugStatus(reporter, TypeConverterRegistry.getInstance().dump());
+              }
+
+              if (reuseTrans) {
+                preparedInjection = new PreparedInjection(trans.getTransMeta(), mapInputStepName, key.getClass(),
+                    value.getClass(), injectorRowMeta, inOrdinals, inConverterK, inConverterV);
+              }
             }
 
+            // The single threaded engine doesn't start any threads here, it only marks the transformation as running
             trans.startThreads();
+            if (isSingleThreaded()) {
+              // Create the Single Threader executor, sort the steps, and so on...
+              executor = new SingleThreadedTransExecutor(trans);
+
+              // This validates whether or not a step is capable of running in Single Threaded mode.
+              if (!executor.init()) {
+                throw new KettleException("Unable to initialize the single threaded transformation, check the log for details.");
+              }
+            }
+
+            long processingStart = System.nanoTime();
             if (rowProducer != null) {
 
-              while (input.next(key, value)) {
-                if (inOrdinals != null) {
-                  injectValue(key, inOrdinals.getKeyOrdinal(), inConverterK, value, inOrdinals.getValueOrdinal(),
-                      inConverterV, injectorRowMeta, rowProducer, reporter);
-                } else {
-                  injectValue(key, inConverterK, value, inConverterV, injectorRowMeta, rowProducer, reporter);
+              if (injectionBatchSize > 0 || isSingleThreaded()) {
+                int batchSize = injectionBatchSize > 0 ? injectionBatchSize : DEFAULT_SINGLE_THREADED_BATCH_SIZE;
+                setDebugStatus(reporter, "Injecting input records in batches of " + batchSize);
+                int keyOrdinal = inOrdinals != null ? inOrdinals.getKeyOrdinal() : 0;
+                int valueOrdinal = inOrdinals != null ? inOrdinals.getValueOrdinal() : 1;
+                BatchingRowInjector batchInjector = new BatchingRowInjector(rowProducer, injectorRowMeta, batchSize);
+
+                while (input.next(key, value)) {
+                  boolean flushed = batchInjector.addRow(createInjectorRow(key, keyOrdinal, inConverterK, value,
+                      valueOrdinal, inConverterV, injectorRowMeta, reporter));
+
+                  // Let every step of the single threaded engine process the block that was just injected
+                  if (flushed && executor != null) {
+                    executor.oneIteration();
+                  }
+                }
+
+                batchInjector.finished();
+                batchInjector.reportCounters(reporter);
+              } else {
+                while (input.next(key, value)) {
+                  if (inOrdinals != null) {
+                    injectValue(key, inOrdinals.getKeyOrdinal(), inConverterK, value, inOrdinals.getValueOrdinal(),
+                        inConverterV, injectorRowMeta, rowProducer, reporter);
+                  } else {
+                    injectValue(key, inConverterK, value, inConverterV, injectorRowMeta, rowProducer, reporter);
+                  }
                 }
-              }
 
-              rowProducer.finished();
+                rowProducer.finished();
+              }
             }
 
-            trans.waitUntilFinished();
+            if (executor != null) {
+              // Keep iterating until all steps are done with the remaining rows (or one of them reported errors)
+              boolean moreToDo = true;
+              while (moreToDo) {
+                moreToDo = executor.oneIteration();
+              }
+            } else {
+              trans.waitUntilFinished();
+            }
+            reportTimings(reporter, setupStart, processingStart, System.nanoTime());
             setDebugStatus(reporter, "Mapper transformation has finished");
             if (trans.getErrors() > 0) {
               setDebugStatus("Errors detected for mapper transformation");
@@ -449,6 +627,14 @@ public class PentahoMapRunnable<K1, V1, K2, V2> implements MapRunnable<K1, V1, K
           }
         }
       } finally {
+        if (executor != null) {
+          try {
+            executor.dispose();
+          } catch (KettleException ex) {
+            ex.printStackTrace();
+          }
+          executor = null;
+        }
         try {
           trans.stopAll();
         } catch (Exception ex) {
@@ -468,4 +654,69 @@ public class PentahoMapRunnable<K1, V1, K2, V2> implements MapRunnable<K1, V1, K
     reporter.setStatus("Completed processing record");
   }
 
+  /**
+   * Switch a String field of the injector row to binary string storage holding UTF-8 encoded bytes. Kettle decodes
+   * such values lazily, the first time a step asks for the String.
+   * 
+   * @return {@code true} if the storage of {@code valueMeta} was changed
+   */
+  protected boolean useBinaryStringStorage(ValueMetaInterface valueMeta) {
+    if (valueMeta == null || valueMeta.getType() != ValueMetaInterface.TYPE_STRING
+        || valueMeta.getStorageType() != ValueMetaInterface.STORAGE_TYPE_NORMAL) {
+      return false;
+    }
+    ValueMetaInterface storageMeta = valueMeta.clone();
+    storageMeta.setStringEncoding("UTF-8");
+    valueMeta.setStringEncoding("UTF-8");
+    valueMeta.setStorageType(ValueMetaInterface.STORAGE_TYPE_BINARY_STRING);
+    valueMeta.setStorageMetadata(storageMeta);
+    return true;
+  }
+
+  /**
+   * Report the time spent setting up the transformation (including its creation in {@link #configure(JobConf)} for the
+   * first task) separately from the time spent processing the input records.
+   */
+  protected void reportTimings(Reporter reporter, long setupStart, long processingStart, long processingEnd) {
+    long setupNanos = processingStart - setupStart + configureNanos;
+    configureNanos = 0;
+    reporter.incrCounter(Counter.SETUP_MILLIS, setupNanos / 1000000L);
+    reporter.incrCounter(Counter.PROCESSING_MILLIS, (processingEnd - processingStart) / 1000000L);
+    setDebugStatus(reporter, "Mapper setup took " + setupNanos / 1000000L + "ms, processing took "
+        + (processingEnd - processingStart) / 1000000L + "ms");
+  }
+
+  /**
+   * Row meta and converters derived from the input step of a transformation. When the transformation is reused they
+   * remain valid for every task run by the same JVM.
+   */
+  private static class PreparedInjection {
+    private final TransMeta transMeta;
+    private final String inputStepName;
+    private final Class<?> keyClass;
+    private final Class<?> valueClass;
+    private final RowMeta injectorRowMeta;
+    private final InKeyValueOrdinals inOrdinals;
+    private final ITypeConverter inConverterK;
+    private final ITypeConverter inConverterV;
+
+    PreparedInjection(TransMeta transMeta, String inputStepName, Class<?> keyClass, Class<?> valueClass,
+        RowMeta injectorRowMeta, InKeyValueOrdinals inOrdinals, ITypeConverter inConverterK,
+        ITypeConverter inConverterV) {
+      this.transMeta = transMeta;
+      this.inputStepName = inputStepName;
+      this.keyClass = keyClass;
+      this.valueClass = valueClass;
+      this.injectorRowMeta = injectorRowMeta;
+      this.inOrdinals = inOrdinals;
+      this.inConverterK = inConverterK;
+      this.inConverterV = inConverterV;
+    }
+
+    boolean matches(TransMeta transMeta, String inputStepName, Class<?> keyClass, Class<?> valueClass) {
+      return this.transMeta == transMeta && this.inputStepName.equals(inputStepName) && this.keyClass == keyClass
+          && this.valueClass == valueClass;
+    }
+  }
+
 }
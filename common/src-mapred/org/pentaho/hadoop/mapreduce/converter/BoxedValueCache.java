@@ -0,0 +1,82 @@
+/*******************************************************************************
+*
+* Pentaho Big Data
+*
+* Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+
+package org.pentaho.hadoop.mapreduce.converter;
+
+/**
+ * Boxes primitive numbers for Kettle rows, handing out shared instances for the small values that dominate counters
+ * and other aggregates instead of allocating a new object for every record.
+ */
+public class BoxedValueCache {
+  /**
+   * Lowest value served from the cache
+   */
+  public static final int LOW = -128;
+
+  /**
+   * Highest value served from the cache
+   */
+  public static final int HIGH = 1023;
+
+  private static final Long[] LONGS = new Long[HIGH - LOW + 1];
+
+  private static final Double[] DOUBLES = new Double[HIGH - LOW + 1];
+
+  private static final long NEGATIVE_ZERO_BITS = Double.doubleToRawLongBits(-0.0d);
+
+  static {
+    for (int i = 0; i < LONGS.length; i++) {
+      LONGS[i] = Long.valueOf(i + LOW);
+      DOUBLES[i] = Double.valueOf(i + LOW);
+    }
+  }
+
+  private BoxedValueCache() {
+  }
+
+  /**
+   * @param value Value to box
+   * @return A {@link Long} holding {@code value}, shared if {@code value} is within [{@link #LOW}, {@link #HIGH}]
+   */
+  public static Long valueOf(long value) {
+    if (value >= LOW && value <= HIGH) {
+      return LONGS[(int) value - LOW];
+    }
+    return Long.valueOf(value);
+  }
+
+  /**
+   * @param value Value to box
+   * @return A {@link Double} holding {@code value}, shared if {@code value} is a whole number within [{@link #LOW},
+   *         {@link #HIGH}]
+   */
+  public static Double valueOf(double value) {
+    if (value >= LOW && value <= HIGH) {
+      long whole = (long) value;
+      if (whole == value && Double.doubleToRawLongBits(value) != NEGATIVE_ZERO_BITS) {
+        return DOUBLES[(int) whole - LOW];
+      }
+    }
+    return Double.valueOf(value);
+  }
+}
@@ -32,19 +32,17 @@ import java.math.BigDecimal;
 import java.sql.Date;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.ServiceConfigurationError;
-import java.util.ServiceLoader;
 
 public class TypeConverterFactory {
 
   /**
    * Map key to represent a converter capable of converting an object from the given type to another type.
    */
-  private static class Key {
+  static class Key {
     private Class from;
     private Class to;
 
-    private Key(Class from, Class to) {
+    Key(Class from, Class to) {
       this.from = from;
       this.to = to;
     }
@@ -68,6 +66,11 @@ public class TypeConverterFactory {
       result = 31 * result + (to != null ? to.hashCode() : 0);
       return result;
     }
+
+    @Override
+    public String toString() {
+      return (from != null ? from.getName() : null) + " -> " + (to != null ? to.getName() : null);
+    }
   }
 
   /**
@@ -153,17 +156,26 @@ public class TypeConverterFactory {
   }
 
   /**
-   * Local cache of type converters
+   * Local cache of type converters. Converters registered here take precedence over the ones found in the
+   * {@link TypeConverterRegistry}.
    */
   private Map<Key, ITypeConverter<?, ?>> cache;
 
+  /**
+   * Registry of the SPI converters, obtained at the first lookup and kept so it isn't dropped while this factory is in
+   * use.
+   */
+  private TypeConverterRegistry registry;
+
   public TypeConverterFactory() {
     cache = new HashMap<Key, ITypeConverter<?, ?>>();
   }
 
   /**
-   * Find a converter by dynamically loading SPI implementations of {@link ITypeConverter} and returning the first one
-   * that returns {@code true} from {@link ITypeConverter#canConvert(Class, Class) canConvert(from, to)}.
+   * Find a converter among the SPI implementations of {@link ITypeConverter} by returning the first one that returns
+   * {@code true} from {@link ITypeConverter#canConvert(Class, Class) canConvert(from, to)}. The implementations are
+   * loaded once per class loader by the {@link TypeConverterRegistry}, which also remembers the outcome per pair. The
+   * registry of the context class loader at the first lookup is used for the lifetime of this factory.
    *
    * @param from Type to convert from
    * @param to Type to convert to
@@ -171,17 +183,10 @@ public class TypeConverterFactory {
    * @throws TypeConversionException Error instantiating a converter while traversing the list of registered type converters
    */
   protected <F, T> ITypeConverter<F, T> findConverter(Class<F> from, Class<T> to) throws TypeConversionException {
-    ServiceLoader<ITypeConverter> loader = ServiceLoader.load(ITypeConverter.class);
-    try {
-      for (ITypeConverter tc : loader) {
-        if (tc.canConvert(from, to)) {
-          return tc;
-        }
-      }
-    } catch (ServiceConfigurationError ex) {
-      throw new TypeConversionException("Error instantiating type converter", ex);
+    if (registry == null) {
+      registry = TypeConverterRegistry.getInstance();
     }
-    return null;
+    return registry.getConverter(from, to);
   }
 
   /**
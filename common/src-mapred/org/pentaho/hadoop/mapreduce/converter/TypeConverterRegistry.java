@@ -0,0 +1,202 @@
+/*******************************************************************************
+*
+* Pentaho Big Data
+*
+* Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+
+package org.pentaho.hadoop.mapreduce.converter;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.pentaho.hadoop.mapreduce.converter.TypeConverterFactory.Key;
+import org.pentaho.hadoop.mapreduce.converter.spi.ITypeConverter;
+
+/**
+ * JVM wide registry of the {@link ITypeConverter} implementations available through SPI. The implementations are
+ * loaded and instantiated once per class loader and the converter resolved for every (from, to) pair is remembered,
+ * including pairs no converter could be found for. Instances are safe for concurrent use, converters are expected to be
+ * stateless.
+ * <p>
+ * A registry references the converters and therefore the class loader they were loaded by. The registry of the class
+ * loader that loaded this class is kept for the lifetime of that loader. Registries of other class loaders, e.g. the
+ * context class loader of a shim, are softly referenced: they are kept until the JVM runs short of memory, so a class
+ * loader that is no longer used can still be unloaded. {@link TypeConverterFactory} holds on to the registry it uses.
+ */
+public class TypeConverterRegistry {
+
+  /**
+   * Registry of the class loader that loaded this class, it can't keep any other class loader from being unloaded.
+   */
+  private static TypeConverterRegistry ownRegistry;
+
+  /**
+   * Registries of other class loaders by the class loader used to load the converters. A registry strongly references
+   * its class loader, so the values are soft or the keys would never be cleared.
+   */
+  private static final Map<ClassLoader, SoftReference<TypeConverterRegistry>> registries = new WeakHashMap<ClassLoader, SoftReference<TypeConverterRegistry>>();
+
+  /**
+   * Marker for pairs no converter could be found for, {@link ConcurrentHashMap} does not support {@code null} values.
+   * {@link #getConverter(Class, Class)} returns {@code null} instead of the marker, so it is never asked to convert.
+   */
+  private static final ITypeConverter<?, ?> NO_CONVERTER = new ITypeConverter<Object, Object>() {
+    @Override
+    @SuppressWarnings("rawtypes")
+    public boolean canConvert(Class from, Class to) {
+      return false;
+    }
+
+    @Override
+    public Object convert(org.pentaho.di.core.row.ValueMetaInterface meta, Object obj) throws TypeConversionException {
+      throw new TypeConversionException("No converter available");
+    }
+  };
+
+  private final ClassLoader classLoader;
+
+  private final List<ITypeConverter<?, ?>> converters;
+
+  private final ConcurrentMap<Key, ITypeConverter<?, ?>> resolved = new ConcurrentHashMap<Key, ITypeConverter<?, ?>>();
+
+  /**
+   * Obtain the registry for the current thread's context class loader, creating it the first time it is requested.
+   *
+   * @return The registry of converters visible to the current thread's context class loader
+   * @throws TypeConversionException Error instantiating the registered type converters
+   */
+  public static TypeConverterRegistry getInstance() throws TypeConversionException {
+    ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+    if (classLoader == null) {
+      classLoader = TypeConverterRegistry.class.getClassLoader();
+    }
+    synchronized (registries) {
+      if (classLoader == TypeConverterRegistry.class.getClassLoader()) {
+        if (ownRegistry == null) {
+          ownRegistry = new TypeConverterRegistry(classLoader, load(classLoader));
+        }
+        return ownRegistry;
+      }
+
+      SoftReference<TypeConverterRegistry> ref = registries.get(classLoader);
+      TypeConverterRegistry registry = ref == null ? null : ref.get();
+      if (registry == null) {
+        registry = new TypeConverterRegistry(classLoader, load(classLoader));
+        registries.put(classLoader, new SoftReference<TypeConverterRegistry>(registry));
+      }
+      return registry;
+    }
+  }
+
+  @SuppressWarnings("rawtypes")
+  private static List<ITypeConverter<?, ?>> load(ClassLoader classLoader) throws TypeConversionException {
+    List<ITypeConverter<?, ?>> converters = new ArrayList<ITypeConverter<?, ?>>();
+    try {
+      for (ITypeConverter tc : ServiceLoader.load(ITypeConverter.class, classLoader)) {
+        converters.add(tc);
+      }
+    } catch (ServiceConfigurationError ex) {
+      throw new TypeConversionException("Error instantiating type converter", ex);
+    }
+    return converters;
+  }
+
+  /**
+   * Create a registry for the provided converters, in order of precedence.
+   */
+  TypeConverterRegistry(List<ITypeConverter<?, ?>> converters) {
+    this(null, converters);
+  }
+
+  private TypeConverterRegistry(ClassLoader classLoader, List<ITypeConverter<?, ?>> converters) {
+    this.classLoader = classLoader;
+    this.converters = Collections.unmodifiableList(new ArrayList<ITypeConverter<?, ?>>(converters));
+  }
+
+  /**
+   * Find the first converter that returns {@code true} from {@link ITypeConverter#canConvert(Class, Class)
+   * canConvert(from, to)}. The outcome is remembered so the converters are only consulted once per pair.
+   *
+   * @param from Type to convert from
+   * @param to Type to convert to
+   * @return A type converter that can handle converting between {@code from} and {@code to}, {@code null} if there is
+   *         none
+   */
+  @SuppressWarnings("unchecked")
+  public <F, T> ITypeConverter<F, T> getConverter(Class<F> from, Class<T> to) {
+    Key key = new Key(from, to);
+    ITypeConverter<?, ?> converter = resolved.get(key);
+    if (converter == null) {
+      converter = NO_CONVERTER;
+      for (ITypeConverter<?, ?> tc : converters) {
+        if (tc.canConvert(from, to)) {
+          converter = tc;
+          break;
+        }
+      }
+      resolved.putIfAbsent(key, converter);
+    }
+    return converter == NO_CONVERTER ? null : (ITypeConverter<F, T>) converter;
+  }
+
+  /**
+   * @return The converters of this registry, in order of precedence
+   */
+  public List<ITypeConverter<?, ?>> getConverters() {
+    return converters;
+  }
+
+  /**
+   * @return The class loader the converters were loaded with, {@code null} if they were provided directly
+   */
+  public ClassLoader getClassLoader() {
+    return classLoader;
+  }
+
+  /**
+   * Describe the conversions resolved so far, one per line, for diagnostic purposes. Pairs no converter could be found
+   * for are listed as {@code <none>}.
+   *
+   * @return The resolved conversion table
+   */
+  public String dump() {
+    Map<String, String> table = new TreeMap<String, String>();
+    for (Map.Entry<Key, ITypeConverter<?, ?>> entry : resolved.entrySet()) {
+      ITypeConverter<?, ?> converter = entry.getValue();
+      table.put(entry.getKey().toString(), converter == NO_CONVERTER ? "<none>" : converter.getClass().getName());
+    }
+
+    StringBuilder sb = new StringBuilder();
+    sb.append("Type converters: ").append(converters.size()).append(", resolved conversions: ").append(table.size());
+    for (Map.Entry<String, String> entry : table.entrySet()) {
+      sb.append("\n  ").append(entry.getKey()).append(" = ").append(entry.getValue());
+    }
+    return sb.toString();
+  }
+}
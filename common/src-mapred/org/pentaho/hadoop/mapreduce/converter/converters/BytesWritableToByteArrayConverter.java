@@ -22,6 +22,8 @@
 
 package org.pentaho.hadoop.mapreduce.converter.converters;
 
+import java.util.Arrays;
+
 import org.apache.hadoop.io.BytesWritable;
 import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.hadoop.mapreduce.converter.TypeConversionException;
@@ -38,6 +40,7 @@ public class BytesWritableToByteArrayConverter implements ITypeConverter<BytesWr
 
   @Override
   public byte[] convert(ValueMetaInterface meta, BytesWritable obj) throws TypeConversionException {
-    return obj.getBytes().clone();
+    // The backing array may be padded beyond getLength(), only copy the valid bytes
+    return Arrays.copyOf(obj.getBytes(), obj.getLength());
   }
 }
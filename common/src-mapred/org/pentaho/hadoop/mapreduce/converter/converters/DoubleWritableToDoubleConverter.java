@@ -24,6 +24,7 @@ package org.pentaho.hadoop.mapreduce.converter.converters;
 
 import org.apache.hadoop.io.DoubleWritable;
 import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.hadoop.mapreduce.converter.BoxedValueCache;
 import org.pentaho.hadoop.mapreduce.converter.TypeConversionException;
 import org.pentaho.hadoop.mapreduce.converter.spi.ITypeConverter;
 
@@ -38,6 +39,6 @@ public class DoubleWritableToDoubleConverter implements ITypeConverter<DoubleWri
 
   @Override
   public Double convert(ValueMetaInterface meta, DoubleWritable obj) throws TypeConversionException {
-    return new Double(obj.get());
+    return BoxedValueCache.valueOf(obj.get());
   }
 }
@@ -24,6 +24,7 @@ package org.pentaho.hadoop.mapreduce.converter.converters;
 
 import org.apache.hadoop.io.DoubleWritable;
 import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.hadoop.mapreduce.converter.BoxedValueCache;
 import org.pentaho.hadoop.mapreduce.converter.TypeConversionException;
 import org.pentaho.hadoop.mapreduce.converter.spi.ITypeConverter;
 
@@ -38,6 +39,6 @@ public class DoubleWritableToLongConverter implements ITypeConverter<DoubleWrita
 
   @Override
   public Long convert(ValueMetaInterface meta, DoubleWritable obj) throws TypeConversionException {
-    return Long.valueOf((long) obj.get());
+    return BoxedValueCache.valueOf((long) obj.get());
   }
 }
@@ -27,12 +27,12 @@ import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.hadoop.mapreduce.converter.TypeConversionException;
 import org.pentaho.hadoop.mapreduce.converter.TypeConverterFactory;
-import org.pentaho.hadoop.mapreduce.converter.spi.ITypeConverter;
+import org.pentaho.hadoop.mapreduce.converter.spi.IReusableTypeConverter;
 
 /**
  * Converts any Kettle object to an {@link org.apache.hadoop.io.BytesWritable} object
  */
-public class KettleTypeToBytesWritableConverter implements ITypeConverter<Object, BytesWritable> {
+public class KettleTypeToBytesWritableConverter implements IReusableTypeConverter<Object, BytesWritable> {
   @Override
   public boolean canConvert(Class from, Class to) {
     return TypeConverterFactory.isKettleType(from) && BytesWritable.class.equals(to);
@@ -40,8 +40,13 @@ public class KettleTypeToBytesWritableConverter implements ITypeConverter<Object
 
   @Override
   public BytesWritable convert(ValueMetaInterface meta, Object obj) throws TypeConversionException {
+    return convertInto(meta, obj, new BytesWritable());
+  }
+
+  @Override
+  public BytesWritable convertInto(ValueMetaInterface meta, Object obj, BytesWritable target) throws TypeConversionException {
     try {
-      BytesWritable result = new BytesWritable();
+      BytesWritable result = target != null ? target : new BytesWritable();
       byte[] binary = meta.getBinary(obj);
       result.set(binary, 0, binary.length);
       return result;
@@ -28,12 +28,12 @@ import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.hadoop.mapreduce.converter.TypeConversionException;
 import org.pentaho.hadoop.mapreduce.converter.TypeConverterFactory;
-import org.pentaho.hadoop.mapreduce.converter.spi.ITypeConverter;
+import org.pentaho.hadoop.mapreduce.converter.spi.IReusableTypeConverter;
 
 /**
  * Converts any Kettle object to an {@link DoubleWritable} object
  */
-public class KettleTypeToDoubleWritableConverter implements ITypeConverter<Object, DoubleWritable> {
+public class KettleTypeToDoubleWritableConverter implements IReusableTypeConverter<Object, DoubleWritable> {
   @Override
   public boolean canConvert(Class from, Class to) {
     return TypeConverterFactory.isKettleType(from) && DoubleWritable.class.equals(to);
@@ -41,8 +41,13 @@ public class KettleTypeToDoubleWritableConverter implements ITypeConverter<Objec
 
   @Override
   public DoubleWritable convert(ValueMetaInterface meta, Object obj) throws TypeConversionException {
+    return convertInto(meta, obj, new DoubleWritable());
+  }
+
+  @Override
+  public DoubleWritable convertInto(ValueMetaInterface meta, Object obj, DoubleWritable target) throws TypeConversionException {
     try {
-      DoubleWritable result = new DoubleWritable();
+      DoubleWritable result = target != null ? target : new DoubleWritable();
       result.set(meta.getNumber(obj));
       return result;
     } catch (KettleValueException ex) {
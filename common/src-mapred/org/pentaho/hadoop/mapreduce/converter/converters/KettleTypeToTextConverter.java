@@ -28,12 +28,12 @@ import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.hadoop.mapreduce.converter.TypeConversionException;
 import org.pentaho.hadoop.mapreduce.converter.TypeConverterFactory;
-import org.pentaho.hadoop.mapreduce.converter.spi.ITypeConverter;
+import org.pentaho.hadoop.mapreduce.converter.spi.IReusableTypeConverter;
 
 /**
  * Converts any Kettle object to a {@link Text} object
  */
-public class KettleTypeToTextConverter implements ITypeConverter<Object, Text> {
+public class KettleTypeToTextConverter implements IReusableTypeConverter<Object, Text> {
   @Override
   public boolean canConvert(Class from, Class to) {
     return TypeConverterFactory.isKettleType(from) && Text.class.equals(to);
@@ -41,8 +41,13 @@ public class KettleTypeToTextConverter implements ITypeConverter<Object, Text> {
 
   @Override
   public Text convert(ValueMetaInterface meta, Object obj) throws TypeConversionException {
+    return convertInto(meta, obj, new Text());
+  }
+
+  @Override
+  public Text convertInto(ValueMetaInterface meta, Object obj, Text target) throws TypeConversionException {
     try {
-      Text text = new Text();
+      Text text = target != null ? target : new Text();
       text.set(meta.getString(obj));
       return text;
     } catch (KettleValueException ex) {
@@ -24,6 +24,7 @@ package org.pentaho.hadoop.mapreduce.converter.converters;
 
 import org.apache.hadoop.io.LongWritable;
 import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.hadoop.mapreduce.converter.BoxedValueCache;
 import org.pentaho.hadoop.mapreduce.converter.TypeConversionException;
 import org.pentaho.hadoop.mapreduce.converter.spi.ITypeConverter;
 
@@ -38,6 +39,6 @@ public class LongWritableToLongConverter implements ITypeConverter<LongWritable,
 
   @Override
   public Long convert(ValueMetaInterface meta, LongWritable obj) throws TypeConversionException {
-    return obj.get();
+    return BoxedValueCache.valueOf(obj.get());
   }
 }
@@ -0,0 +1,48 @@
+/*******************************************************************************
+*
+* Pentaho Big Data
+*
+* Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+
+package org.pentaho.hadoop.mapreduce.converter.converters;
+
+import java.util.Arrays;
+
+import org.apache.hadoop.io.Text;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.hadoop.mapreduce.converter.TypeConversionException;
+import org.pentaho.hadoop.mapreduce.converter.spi.ITypeConverter;
+
+/**
+ * Converts {@link Text} objects to their UTF-8 encoded {@link byte[]} representation without decoding them. Used to
+ * inject text into a transformation as a binary string that is only decoded when a step reads it.
+ */
+public class TextToByteArrayConverter implements ITypeConverter<Text, byte[]> {
+  @Override
+  public boolean canConvert(Class from, Class to) {
+    return Text.class.equals(from) && byte[].class.equals(to);
+  }
+
+  @Override
+  public byte[] convert(ValueMetaInterface meta, Text obj) throws TypeConversionException {
+    // The backing array of a Text may be larger than its contents and is reused by record readers
+    return Arrays.copyOf(obj.getBytes(), obj.getLength());
+  }
+}
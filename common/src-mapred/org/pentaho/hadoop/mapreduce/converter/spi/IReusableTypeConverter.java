@@ -0,0 +1,48 @@
+/*******************************************************************************
+*
+* Pentaho Big Data
+*
+* Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+
+package org.pentaho.hadoop.mapreduce.converter.spi;
+
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.hadoop.mapreduce.converter.TypeConversionException;
+
+/**
+ * A type converter that can write its result into an existing, mutable instance of the destination type (e.g. a
+ * Hadoop {@link org.apache.hadoop.io.Writable}) instead of allocating a new one for every conversion.
+ *
+ * @param <F> Type this converter can convert from
+ * @param <T> Type this converter can convert to
+ */
+public interface IReusableTypeConverter<F, T> extends ITypeConverter<F, T> {
+  /**
+   * Convert an object with some metadata into the provided instance of the destination type.
+   *
+   * @param meta   Metadata for the object provided. This provides hints and formatting to aid in conversion.
+   * @param obj    Object to convert
+   * @param target Instance to store the converted value in. If {@code null} a new instance is created.
+   * @return {@code target} holding the converted value, or a new instance if {@code target} was {@code null}
+   *
+   * @throws org.pentaho.hadoop.mapreduce.converter.TypeConversionException Error encountered when converting {@code obj} to type {@code T}
+   */
+  public T convertInto(ValueMetaInterface meta, F obj, T target) throws TypeConversionException;
+}
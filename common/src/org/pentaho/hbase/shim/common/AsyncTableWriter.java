@@ -0,0 +1,210 @@
+/*******************************************************************************
+ *
+ * Pentaho Big Data
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.hbase.shim.common;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.hbase.shim.spi.BatchWriteStatistics;
+
+/**
+ * Writes put batches to a target table on a background thread so the producing step thread can fill the next batch
+ * while the previous one is sent. The bytes of the batches handed over but not yet written are bounded; a producer that
+ * gets too far ahead blocks until the writer catches up.
+ * <p>
+ * Once the table is handed to this writer it must only be written through it, {@link HTable} is not thread safe. A
+ * failed write is reported by every following call of {@link #submit}, {@link #awaitWritten} or {@link #close}.
+ */
+class AsyncTableWriter {
+  private static Class<?> PKG = AsyncTableWriter.class;
+
+  private final HTable m_table;
+  private final long m_maxInFlightBytes;
+  private final BatchWriteStatistics m_stats;
+  private final ExecutorService m_writer;
+
+  // batches the writer has finished with, reused by the producer
+  private final Queue<List<Put>> m_freeBuffers = new ConcurrentLinkedQueue<List<Put>>();
+
+  private final Object m_lock = new Object();
+  private long m_inFlightBytes;
+  private int m_inFlightBatches;
+
+  private volatile Exception m_failure;
+
+  AsyncTableWriter( HTable table, long maxInFlightBytes, BatchWriteStatistics stats ) {
+    m_table = table;
+    m_maxInFlightBytes = maxInFlightBytes;
+    m_stats = stats;
+
+    final String threadName = "HBase writer " + Bytes.toString( m_table.getTableName() );
+    m_writer = Executors.newSingleThreadExecutor( new ThreadFactory() {
+      @Override
+      public Thread newThread( Runnable r ) {
+        Thread t = new Thread( r, threadName );
+        t.setDaemon( true );
+        t.setContextClassLoader( AsyncTableWriter.class.getClassLoader() );
+        return t;
+      }
+    } );
+  }
+
+  /**
+   * @return an empty list to collect the next batch in
+   */
+  List<Put> newBuffer() {
+    List<Put> buffer = m_freeBuffers.poll();
+    return buffer != null ? buffer : new ArrayList<Put>();
+  }
+
+  /**
+   * Hands a batch over to the background thread. Blocks while other batches are in flight and adding this one would
+   * exceed the in-flight byte limit. The batch must not be touched by the caller afterwards.
+   * 
+   * @param batch
+   *          the puts to write
+   * @param bytes
+   *          the estimated size of the batch
+   * @throws Exception
+   *           if an earlier write failed
+   */
+  void submit( final List<Put> batch, final long bytes ) throws Exception {
+    checkFailure();
+
+    synchronized ( m_lock ) {
+      while ( m_inFlightBatches > 0 && m_inFlightBytes + bytes > m_maxInFlightBytes ) {
+        m_lock.wait();
+      }
+      m_inFlightBytes += bytes;
+      m_inFlightBatches++;
+    }
+
+    m_writer.execute( new Runnable() {
+      @Override
+      public void run() {
+        write( batch, bytes );
+      }
+    } );
+  }
+
+  private void write( List<Put> batch, long bytes ) {
+    try {
+      // nothing written after a failure gets reported, drop the rest
+      if ( m_failure == null ) {
+        long start = System.nanoTime();
+        writeBatch( batch );
+        m_stats.recordFlush( batch.size(), System.nanoTime() - start );
+      }
+    } catch ( Exception ex ) {
+      m_failure = ex;
+    } finally {
+      batch.clear();
+      m_freeBuffers.offer( batch );
+      synchronized ( m_lock ) {
+        m_inFlightBytes -= bytes;
+        m_inFlightBatches--;
+        m_lock.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Writes a batch to the table, on the background thread.
+   */
+  void writeBatch( List<Put> batch ) throws IOException {
+    m_table.put( batch );
+    if ( !m_table.isAutoFlush() ) {
+      m_table.flushCommits();
+    }
+  }
+
+  /**
+   * Waits until all submitted batches have been written.
+   * 
+   * @throws Exception
+   *           if a write failed
+   */
+  void awaitWritten() throws Exception {
+    synchronized ( m_lock ) {
+      while ( m_inFlightBatches > 0 ) {
+        m_lock.wait();
+      }
+    }
+    checkFailure();
+  }
+
+  /**
+   * Waits for all submitted batches and stops the background thread. The caller releases the table afterwards, so this
+   * keeps waiting for the background thread to finish with it when interrupted and restores the interrupt status once
+   * it has.
+   * 
+   * @throws Exception
+   *           if a write failed
+   */
+  void close() throws Exception {
+    boolean interrupted = false;
+
+    synchronized ( m_lock ) {
+      while ( m_inFlightBatches > 0 ) {
+        try {
+          m_lock.wait();
+        } catch ( InterruptedException ex ) {
+          interrupted = true;
+        }
+      }
+    }
+
+    m_writer.shutdown();
+    while ( !m_writer.isTerminated() ) {
+      try {
+        m_writer.awaitTermination( 1, TimeUnit.SECONDS );
+      } catch ( InterruptedException ex ) {
+        interrupted = true;
+      }
+    }
+
+    if ( interrupted ) {
+      Thread.currentThread().interrupt();
+    }
+    checkFailure();
+  }
+
+  void checkFailure() throws Exception {
+    Exception failure = m_failure;
+    if ( failure != null ) {
+      throw new Exception( BaseMessages.getString( PKG, "CommonHBaseConnection.Error.AsyncWriteFailed" ), failure );
+    }
+  }
+}
@@ -28,16 +28,21 @@ import java.net.MalformedURLException;
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NavigableMap;
 import java.util.Properties;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HColumnDescriptor;
 import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.HTable;
@@ -46,7 +51,10 @@ import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.filter.CompareFilter;
+import org.apache.hadoop.hbase.filter.Filter;
 import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.FirstKeyOnlyFilter;
+import org.apache.hadoop.hbase.filter.KeyOnlyFilter;
 import org.apache.hadoop.hbase.filter.RegexStringComparator;
 import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
 import org.apache.hadoop.hbase.filter.SubstringComparator;
@@ -55,8 +63,11 @@ import org.pentaho.di.core.variables.VariableSpace;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.hbase.shim.api.ColumnFilter;
 import org.pentaho.hbase.shim.api.HBaseValueMeta;
+import org.pentaho.hbase.shim.api.ScanOptions;
+import org.pentaho.hbase.shim.spi.BatchWriteStatistics;
 import org.pentaho.hbase.shim.spi.HBaseBytesUtilShim;
 import org.pentaho.hbase.shim.spi.HBaseConnection;
+import org.pentaho.hbase.shim.spi.ScanStatistics;
 
 /**
  * Concrete implementation for Hadoop 20.x.
@@ -66,16 +77,54 @@ import org.pentaho.hbase.shim.spi.HBaseConnection;
 public class CommonHBaseConnection extends HBaseConnection {
   private static Class<?> PKG = CommonHBaseConnection.class;
 
+  // estimated size of a row delete besides its key
+  private static final int DELETE_OVERHEAD_BYTES = 64;
+
+  // row counts fetch keys only, so large scanner caches are cheap
+  private static final int COUNT_SCAN_CACHING = 1000;
+  private static final int COUNT_MAX_THREADS = 8;
+
   protected Configuration m_config = null;
   protected org.apache.hadoop.hbase.client.HBaseAdmin m_admin;
 
+  // null if the connection is not pooled
+  protected SharedHBaseConnection m_sharedConnection;
+
   protected HTable m_sourceTable;
   protected Scan m_sourceScan;
   protected ResultScanner m_resultSet;
   protected Result m_currentResultSetRow;
+  protected ScanStatistics m_scanStats = new ScanStatistics();
+  protected ScanOptions.KeyMode m_sourceScanKeyMode;
+
+  // the number of salt buckets the source scan fans out to, 0 if not salted
+  protected int m_sourceScanSaltBuckets;
+
+  // resolved once per connection, the lookups are reflective
+  protected Class<?> m_byteArrayComparableClass;
+  protected Constructor<?> m_numericLongComparatorCtor;
+  protected Constructor<?> m_numericDoubleComparatorCtor;
+  protected Constructor<?> m_booleanComparatorCtor;
+  protected Map<Class<?>, Constructor<SingleColumnValueFilter>> m_columnValueFilterCtors =
+      new HashMap<Class<?>, Constructor<SingleColumnValueFilter>>();
+  protected Map<ColumnFilter, ColumnFilterTemplate> m_filterTemplates = new WeakHashMap<ColumnFilter, ColumnFilterTemplate>();
   protected HTable m_targetTable;
   protected Put m_currentTargetPut;
 
+  protected List<Put> m_targetPutBatch = new ArrayList<Put>();
+  protected long m_targetPutBatchBytes;
+  protected BatchWriteStatistics m_targetPutBatchStats = new BatchWriteStatistics();
+  protected List<Delete> m_targetDeleteBatch = new ArrayList<Delete>();
+  protected long m_targetDeleteBatchBytes;
+  protected BatchWriteStatistics m_targetDeleteBatchStats = new BatchWriteStatistics();
+
+  // limits shared by put and delete batches
+  protected int m_maxWriteBatchRows = DEFAULT_PUT_BATCH_ROWS;
+  protected long m_maxWriteBatchBytes = DEFAULT_PUT_BATCH_BYTES;
+
+  // writes the put batches in the background if asynchronous writing is enabled
+  protected AsyncTableWriter m_asyncWriter;
+
   protected HBaseBytesUtilShim m_bytesUtil;
 
   public CommonHBaseConnection() {
@@ -91,6 +140,16 @@ public class CommonHBaseConnection extends HBaseConnection {
     ClassLoader cl = Thread.currentThread().getContextClassLoader();
     Thread.currentThread().setContextClassLoader( getClass().getClassLoader() );
     try {
+      if ( m_admin != null ) {
+        // reconfigured, give the tables back to the connection they came from
+        closeSourceTable();
+        closeTargetTable();
+      }
+      if ( m_sharedConnection != null ) {
+        m_sharedConnection.release( this );
+        m_sharedConnection = null;
+      }
+
       String defaultConfig = connProps.getProperty( DEFAULTS_KEY );
       String siteConfig = connProps.getProperty( SITE_KEY );
       String zookeeperQuorum = connProps.getProperty( ZOOKEEPER_QUORUM_KEY );
@@ -129,6 +188,14 @@ public class CommonHBaseConnection extends HBaseConnection {
         }
       }
 
+      String pooled = connProps.getProperty( CONNECTION_POOLED_KEY );
+      if ( !isEmpty( pooled ) && Boolean.parseBoolean( pooled.trim() ) ) {
+        // the configuration is what HBase shares its connection by
+        m_sharedConnection =
+            SharedHBaseConnection.acquire( SharedHBaseConnection.connectionKey( connProps ), m_config, connProps, this );
+        m_config = m_sharedConnection.getConfiguration();
+      }
+
       m_admin = new org.apache.hadoop.hbase.client.HBaseAdmin( m_config );
     } finally {
       Thread.currentThread().setContextClassLoader( cl );
@@ -310,7 +377,7 @@ public class CommonHBaseConnection extends HBaseConnection {
     checkConfiguration();
 
     closeSourceTable();
-    m_sourceTable = new HTable( m_config, tableName );
+    m_sourceTable = openTable( tableName );
   }
 
   @Override
@@ -324,8 +391,94 @@ public class CommonHBaseConnection extends HBaseConnection {
     return ( !r.isEmpty() );
   }
 
+  @Override
+  public boolean[] sourceTableRowsExist( List<byte[]> rowKeys, int batchSize ) throws Exception {
+    checkConfiguration();
+    checkSourceTable();
+
+    boolean[] exist = new boolean[rowKeys.size()];
+    int i = 0;
+    for ( Result r : getRows( rowKeys, null, false, batchSize, true ) ) {
+      exist[i++] = r != null && !r.isEmpty();
+    }
+
+    return exist;
+  }
+
+  @Override
+  public List<Object> getSourceTableRows( List<byte[]> rowKeys, List<HBaseValueMeta> columns,
+      boolean colNamesAreBinary, int batchSize ) throws Exception {
+    checkConfiguration();
+    checkSourceTable();
+
+    List<Object> rows = new ArrayList<Object>( rowKeys.size() );
+    for ( Result r : getRows( rowKeys, columns, colNamesAreBinary, batchSize, false ) ) {
+      rows.add( r == null || r.isEmpty() ? null : r );
+    }
+
+    return rows;
+  }
+
+  /**
+   * Looks up rows of the source table with one multi-get per batch of keys.
+   * 
+   * @param keysOnly
+   *          true to only fetch the first key of each row (existence checks)
+   * @return the results in the order of the keys
+   */
+  protected List<Result> getRows( List<byte[]> rowKeys, List<HBaseValueMeta> columns, boolean colNamesAreBinary,
+      int batchSize, boolean keysOnly ) throws Exception {
+    if ( batchSize <= 0 ) {
+      batchSize = DEFAULT_GET_BATCH_SIZE;
+    }
+
+    byte[][] families = null;
+    byte[][] qualifiers = null;
+    if ( columns != null ) {
+      families = new byte[columns.size()][];
+      qualifiers = new byte[columns.size()][];
+      for ( int i = 0; i < columns.size(); i++ ) {
+        families[i] = m_bytesUtil.toBytes( columns.get( i ).getColumnFamily() );
+        String colName = columns.get( i ).getColumnName();
+        qualifiers[i] = colNamesAreBinary ? m_bytesUtil.toBytesBinary( colName ) : m_bytesUtil.toBytes( colName );
+      }
+    }
+
+    List<Result> results = new ArrayList<Result>( rowKeys.size() );
+    List<Get> gets = new ArrayList<Get>( Math.min( batchSize, rowKeys.size() ) );
+    for ( int start = 0; start < rowKeys.size(); start += batchSize ) {
+      gets.clear();
+      int end = Math.min( rowKeys.size(), start + batchSize );
+      for ( byte[] rowKey : rowKeys.subList( start, end ) ) {
+        Get g = new Get( rowKey );
+        if ( keysOnly ) {
+          g.setFilter( new FilterList( Arrays.<Filter> asList( new FirstKeyOnlyFilter(), new KeyOnlyFilter() ) ) );
+        } else if ( families != null ) {
+          for ( int i = 0; i < families.length; i++ ) {
+            g.addColumn( families[i], qualifiers[i] );
+          }
+        }
+        gets.add( g );
+      }
+
+      // returns the results in the order of the gets
+      Result[] batch = m_sourceTable.get( gets );
+      for ( Result r : batch ) {
+        results.add( r );
+      }
+    }
+
+    return results;
+  }
+
   @Override
   public void newSourceTableScan( byte[] keyLowerBound, byte[] keyUpperBound, int cacheSize ) throws Exception {
+    newSourceTableScan( keyLowerBound, keyUpperBound, cacheSize, null );
+  }
+
+  @Override
+  public void newSourceTableScan( byte[] keyLowerBound, byte[] keyUpperBound, int cacheSize, ScanOptions options )
+    throws Exception {
 
     checkConfiguration();
     checkSourceTable();
@@ -344,6 +497,45 @@ public class CommonHBaseConnection extends HBaseConnection {
     if ( cacheSize > 0 ) {
       m_sourceScan.setCaching( cacheSize );
     }
+
+    m_sourceScanKeyMode = null;
+    m_sourceScanSaltBuckets = 0;
+    if ( options != null ) {
+      configureScan( m_sourceScan, options );
+      // the key filters are combined with the column filters on execution
+      m_sourceScanKeyMode = options.getKeyMode();
+      // the bounds are salted per bucket on execution
+      if ( options.getSaltBuckets() != null && options.getSaltBuckets() > 1 ) {
+        m_sourceScanSaltBuckets = options.getSaltBuckets();
+      }
+    }
+  }
+
+  protected void configureScan( Scan scan, ScanOptions options ) throws Exception {
+    if ( options.getBatch() != null ) {
+      scan.setBatch( options.getBatch() );
+    }
+    if ( options.getCacheBlocks() != null ) {
+      scan.setCacheBlocks( options.getCacheBlocks() );
+    }
+    if ( options.getMaxVersions() != null ) {
+      scan.setMaxVersions( options.getMaxVersions() );
+    }
+    if ( options.getTimeRangeStart() != null || options.getTimeRangeEnd() != null ) {
+      long start = options.getTimeRangeStart() != null ? options.getTimeRangeStart() : 0L;
+      long end = options.getTimeRangeEnd() != null ? options.getTimeRangeEnd() : Long.MAX_VALUE;
+      scan.setTimeRange( start, end );
+    }
+    if ( options.getMaxResultSize() != null ) {
+      // Scan.setMaxResultSize() doesn't exist in HBase 0.90
+      Method setMaxResultSize;
+      try {
+        setMaxResultSize = scan.getClass().getMethod( "setMaxResultSize", long.class );
+      } catch ( NoSuchMethodException e ) {
+        throw new Exception( BaseMessages.getString( PKG, "CommonHBaseConnection.Error.MaxResultSizeNotSupported" ) );
+      }
+      setMaxResultSize.invoke( scan, options.getMaxResultSize() );
+    }
   }
 
   @Override
@@ -388,111 +580,161 @@ public class CommonHBaseConnection extends HBaseConnection {
 
       FilterList fl = (FilterList) m_sourceScan.getFilter();
 
-      CompareFilter.CompareOp comp = null;
-      byte[] family = m_bytesUtil.toBytes( columnMeta.getColumnFamily() );
-      byte[] qualifier = m_bytesUtil.toBytes( columnMeta.getColumnName() );
-      ColumnFilter.ComparisonType op = cf.getComparisonOperator();
+      ColumnFilterTemplate template = m_filterTemplates.get( cf );
+      if ( template == null || !template.isFor( cf, columnMeta ) ) {
+        template = new ColumnFilterTemplate( cf, columnMeta );
+        m_filterTemplates.put( cf, template );
+      }
+
+      String comparisonString = vars.environmentSubstitute( cf.getConstant().trim() );
+      SingleColumnValueFilter scf = template.bind( comparisonString, vars.environmentSubstitute( cf.getFormat() ) );
+      if ( scf != null ) {
+        fl.addFilter( scf );
+      }
+    } finally {
+      Thread.currentThread().setContextClassLoader( cl );
+    }
+  }
 
-      switch ( op ) {
+  /**
+   * The parts of a column filter that don't change between scans: the comparison, the column, the comparator type and
+   * the reflectively resolved constructors. Only the (variable substituted) constant and format are bound per scan.
+   */
+  protected class ColumnFilterTemplate {
+    protected final ColumnFilter.ComparisonType m_op;
+    protected final boolean m_signed;
+    protected final HBaseValueMeta m_columnMeta;
+
+    protected final CompareFilter.CompareOp m_comp;
+    protected final byte[] m_family;
+    protected final byte[] m_qualifier;
+
+    // comparator constructor for signed numbers, dates and booleans
+    protected Constructor<?> m_comparatorCtor;
+    protected Constructor<SingleColumnValueFilter> m_filterCtor;
+
+    // parsers for the last format bound, parsing doesn't change them
+    protected String m_format;
+    protected DecimalFormat m_decimalFormat;
+    protected SimpleDateFormat m_dateFormat;
+
+    public ColumnFilterTemplate( ColumnFilter cf, HBaseValueMeta columnMeta ) throws Exception {
+      m_op = cf.getComparisonOperator();
+      m_signed = cf.getSignedComparison();
+      m_columnMeta = columnMeta;
+
+      switch ( m_op ) {
         case EQUAL:
-          comp = CompareFilter.CompareOp.EQUAL;
+          m_comp = CompareFilter.CompareOp.EQUAL;
           break;
         case NOT_EQUAL:
-          comp = CompareFilter.CompareOp.NOT_EQUAL;
+          m_comp = CompareFilter.CompareOp.NOT_EQUAL;
           break;
         case GREATER_THAN:
-          comp = CompareFilter.CompareOp.GREATER;
+          m_comp = CompareFilter.CompareOp.GREATER;
           break;
         case GREATER_THAN_OR_EQUAL:
-          comp = CompareFilter.CompareOp.GREATER_OR_EQUAL;
+          m_comp = CompareFilter.CompareOp.GREATER_OR_EQUAL;
           break;
         case LESS_THAN:
-          comp = CompareFilter.CompareOp.LESS;
+          m_comp = CompareFilter.CompareOp.LESS;
           break;
         case LESS_THAN_OR_EQUAL:
-          comp = CompareFilter.CompareOp.LESS_OR_EQUAL;
+          m_comp = CompareFilter.CompareOp.LESS_OR_EQUAL;
           break;
         default:
-          comp = null;
+          m_comp = null;
           break;
       }
 
-      String comparisonString = cf.getConstant().trim();
-      comparisonString = vars.environmentSubstitute( comparisonString );
+      m_family = m_bytesUtil.toBytes( columnMeta.getColumnFamily() );
+      m_qualifier = m_bytesUtil.toBytes( columnMeta.getColumnName() );
+
+      Class<?> comparatorClass = getByteArrayComparableClassCached();
+      if ( m_comp != null ) {
+        if ( columnMeta.isNumeric() ) {
+          if ( m_signed ) {
+            // custom comparator for signed comparison, specific to each shim due to HBase API changes
+            m_comparatorCtor = getNumericComparatorConstructor( columnMeta.isInteger() );
+          } else {
+            // compared as raw bytes
+            comparatorClass = byte[].class;
+          }
+        } else if ( columnMeta.isDate() ) {
+          if ( m_signed ) {
+            m_comparatorCtor = getNumericComparatorConstructor( true );
+          } else {
+            comparatorClass = byte[].class;
+          }
+        } else if ( columnMeta.isBoolean() ) {
+          m_comparatorCtor = getBooleanComparatorConstructor();
+        }
+      }
+      m_filterCtor = getColumnValueFilterConstructor( comparatorClass );
+    }
+
+    /**
+     * @return true if this template was compiled for the filter and column in their current state
+     */
+    public boolean isFor( ColumnFilter cf, HBaseValueMeta columnMeta ) {
+      return m_op == cf.getComparisonOperator() && m_signed == cf.getSignedComparison() && m_columnMeta == columnMeta;
+    }
 
-      Class<?> comparatorClass = getByteArrayComparableClass();
+    /**
+     * Creates the filter for a comparison constant.
+     * 
+     * @param comparisonString
+     *          the comparison constant, variables substituted
+     * @param formatS
+     *          the number or date format, variables substituted
+     * @return the filter or null if the constant can't be compared with the column
+     */
+    public SingleColumnValueFilter bind( String comparisonString, String formatS ) throws Exception {
+      CompareFilter.CompareOp comp = m_comp;
       Object comparator = null;
 
       if ( comp != null ) {
 
         // do the numeric comparison stuff
-        if ( columnMeta.isNumeric() ) {
+        if ( m_columnMeta.isNumeric() ) {
 
           // Double/Float or Long/Integer
-          DecimalFormat df = new DecimalFormat();
-          String formatS = vars.environmentSubstitute( cf.getFormat() );
-          if ( !isEmpty( formatS ) ) {
-            df.applyPattern( formatS );
-          }
+          Number num = getDecimalFormat( formatS ).parse( comparisonString );
 
-          Number num = df.parse( comparisonString );
-
-          if ( cf.getSignedComparison() ) {
-            // custom comparator for signed comparison, specific to each shim due to HBase API changes
-            Class<?> deserializedNumericComparatorClass = getDeserializedNumericComparatorClass();
-            if ( columnMeta.isInteger() ) {
-              Constructor ctor =
-                  deserializedNumericComparatorClass.getConstructor( boolean.class, boolean.class, long.class );
-              if ( columnMeta.getIsLongOrDouble() ) {
-                comparator = ctor.newInstance( columnMeta.isInteger(), columnMeta.getIsLongOrDouble(), num.longValue() );
-              } else {
-                comparator =
-                    ctor.newInstance( columnMeta.isInteger(), columnMeta.getIsLongOrDouble(), (long) num.intValue() );
-              }
+          if ( m_signed ) {
+            if ( m_columnMeta.isInteger() ) {
+              comparator =
+                  m_comparatorCtor.newInstance( true, m_columnMeta.getIsLongOrDouble(),
+                      m_columnMeta.getIsLongOrDouble() ? num.longValue() : (long) num.intValue() );
             } else {
-              Constructor ctor =
-                  deserializedNumericComparatorClass.getConstructor( boolean.class, boolean.class, double.class );
-              if ( columnMeta.getIsLongOrDouble() ) {
-                comparator =
-                    ctor.newInstance( columnMeta.isInteger(), columnMeta.getIsLongOrDouble(), num.doubleValue() );
-              } else {
-                comparator =
-                    ctor.newInstance( columnMeta.isInteger(), columnMeta.getIsLongOrDouble(), (double) num.floatValue() );
-              }
+              comparator =
+                  m_comparatorCtor.newInstance( false, m_columnMeta.getIsLongOrDouble(),
+                      m_columnMeta.getIsLongOrDouble() ? num.doubleValue() : (double) num.floatValue() );
             }
-          } else if ( columnMeta.isInteger() ) {
-            comparatorClass = byte[].class;
-            if ( !columnMeta.getIsLongOrDouble() ) {
+          } else if ( m_columnMeta.isInteger() ) {
+            if ( !m_columnMeta.getIsLongOrDouble() ) {
               comparator = m_bytesUtil.toBytes( num.intValue() );
             } else {
               comparator = m_bytesUtil.toBytes( num.longValue() );
             }
           } else {
-            if ( !columnMeta.getIsLongOrDouble() ) {
+            if ( !m_columnMeta.getIsLongOrDouble() ) {
               comparator = m_bytesUtil.toBytes( num.floatValue() );
             } else {
               comparator = m_bytesUtil.toBytes( num.doubleValue() );
             }
           }
-        } else if ( columnMeta.isDate() ) {
-          SimpleDateFormat sdf = new SimpleDateFormat();
-          String formatS = vars.environmentSubstitute( cf.getFormat() );
-          if ( !isEmpty( formatS ) ) {
-            sdf.applyPattern( formatS );
-          }
-          Date d = sdf.parse( comparisonString );
+        } else if ( m_columnMeta.isDate() ) {
+          Date d = getDateFormat( formatS ).parse( comparisonString );
 
           long dateAsMillis = d.getTime();
-          if ( !cf.getSignedComparison() ) {
+          if ( !m_signed ) {
             comparator = m_bytesUtil.toBytes( dateAsMillis );
           } else {
             // custom comparator for signed comparison
-            Class<?> deserializedNumericComparatorClass = getDeserializedNumericComparatorClass();
-            Constructor ctor =
-                deserializedNumericComparatorClass.getConstructor( boolean.class, boolean.class, long.class );
-            comparator = ctor.newInstance( true, true, dateAsMillis );
+            comparator = m_comparatorCtor.newInstance( true, true, dateAsMillis );
           }
-        } else if ( columnMeta.isBoolean() ) {
+        } else if ( m_columnMeta.isBoolean() ) {
 
           // temporarily encode it so that we can use the utility routine in
           // HBaseValueMeta
@@ -500,33 +742,96 @@ public class CommonHBaseConnection extends HBaseConnection {
           Boolean decodedB = HBaseValueMeta.decodeBoolFromString( tempEncoded, m_bytesUtil );
           // skip if we can't parse the comparison value
           if ( decodedB == null ) {
-            return;
+            return null;
           }
 
-          Class<?> deserializedBooleanComparatorClass = getDeserializedBooleanComparatorClass();
-          Constructor ctor = deserializedBooleanComparatorClass.getConstructor( boolean.class );
-          comparator = ctor.newInstance( decodedB.booleanValue() );
+          comparator = m_comparatorCtor.newInstance( decodedB.booleanValue() );
         }
       } else {
         comp = CompareFilter.CompareOp.EQUAL;
-        if ( cf.getComparisonOperator() == ColumnFilter.ComparisonType.SUBSTRING ) {
+        if ( m_op == ColumnFilter.ComparisonType.SUBSTRING ) {
           comparator = new SubstringComparator( comparisonString );
         } else {
           comparator = new RegexStringComparator( comparisonString );
         }
       }
 
-      if ( comparator != null ) {
-        Constructor<SingleColumnValueFilter> scvfCtor =
-            SingleColumnValueFilter.class.getConstructor( byte[].class, byte[].class, CompareFilter.CompareOp.class,
-                comparatorClass );
-        SingleColumnValueFilter scf = scvfCtor.newInstance( family, qualifier, comp, comparator );
-        scf.setFilterIfMissing( true );
-        fl.addFilter( scf );
+      if ( comparator == null ) {
+        return null;
       }
-    } finally {
-      Thread.currentThread().setContextClassLoader( cl );
+
+      SingleColumnValueFilter scf = m_filterCtor.newInstance( m_family, m_qualifier, comp, comparator );
+      scf.setFilterIfMissing( true );
+      return scf;
+    }
+
+    protected DecimalFormat getDecimalFormat( String formatS ) {
+      if ( m_decimalFormat == null || !sameFormat( formatS ) ) {
+        m_decimalFormat = new DecimalFormat();
+        if ( !isEmpty( formatS ) ) {
+          m_decimalFormat.applyPattern( formatS );
+        }
+        m_format = formatS;
+      }
+      return m_decimalFormat;
     }
+
+    protected SimpleDateFormat getDateFormat( String formatS ) {
+      if ( m_dateFormat == null || !sameFormat( formatS ) ) {
+        m_dateFormat = new SimpleDateFormat();
+        if ( !isEmpty( formatS ) ) {
+          m_dateFormat.applyPattern( formatS );
+        }
+        m_format = formatS;
+      }
+      return m_dateFormat;
+    }
+
+    private boolean sameFormat( String formatS ) {
+      return m_format == null ? formatS == null : m_format.equals( formatS );
+    }
+  }
+
+  protected Class<?> getByteArrayComparableClassCached() throws ClassNotFoundException {
+    if ( m_byteArrayComparableClass == null ) {
+      m_byteArrayComparableClass = getByteArrayComparableClass();
+    }
+    return m_byteArrayComparableClass;
+  }
+
+  protected Constructor<?> getNumericComparatorConstructor( boolean integer ) throws Exception {
+    if ( integer ) {
+      if ( m_numericLongComparatorCtor == null ) {
+        m_numericLongComparatorCtor =
+            getDeserializedNumericComparatorClass().getConstructor( boolean.class, boolean.class, long.class );
+      }
+      return m_numericLongComparatorCtor;
+    }
+
+    if ( m_numericDoubleComparatorCtor == null ) {
+      m_numericDoubleComparatorCtor =
+          getDeserializedNumericComparatorClass().getConstructor( boolean.class, boolean.class, double.class );
+    }
+    return m_numericDoubleComparatorCtor;
+  }
+
+  protected Constructor<?> getBooleanComparatorConstructor() throws Exception {
+    if ( m_booleanComparatorCtor == null ) {
+      m_booleanComparatorCtor = getDeserializedBooleanComparatorClass().getConstructor( boolean.class );
+    }
+    return m_booleanComparatorCtor;
+  }
+
+  protected Constructor<SingleColumnValueFilter> getColumnValueFilterConstructor( Class<?> comparatorClass )
+    throws Exception {
+    Constructor<SingleColumnValueFilter> ctor = m_columnValueFilterCtors.get( comparatorClass );
+    if ( ctor == null ) {
+      ctor =
+          SingleColumnValueFilter.class.getConstructor( byte[].class, byte[].class, CompareFilter.CompareOp.class,
+              comparatorClass );
+      m_columnValueFilterCtors.put( comparatorClass, ctor );
+    }
+    return ctor;
   }
 
   // TODO - Override this method if necessary! Older HBase versions use WritableByteArrayComparable
@@ -580,14 +885,116 @@ public class CommonHBaseConnection extends HBaseConnection {
     checkConfiguration();
     checkSourceTable();
     checkSourceScan();
+    prepareScanFilter();
+
+    if ( m_sourceScanSaltBuckets > 1 ) {
+      m_resultSet = new SaltedMergeScanner( m_sourceTable, m_sourceScan, m_sourceScanSaltBuckets );
+    } else {
+      m_resultSet = m_sourceTable.getScanner( m_sourceScan );
+    }
+  }
+
+  @Override
+  public void executeSourceTableParallelScan( int maxThreads, boolean ordered ) throws Exception {
+    if ( maxThreads < 2 ) {
+      executeSourceTableScan();
+      return;
+    }
 
+    checkConfiguration();
+    checkSourceTable();
+    checkSourceScan();
+    prepareScanFilter();
+
+    m_scanStats.reset();
+    if ( m_sourceScanSaltBuckets > 1 ) {
+      if ( ordered && m_sourceScanSaltBuckets <= maxThreads ) {
+        // merging the buckets needs all of them at once
+        m_resultSet =
+            new SaltedBucketScanner( m_config, m_sourceTable, m_sourceScan, m_sourceScanSaltBuckets, m_scanStats );
+      } else if ( ordered ) {
+        // more buckets than threads, merge them on the caller's thread
+        m_resultSet = new SaltedMergeScanner( m_sourceTable, m_sourceScan, m_sourceScanSaltBuckets );
+      } else {
+        m_resultSet =
+            new ParallelRegionScanner( m_config, m_sourceTable.getTableName(), SaltedBucketScanner.bucketScans(
+                m_sourceScan, m_sourceScanSaltBuckets ), maxThreads, false, Math.max( m_sourceScan.getCaching(), 100 ) * 2,
+                m_scanStats );
+      }
+    } else {
+      m_resultSet = new ParallelRegionScanner( m_config, m_sourceTable, m_sourceScan, maxThreads, ordered, m_scanStats );
+    }
+  }
+
+  @Override
+  public void executeSourceTablePrefetchScan( int prefetchRows ) throws Exception {
+    executeSourceTableScan();
+
+    if ( prefetchRows <= 0 ) {
+      // read a whole scanner cache ahead while the current one is consumed
+      prefetchRows = Math.max( m_sourceScan.getCaching(), 1 ) * 2;
+    }
+    m_scanStats.reset();
+    m_resultSet = new PrefetchingResultScanner( m_resultSet, prefetchRows, m_scanStats );
+  }
+
+  @Override
+  public ScanStatistics getSourceTableScanStatistics() throws Exception {
+    return m_scanStats;
+  }
+
+  protected void prepareScanFilter() {
     if ( m_sourceScan.getFilter() != null ) {
       if ( ( (FilterList) m_sourceScan.getFilter() ).getFilters().size() == 0 ) {
         m_sourceScan.setFilter( null );
       }
     }
 
-    m_resultSet = m_sourceTable.getScanner( m_sourceScan );
+    if ( m_sourceScanKeyMode != null ) {
+      List<Filter> filters = new ArrayList<Filter>();
+      if ( m_sourceScan.getFilter() != null ) {
+        // the column filters have to see the values, they go first
+        filters.add( m_sourceScan.getFilter() );
+      } else if ( m_sourceScanKeyMode == ScanOptions.KeyMode.FIRST_KEY_ONLY ) {
+        // skipping the rest of the row would hide the filtered columns, so
+        // this is only done without column filters
+        filters.add( new FirstKeyOnlyFilter() );
+      }
+      filters.add( new KeyOnlyFilter() );
+      m_sourceScan.setFilter( new FilterList( FilterList.Operator.MUST_PASS_ALL, filters ) );
+
+      // applied once per scan
+      m_sourceScanKeyMode = null;
+    }
+  }
+
+  @Override
+  public long countSourceTableRows( byte[] keyLowerBound, byte[] keyUpperBound ) throws Exception {
+    checkConfiguration();
+    checkSourceTable();
+
+    Scan scan = new Scan();
+    if ( keyLowerBound != null ) {
+      scan.setStartRow( keyLowerBound );
+    }
+    if ( keyUpperBound != null ) {
+      scan.setStopRow( keyUpperBound );
+    }
+    scan.setCaching( COUNT_SCAN_CACHING );
+    scan.setCacheBlocks( false );
+    scan.setFilter( new FilterList( Arrays.<Filter> asList( new FirstKeyOnlyFilter(), new KeyOnlyFilter() ) ) );
+
+    long count = 0;
+    ResultScanner scanner = new ParallelRegionScanner( m_config, m_sourceTable, scan, COUNT_MAX_THREADS, false, null );
+    try {
+      while ( scanner.next() != null ) {
+        count++;
+      }
+    } finally {
+      scanner.close();
+    }
+
+    return count;
   }
 
   @Override
@@ -638,6 +1045,16 @@ public class CommonHBaseConnection extends HBaseConnection {
     return result;
   }
 
+  @Override
+  public byte[] getRowColumnLatest( Object aRow, byte[] colFamily, byte[] colName ) throws Exception {
+
+    if ( !checkForHBaseRow( aRow ) ) {
+      throw new Exception( BaseMessages.getString( PKG, "CommonHBaseConnection.Error.ObjectIsNotAnHBaseRow" ) );
+    }
+
+    return ( (Result) aRow ).getValue( colFamily, colName );
+  }
+
   @Override
   public byte[] getResultSetCurrentRowColumnLatest( String colFamilyName, String colName, boolean colNameIsBinary )
     throws Exception {
@@ -704,7 +1121,19 @@ public class CommonHBaseConnection extends HBaseConnection {
     checkConfiguration();
     closeTargetTable();
 
-    m_targetTable = new HTable( m_config, tableName );
+    m_targetTable = openTable( tableName );
+    m_targetPutBatch.clear();
+    m_targetPutBatchBytes = 0;
+    m_targetPutBatchStats.reset();
+    m_targetDeleteBatch.clear();
+    m_targetDeleteBatchBytes = 0;
+    m_targetDeleteBatchStats.reset();
+    m_maxWriteBatchRows = DEFAULT_PUT_BATCH_ROWS;
+    m_maxWriteBatchBytes = DEFAULT_PUT_BATCH_BYTES;
+    long writeBufferSize = -1;
+    boolean batchBytesSet = false;
+    boolean asyncWrite = false;
+    long maxInFlightBytes = DEFAULT_ASYNC_MAX_IN_FLIGHT_BYTES;
 
     if ( props != null ) {
       Set<Object> keys = props.keySet();
@@ -712,11 +1141,29 @@ public class CommonHBaseConnection extends HBaseConnection {
         String value = props.getProperty( key.toString() );
 
         if ( key.toString().equals( HTABLE_WRITE_BUFFER_SIZE_KEY ) ) {
-          m_targetTable.setWriteBufferSize( Long.parseLong( value ) );
+          writeBufferSize = Long.parseLong( value );
+          m_targetTable.setWriteBufferSize( writeBufferSize );
           m_targetTable.setAutoFlush( false );
+        } else if ( key.toString().equals( HTABLE_PUT_BATCH_ROWS_KEY ) ) {
+          m_maxWriteBatchRows = Integer.parseInt( value );
+        } else if ( key.toString().equals( HTABLE_PUT_BATCH_BYTES_KEY ) ) {
+          m_maxWriteBatchBytes = Long.parseLong( value );
+          batchBytesSet = true;
+        } else if ( key.toString().equals( HTABLE_ASYNC_WRITE_KEY ) ) {
+          asyncWrite = Boolean.parseBoolean( value );
+        } else if ( key.toString().equals( HTABLE_ASYNC_MAX_IN_FLIGHT_BYTES_KEY ) ) {
+          maxInFlightBytes = Long.parseLong( value );
         }
       }
     }
+
+    if ( writeBufferSize > 0 && !batchBytesSet ) {
+      m_maxWriteBatchBytes = writeBufferSize;
+    }
+
+    if ( asyncWrite ) {
+      m_asyncWriter = new AsyncTableWriter( m_targetTable, maxInFlightBytes, m_targetPutBatchStats );
+    }
   }
 
   @Override
@@ -734,30 +1181,168 @@ public class CommonHBaseConnection extends HBaseConnection {
     m_currentTargetPut.setWriteToWAL( writeToWAL );
   }
 
+  @Override
+  public void newTargetTablePut( byte[] key, int offset, int length, boolean writeToWAL ) throws Exception {
+    // the put keeps the row array, it can't be the caller's
+    newTargetTablePut( Arrays.copyOfRange( key, offset, offset + length ), writeToWAL );
+  }
+
   @Override
   public void executeTargetTablePut() throws Exception {
     checkConfiguration();
     checkTargetTable();
     checkTargetPut();
 
+    if ( m_asyncWriter != null ) {
+      // the table belongs to the background writer, single puts are batched too
+      addTargetTablePutToBatch();
+      return;
+    }
+
+    // keep the order of writes if batched puts or deletes are still pending
+    flushTargetTableDeleteBatch();
+    flushTargetTablePutBatch();
     m_targetTable.put( m_currentTargetPut );
   }
 
+  @Override
+  public void addTargetTablePutToBatch() throws Exception {
+    checkConfiguration();
+    checkTargetTable();
+    checkTargetPut();
+    if ( m_asyncWriter != null ) {
+      m_asyncWriter.checkFailure();
+    }
+    flushTargetTableDeleteBatch();
+
+    m_targetPutBatch.add( m_currentTargetPut );
+    m_targetPutBatchBytes += m_currentTargetPut.heapSize();
+    m_currentTargetPut = null;
+
+    if ( m_targetPutBatch.size() >= m_maxWriteBatchRows || m_targetPutBatchBytes >= m_maxWriteBatchBytes ) {
+      flushTargetTablePutBatch();
+    }
+  }
+
+  @Override
+  public void flushTargetTablePutBatch() throws Exception {
+    checkConfiguration();
+    checkTargetTable();
+
+    if ( m_targetPutBatch.isEmpty() ) {
+      return;
+    }
+
+    if ( m_asyncWriter != null ) {
+      // hand the full buffer over and continue with an empty one
+      List<Put> batch = m_targetPutBatch;
+      long bytes = m_targetPutBatchBytes;
+      m_targetPutBatch = m_asyncWriter.newBuffer();
+      m_targetPutBatchBytes = 0;
+      m_asyncWriter.submit( batch, bytes );
+      return;
+    }
+
+    int rows = m_targetPutBatch.size();
+    long start = System.nanoTime();
+    try {
+      // HTable.put(List) groups the puts by region server and sends them as
+      // multi-puts. If the table isn't auto flush they go to its write buffer
+      m_targetTable.put( m_targetPutBatch );
+    } finally {
+      // HTable keeps the puts it failed to send in its write buffer, don't
+      // send them a second time
+      m_targetPutBatch.clear();
+      m_targetPutBatchBytes = 0;
+    }
+    m_targetPutBatchStats.recordFlush( rows, System.nanoTime() - start );
+  }
+
+  @Override
+  public BatchWriteStatistics getTargetTablePutBatchStatistics() throws Exception {
+    checkTargetTable();
+
+    return m_targetPutBatchStats;
+  }
+
   @Override
   public void executeTargetTableDelete( byte[] rowKey ) throws Exception {
     checkConfiguration();
     checkTargetTable();
+    flushTargetTableDeleteBatch();
+    flushTargetTablePutBatch();
+    if ( m_asyncWriter != null ) {
+      m_asyncWriter.awaitWritten();
+    }
 
     Delete d = new Delete( rowKey );
     m_targetTable.delete( d );
   }
 
+  @Override
+  public void addTargetTableDeleteToBatch( byte[] rowKey ) throws Exception {
+    checkConfiguration();
+    checkTargetTable();
+    flushTargetTablePutBatch();
+
+    m_targetDeleteBatch.add( new Delete( rowKey ) );
+    // a row delete carries little more than its key
+    m_targetDeleteBatchBytes += rowKey.length + DELETE_OVERHEAD_BYTES;
+
+    if ( m_targetDeleteBatch.size() >= m_maxWriteBatchRows || m_targetDeleteBatchBytes >= m_maxWriteBatchBytes ) {
+      flushTargetTableDeleteBatch();
+    }
+  }
+
+  @Override
+  public void flushTargetTableDeleteBatch() throws Exception {
+    checkConfiguration();
+    checkTargetTable();
+
+    if ( m_targetDeleteBatch.isEmpty() ) {
+      return;
+    }
+
+    // deletes aren't buffered by HTable, puts still pending have to be written
+    // first
+    if ( m_asyncWriter != null ) {
+      m_asyncWriter.awaitWritten();
+    } else if ( !m_targetTable.isAutoFlush() ) {
+      m_targetTable.flushCommits();
+    }
+
+    int rows = m_targetDeleteBatch.size();
+    long start = System.nanoTime();
+    try {
+      // HTable.delete(List) groups the deletes by region server
+      m_targetTable.delete( m_targetDeleteBatch );
+    } finally {
+      m_targetDeleteBatch.clear();
+      m_targetDeleteBatchBytes = 0;
+    }
+    m_targetDeleteBatchStats.recordFlush( rows, System.nanoTime() - start );
+  }
+
+  @Override
+  public BatchWriteStatistics getTargetTableDeleteBatchStatistics() throws Exception {
+    checkTargetTable();
+
+    return m_targetDeleteBatchStats;
+  }
+
   @Override
   public void flushCommitsTargetTable() throws Exception {
     checkConfiguration();
     checkTargetTable();
 
-    m_targetTable.flushCommits();
+    flushTargetTableDeleteBatch();
+    flushTargetTablePutBatch();
+    if ( m_asyncWriter != null ) {
+      // the background writer flushes the commits of every batch
+      m_asyncWriter.awaitWritten();
+    } else {
+      m_targetTable.flushCommits();
+    }
   }
 
   @Override
@@ -771,16 +1356,47 @@ public class CommonHBaseConnection extends HBaseConnection {
         .toBytesBinary( columnName ) : m_bytesUtil.toBytes( columnName ), colValue );
   }
 
+  @Override
+  public void addColumnToTargetPut( byte[] columnFamily, byte[] columnName, byte[] colValue, int offset, int length )
+    throws Exception {
+
+    checkTargetTable();
+    checkTargetPut();
+
+    // the KeyValue copies the slice into its own array, the same as the
+    // KeyValue that Put.add() creates would
+    byte[] row = m_currentTargetPut.getRow();
+    m_currentTargetPut.add( new KeyValue( row, 0, row.length, columnFamily, 0, columnFamily.length, columnName, 0,
+        columnName.length, m_currentTargetPut.getTimeStamp(), KeyValue.Type.Put, colValue, offset, length ) );
+  }
+
   @Override
   public void closeTargetTable() throws Exception {
     checkConfiguration();
 
     if ( m_targetTable != null ) {
-      if ( !m_targetTable.isAutoFlush() ) {
-        flushCommitsTargetTable();
+      try {
+        if ( m_asyncWriter != null ) {
+          AsyncTableWriter writer = m_asyncWriter;
+          try {
+            flushTargetTableDeleteBatch();
+            flushTargetTablePutBatch();
+          } finally {
+            m_asyncWriter = null;
+            writer.close();
+          }
+        } else if ( !m_targetTable.isAutoFlush() ) {
+          flushCommitsTargetTable();
+        } else {
+          flushTargetTableDeleteBatch();
+          flushTargetTablePutBatch();
+        }
+      } finally {
+        // a pooled handle with unwritten puts left is closed, not reused
+        HTable table = m_targetTable;
+        m_targetTable = null;
+        releaseTable( table );
       }
-      m_targetTable.close();
-      m_targetTable = null;
     }
   }
 
@@ -802,8 +1418,41 @@ public class CommonHBaseConnection extends HBaseConnection {
     closeSourceResultSet();
 
     if ( m_sourceTable != null ) {
-      m_sourceTable.close();
+      HTable table = m_sourceTable;
       m_sourceTable = null;
+      releaseTable( table );
+    }
+  }
+
+  /**
+   * Opens a table, borrowing a handle from the shared connection if this connection is pooled.
+   * 
+   * @param tableName
+   *          the name of the table
+   * @return the table handle
+   * @throws Exception
+   *           if a problem occurs
+   */
+  protected HTable openTable( String tableName ) throws Exception {
+    if ( m_sharedConnection != null ) {
+      return m_sharedConnection.borrowTable( tableName );
+    }
+    return new HTable( m_config, tableName );
+  }
+
+  /**
+   * Closes a table handle from {@link #openTable(String)}, or gives it back to the shared connection.
+   * 
+   * @param table
+   *          the table handle
+   * @throws Exception
+   *           if a problem occurs
+   */
+  protected void releaseTable( HTable table ) throws Exception {
+    if ( m_sharedConnection != null ) {
+      m_sharedConnection.releaseTable( table );
+    } else {
+      table.close();
     }
   }
 
@@ -0,0 +1,247 @@
+/*******************************************************************************
+ *
+ * Pentaho Big Data
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.hbase.shim.common;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Pair;
+import org.pentaho.hbase.shim.spi.ScanStatistics;
+
+/**
+ * Scans the regions covered by a scan concurrently on a bounded thread pool. The scan's key range is split at region
+ * boundaries and every region part is read by its own scanner into a bounded queue.
+ * <p>
+ * An ordered scanner returns the rows region by region, i.e. in key order like a normal scan. An unordered scanner
+ * returns rows as soon as any region delivers them, which keeps all threads busy but interleaves the regions.
+ */
+class ParallelRegionScanner extends QueuedResultScanner {
+
+  private final Configuration m_config;
+  private final byte[] m_tableName;
+  private final boolean m_ordered;
+  private final ExecutorService m_pool;
+
+  // ordered: one queue per region part; unordered: one queue shared by all
+  protected final List<BlockingQueue<Object>> m_queues = new ArrayList<BlockingQueue<Object>>();
+  private int m_currentQueue;
+  private int m_regionsLeft;
+
+  /**
+   * Starts scanning. Each region part is read with its own {@link HTable} as HTable is not thread safe.
+   * 
+   * @param config
+   *          the configuration to create the tables with
+   * @param table
+   *          the table to scan
+   * @param scan
+   *          the scan to execute, copied for each region part
+   * @param maxThreads
+   *          the maximum number of regions to scan at the same time
+   * @param ordered
+   *          true to return the rows in key order
+   * @param stats
+   *          receives the queue depth and wait time of the rows, may be null
+   */
+  ParallelRegionScanner( Configuration config, HTable table, Scan scan, int maxThreads, boolean ordered,
+      ScanStatistics stats ) throws IOException {
+    this( config, table.getTableName(), splitAtRegions( scan, table.getStartEndKeys() ), maxThreads, ordered, Math
+        .max( scan.getCaching(), 100 ) * 2, stats );
+  }
+
+  /**
+   * Starts scanning key ranges that have been split up already.
+   * 
+   * @param parts
+   *          the scans of the key ranges, in the order an ordered scanner returns them
+   * @param queueCapacity
+   *          the number of rows buffered per queue
+   */
+  ParallelRegionScanner( Configuration config, byte[] tableName, List<Scan> parts, int maxThreads, boolean ordered,
+      int queueCapacity, ScanStatistics stats ) {
+    super( stats );
+    m_config = config;
+    m_tableName = tableName;
+    m_ordered = ordered;
+    m_regionsLeft = parts.size();
+
+    if ( !ordered ) {
+      m_queues.add( new ArrayBlockingQueue<Object>( queueCapacity ) );
+    }
+
+    m_pool = Executors.newFixedThreadPool( Math.max( 1, Math.min( maxThreads, parts.size() ) ), new ThreadFactory() {
+      private int m_count;
+
+      @Override
+      public synchronized Thread newThread( Runnable r ) {
+        Thread t = new Thread( r, "HBase region scanner " + Bytes.toString( m_tableName ) + "-" + ( ++m_count ) );
+        t.setDaemon( true );
+        t.setContextClassLoader( ParallelRegionScanner.class.getClassLoader() );
+        return t;
+      }
+    } );
+
+    // the pool runs the region parts in key order, so the part an ordered scan
+    // is waiting for is always running or done
+    for ( Scan part : parts ) {
+      BlockingQueue<Object> queue;
+      if ( ordered ) {
+        queue = new ArrayBlockingQueue<Object>( queueCapacity );
+        m_queues.add( queue );
+      } else {
+        queue = m_queues.get( 0 );
+      }
+      m_pool.execute( new RegionScan( part, queue ) );
+    }
+    m_pool.shutdown();
+  }
+
+  /**
+   * Splits the key range of a scan at the region boundaries.
+   * 
+   * @return one scan per region overlapping the range, in key order
+   */
+  static List<Scan> splitAtRegions( Scan scan, Pair<byte[][], byte[][]> startEndKeys ) throws IOException {
+    byte[] scanStart = scan.getStartRow();
+    byte[] scanStop = scan.getStopRow();
+    byte[][] starts = startEndKeys.getFirst();
+    byte[][] ends = startEndKeys.getSecond();
+
+    List<Scan> parts = new ArrayList<Scan>( starts.length );
+    for ( int i = 0; i < starts.length; i++ ) {
+      byte[] regionStart = starts[i];
+      byte[] regionEnd = ends[i];
+
+      // an empty end key is the end of the table (or of an open ended scan)
+      if ( regionEnd.length > 0 && Bytes.compareTo( regionEnd, scanStart ) <= 0 ) {
+        continue;
+      }
+      if ( scanStop.length > 0 && Bytes.compareTo( regionStart, scanStop ) >= 0 ) {
+        continue;
+      }
+
+      byte[] start = Bytes.compareTo( regionStart, scanStart ) > 0 ? regionStart : scanStart;
+      byte[] stop;
+      if ( regionEnd.length == 0 ) {
+        stop = scanStop;
+      } else if ( scanStop.length == 0 ) {
+        stop = regionEnd;
+      } else {
+        stop = Bytes.compareTo( regionEnd, scanStop ) < 0 ? regionEnd : scanStop;
+      }
+
+      Scan part = new Scan( scan );
+      part.setStartRow( start );
+      part.setStopRow( stop );
+      parts.add( part );
+    }
+
+    return parts;
+  }
+
+  private class RegionScan implements Runnable {
+    private final Scan m_scan;
+    private final BlockingQueue<Object> m_queue;
+
+    RegionScan( Scan scan, BlockingQueue<Object> queue ) {
+      m_scan = scan;
+      m_queue = queue;
+    }
+
+    @Override
+    public void run() {
+      HTable table = null;
+      ResultScanner scanner = null;
+      try {
+        try {
+          table = new HTable( m_config, m_tableName );
+          scanner = table.getScanner( m_scan );
+          for ( Result r = scanner.next(); r != null; r = scanner.next() ) {
+            if ( !enqueue( m_queue, r ) ) {
+              return;
+            }
+          }
+          enqueue( m_queue, END_OF_ROWS );
+        } catch ( InterruptedException ex ) {
+          throw ex;
+        } catch ( Exception ex ) {
+          enqueue( m_queue, new Failure( ex ) );
+        } finally {
+          if ( scanner != null ) {
+            scanner.close();
+          }
+          if ( table != null ) {
+            table.close();
+          }
+        }
+      } catch ( InterruptedException ex ) {
+        // the scanner was closed
+        Thread.currentThread().interrupt();
+      } catch ( IOException ex ) {
+        // closing the table failed, the rows have been delivered
+      }
+    }
+  }
+
+  @Override
+  public Result next() throws IOException {
+    while ( m_regionsLeft > 0 && !m_closed ) {
+      Object next = take( m_queues.get( m_currentQueue ) );
+
+      if ( next == END_OF_ROWS ) {
+        m_regionsLeft--;
+        if ( m_ordered ) {
+          m_currentQueue++;
+        }
+      } else if ( next instanceof Failure ) {
+        throw failed( (Failure) next );
+      } else {
+        return (Result) next;
+      }
+    }
+
+    return null;
+  }
+
+  @Override
+  public void close() {
+    if ( !m_closed ) {
+      m_closed = true;
+      // region scans blocked on a full queue give up, the others stop here
+      m_pool.shutdownNow();
+    }
+  }
+}
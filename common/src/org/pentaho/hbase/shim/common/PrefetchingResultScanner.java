@@ -0,0 +1,111 @@
+/*******************************************************************************
+ *
+ * Pentaho Big Data
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.hbase.shim.common;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.pentaho.hbase.shim.spi.ScanStatistics;
+
+/**
+ * Reads ahead of the caller: a background thread pulls rows from the wrapped scanner into a bounded queue, so the
+ * scanner's next round trip overlaps with the processing of the rows already fetched.
+ */
+class PrefetchingResultScanner extends QueuedResultScanner {
+
+  private final ResultScanner m_scanner;
+  private final BlockingQueue<Object> m_queue;
+  private boolean m_done;
+
+  /**
+   * @param scanner
+   *          the scanner to read ahead of, closed by this scanner
+   * @param capacity
+   *          the maximum number of rows to read ahead
+   * @param stats
+   *          receives the queue depth and wait time of the rows, may be null
+   */
+  PrefetchingResultScanner( ResultScanner scanner, int capacity, ScanStatistics stats ) {
+    super( stats );
+    m_scanner = scanner;
+    m_queue = new ArrayBlockingQueue<Object>( capacity );
+
+    Thread fetcher = new Thread( new Runnable() {
+      @Override
+      public void run() {
+        fetch();
+      }
+    }, "HBase scan prefetch" );
+    fetcher.setDaemon( true );
+    fetcher.setContextClassLoader( PrefetchingResultScanner.class.getClassLoader() );
+    fetcher.start();
+  }
+
+  private void fetch() {
+    try {
+      try {
+        for ( Result r = m_scanner.next(); r != null; r = m_scanner.next() ) {
+          if ( !enqueue( m_queue, r ) ) {
+            return;
+          }
+        }
+        enqueue( m_queue, END_OF_ROWS );
+      } catch ( InterruptedException ex ) {
+        throw ex;
+      } catch ( Exception ex ) {
+        enqueue( m_queue, new Failure( ex ) );
+      } finally {
+        // the wrapped scanner is only used by this thread
+        m_scanner.close();
+      }
+    } catch ( InterruptedException ex ) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public Result next() throws IOException {
+    if ( m_done || m_closed ) {
+      return null;
+    }
+
+    Object next = take( m_queue );
+    if ( next == END_OF_ROWS ) {
+      m_done = true;
+      return null;
+    } else if ( next instanceof Failure ) {
+      throw failed( (Failure) next );
+    }
+    return (Result) next;
+  }
+
+  @Override
+  public void close() {
+    // the fetching thread notices this at its next row
+    m_closed = true;
+  }
+}
@@ -0,0 +1,161 @@
+/*******************************************************************************
+ *
+ * Pentaho Big Data
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.hbase.shim.common;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.pentaho.hbase.shim.spi.ScanStatistics;
+
+/**
+ * Base for result scanners whose rows are fetched by background threads into bounded queues. Besides the rows the
+ * queues carry an end marker and failures of the fetching threads.
+ */
+abstract class QueuedResultScanner implements ResultScanner {
+
+  protected static final Object END_OF_ROWS = new Object();
+
+  protected static class Failure {
+    final Exception m_cause;
+
+    Failure( Exception cause ) {
+      m_cause = cause;
+    }
+  }
+
+  // how often a fetching thread blocked on a full queue checks for close()
+  private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+  private final ScanStatistics m_stats;
+
+  protected volatile boolean m_closed;
+
+  protected QueuedResultScanner( ScanStatistics stats ) {
+    m_stats = stats;
+  }
+
+  /**
+   * Adds an element to a queue, waiting for space until the scanner is closed. Used by the fetching threads.
+   * 
+   * @return false if the scanner was closed
+   */
+  protected boolean enqueue( BlockingQueue<Object> queue, Object element ) throws InterruptedException {
+    while ( !m_closed ) {
+      if ( queue.offer( element, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS ) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Takes the next element from a queue, recording the queue depth and wait time of rows.
+   */
+  protected Object take( BlockingQueue<Object> queue ) throws IOException {
+    int depth = queue.size();
+    Object next = queue.poll();
+    long waitNanos = 0;
+    if ( next == null ) {
+      long start = System.nanoTime();
+      try {
+        next = queue.take();
+      } catch ( InterruptedException ex ) {
+        Thread.currentThread().interrupt();
+        throw new IOException( "Interrupted while waiting for the next row" );
+      }
+      waitNanos = System.nanoTime() - start;
+    }
+
+    if ( m_stats != null && next instanceof Result ) {
+      m_stats.recordRow( depth, waitNanos );
+    }
+    return next;
+  }
+
+  /**
+   * Closes the scanner and rethrows the failure of a fetching thread.
+   */
+  protected IOException failed( Failure failure ) {
+    close();
+    if ( failure.m_cause instanceof IOException ) {
+      return (IOException) failure.m_cause;
+    }
+    return new IOException( failure.m_cause.getMessage(), failure.m_cause );
+  }
+
+  @Override
+  public Result[] next( int nbRows ) throws IOException {
+    List<Result> results = new ArrayList<Result>( nbRows );
+    for ( int i = 0; i < nbRows; i++ ) {
+      Result r = next();
+      if ( r == null ) {
+        break;
+      }
+      results.add( r );
+    }
+
+    return results.toArray( new Result[results.size()] );
+  }
+
+  @Override
+  public Iterator<Result> iterator() {
+    return new Iterator<Result>() {
+      private Result m_next;
+
+      @Override
+      public boolean hasNext() {
+        if ( m_next == null ) {
+          try {
+            m_next = QueuedResultScanner.this.next();
+          } catch ( IOException ex ) {
+            throw new RuntimeException( ex );
+          }
+        }
+        return m_next != null;
+      }
+
+      @Override
+      public Result next() {
+        if ( !hasNext() ) {
+          throw new NoSuchElementException();
+        }
+        Result r = m_next;
+        m_next = null;
+        return r;
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+}
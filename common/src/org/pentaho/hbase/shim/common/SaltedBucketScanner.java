@@ -0,0 +1,145 @@
+/*******************************************************************************
+ *
+ * Pentaho Big Data
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+
+package org.pentaho.hbase.shim.common;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.pentaho.hbase.shim.spi.ScanStatistics;
+
+/**
+ * Scans a key range of a table with salted keys, i.e. keys prefixed by a one byte bucket number. The range is read from
+ * every bucket concurrently, one thread and table per bucket, and the rows of the buckets are merged so that they are
+ * returned in the order of their unsalted keys. As the merge needs all buckets at once, this is only used when the
+ * number of buckets is within the caller's thread limit; {@link SaltedMergeScanner} merges without threads otherwise.
+ */
+class SaltedBucketScanner extends ParallelRegionScanner {
+
+  // the next row of each bucket, null if it has to be taken from the queue
+  private final Result[] m_heads;
+  private final boolean[] m_done;
+
+  /**
+   * Starts scanning all buckets.
+   * 
+   * @param config
+   *          the configuration to create the tables with
+   * @param table
+   *          the table to scan
+   * @param scan
+   *          the scan to execute, its start and stop rows are unsalted keys
+   * @param buckets
+   *          the number of salt buckets
+   * @param stats
+   *          receives the queue depth and wait time of the rows, may be null
+   */
+  SaltedBucketScanner( Configuration config, HTable table, Scan scan, int buckets, ScanStatistics stats )
+    throws IOException {
+    // every bucket has to deliver its rows to be merged, so all run at once
+    super( config, table.getTableName(), bucketScans( scan, buckets ), buckets, true, Math.max( scan.getCaching(), 100 ),
+        stats );
+    m_heads = new Result[buckets];
+    m_done = new boolean[buckets];
+  }
+
+  /**
+   * Splits the key range of a scan into the same range in every salt bucket.
+   * 
+   * @return one scan per bucket, in bucket order
+   */
+  static List<Scan> bucketScans( Scan scan, int buckets ) throws IOException {
+    byte[] scanStart = scan.getStartRow();
+    byte[] scanStop = scan.getStopRow();
+
+    List<Scan> parts = new ArrayList<Scan>( buckets );
+    for ( int b = 0; b < buckets; b++ ) {
+      byte[] salt = new byte[] { (byte) b };
+      byte[] stop;
+      if ( scanStop.length > 0 ) {
+        stop = Bytes.add( salt, scanStop );
+      } else if ( b < 255 ) {
+        // the end of the bucket
+        stop = new byte[] { (byte) ( b + 1 ) };
+      } else {
+        stop = HConstants.EMPTY_END_ROW;
+      }
+
+      Scan part = new Scan( scan );
+      part.setStartRow( Bytes.add( salt, scanStart ) );
+      part.setStopRow( stop );
+      parts.add( part );
+    }
+
+    return parts;
+  }
+
+  /**
+   * Compares two rows of a salted table by their unsalted keys.
+   */
+  static int compareUnsalted( Result a, Result b ) {
+    byte[] rowA = a.getRow();
+    byte[] rowB = b.getRow();
+    return Bytes.compareTo( rowA, 1, rowA.length - 1, rowB, 1, rowB.length - 1 );
+  }
+
+  @Override
+  public Result next() throws IOException {
+    Result next = null;
+    int nextBucket = -1;
+    for ( int i = 0; i < m_heads.length && !m_closed; i++ ) {
+      if ( m_done[i] ) {
+        continue;
+      }
+      if ( m_heads[i] == null ) {
+        Object head = take( m_queues.get( i ) );
+        if ( head == END_OF_ROWS ) {
+          m_done[i] = true;
+          continue;
+        } else if ( head instanceof Failure ) {
+          throw failed( (Failure) head );
+        }
+        m_heads[i] = (Result) head;
+      }
+
+      // the same unsalted key can't be in two buckets
+      if ( next == null || compareUnsalted( m_heads[i], next ) < 0 ) {
+        next = m_heads[i];
+        nextBucket = i;
+      }
+    }
+
+    if ( next != null ) {
+      m_heads[nextBucket] = null;
+    }
+    return next;
+  }
+}
@@ -0,0 +1,190 @@
+/*******************************************************************************
+ *
+ * Pentaho Big Data
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+
+
+package org.pentaho.hbase.shim.common;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+
+/**
+ * Scans a key range of a table with salted keys on the caller's thread. One scanner per bucket is opened on the table,
+ * and the rows of the buckets are merged so that they are returned in the order of their unsalted keys. Unlike
+ * {@link SaltedBucketScanner} this needs no thread or table per bucket, the buckets are only read as fast as the
+ * merge consumes them.
+ */
+class SaltedMergeScanner implements ResultScanner {
+
+  private final HTable m_table;
+  private final List<Scan> m_parts;
+
+  // opened at the first row
+  private ResultScanner[] m_scanners;
+  // the next row of each bucket, null if it has to be read from the bucket's scanner
+  private Result[] m_heads;
+  private boolean[] m_done;
+  private boolean m_closed;
+
+  /**
+   * @param table
+   *          the table to scan, only used on the caller's thread
+   * @param scan
+   *          the scan to execute, its start and stop rows are unsalted keys
+   * @param buckets
+   *          the number of salt buckets
+   */
+  SaltedMergeScanner( HTable table, Scan scan, int buckets ) throws IOException {
+    m_table = table;
+    m_parts = SaltedBucketScanner.bucketScans( scan, buckets );
+  }
+
+  /**
+   * Opens the scanner of a bucket.
+   */
+  protected ResultScanner openScanner( Scan part ) throws IOException {
+    return m_table.getScanner( part );
+  }
+
+  private void open() throws IOException {
+    int buckets = m_parts.size();
+    m_scanners = new ResultScanner[buckets];
+    m_heads = new Result[buckets];
+    m_done = new boolean[buckets];
+    try {
+      for ( int i = 0; i < buckets; i++ ) {
+        m_scanners[i] = openScanner( m_parts.get( i ) );
+      }
+    } catch ( IOException ex ) {
+      close();
+      throw ex;
+    }
+  }
+
+  @Override
+  public Result next() throws IOException {
+    if ( m_closed ) {
+      return null;
+    }
+    if ( m_scanners == null ) {
+      open();
+    }
+
+    Result next = null;
+    int nextBucket = -1;
+    for ( int i = 0; i < m_heads.length; i++ ) {
+      if ( m_done[i] ) {
+        continue;
+      }
+      if ( m_heads[i] == null ) {
+        m_heads[i] = m_scanners[i].next();
+        if ( m_heads[i] == null ) {
+          m_done[i] = true;
+          m_scanners[i].close();
+          continue;
+        }
+      }
+
+      if ( next == null || SaltedBucketScanner.compareUnsalted( m_heads[i], next ) < 0 ) {
+        next = m_heads[i];
+        nextBucket = i;
+      }
+    }
+
+    if ( next != null ) {
+      m_heads[nextBucket] = null;
+    }
+    return next;
+  }
+
+  @Override
+  public Result[] next( int nbRows ) throws IOException {
+    List<Result> results = new ArrayList<Result>( nbRows );
+    for ( int i = 0; i < nbRows; i++ ) {
+      Result r = next();
+      if ( r == null ) {
+        break;
+      }
+      results.add( r );
+    }
+
+    return results.toArray( new Result[results.size()] );
+  }
+
+  @Override
+  public Iterator<Result> iterator() {
+    return new Iterator<Result>() {
+      private Result m_next;
+
+      @Override
+      public boolean hasNext() {
+        if ( m_next == null ) {
+          try {
+            m_next = SaltedMergeScanner.this.next();
+          } catch ( IOException ex ) {
+            throw new RuntimeException( ex );
+          }
+        }
+        return m_next != null;
+      }
+
+      @Override
+      public Result next() {
+        if ( !hasNext() ) {
+          throw new NoSuchElementException();
+        }
+        Result r = m_next;
+        m_next = null;
+        return r;
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  @Override
+  public void close() {
+    if ( m_closed ) {
+      return;
+    }
+    m_closed = true;
+    if ( m_scanners != null ) {
+      for ( int i = 0; i < m_scanners.length; i++ ) {
+        if ( m_scanners[i] != null && !m_done[i] ) {
+          m_scanners[i].close();
+        }
+      }
+    }
+  }
+}
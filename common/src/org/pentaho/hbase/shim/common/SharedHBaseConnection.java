@@ -0,0 +1,424 @@
+/*******************************************************************************
+ *
+ * Pentaho Big Data
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+
+package org.pentaho.hbase.shim.common;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.WeakHashMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.client.HConnectionManager;
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.pentaho.hbase.shim.spi.HBaseConnection;
+
+/**
+ * One HBase connection (ZooKeeper session and region location cache) shared by all {@link CommonHBaseConnection}s that
+ * are configured for the same cluster, together with a pool of table handles on it.
+ * <p>
+ * HBase shares its connection between all tables and admins created from the same {@link Configuration} instance, so
+ * every connection using this one must create them from {@link #getConfiguration()}. Table handles are not
+ * thread safe; a borrowed handle is used by one caller only until it is released. The number of pooled handles per
+ * shared connection is limited. While all are in use a caller waits up to the maximum wait time (none by default) for
+ * one and then gets an unpooled handle, which is closed when released, so borrowing never fails because of the limit.
+ * Idle handles are closed after the idle time and the shared connection itself is closed once it is idle and no
+ * connection using it is left.
+ */
+class SharedHBaseConnection {
+  private static final String WRITE_BUFFER_SIZE_KEY = "hbase.client.write.buffer";
+  private static final long DEFAULT_WRITE_BUFFER_SIZE = 2 * 1024 * 1024;
+
+  private static final Map<String, SharedHBaseConnection> s_connections = new HashMap<String, SharedHBaseConnection>();
+  private static Timer s_evictor;
+
+  private final String m_key;
+  private final Configuration m_config;
+  private final int m_maxTables;
+  private final int m_maxIdleTables;
+  private final long m_idleMillis;
+  private final long m_maxWaitMillis;
+  private final long m_defaultWriteBufferSize;
+
+  private final Object m_lock = new Object();
+  private final Map<String, LinkedList<IdleTable>> m_idleTables = new HashMap<String, LinkedList<IdleTable>>();
+  private int m_idleCount;
+  private int m_borrowedCount;
+  // handles borrowed beyond the limit, they are closed instead of pooled when released
+  private final Set<HTable> m_unpooled = Collections.newSetFromMap( new IdentityHashMap<HTable, Boolean>() );
+  private long m_lastUsed = System.currentTimeMillis();
+
+  // the connections using this one, it can't be closed while any is reachable
+  private final Map<Object, Boolean> m_users = new WeakHashMap<Object, Boolean>();
+  private TimerTask m_evictionTask;
+  private boolean m_closed;
+
+  private static class IdleTable {
+    final HTable m_table;
+    final long m_since;
+
+    IdleTable( HTable table, long since ) {
+      m_table = table;
+      m_since = since;
+    }
+  }
+
+  SharedHBaseConnection( String key, Configuration config, Properties connProps ) {
+    m_key = key;
+    m_config = config;
+    m_maxTables = getInt( connProps, HBaseConnection.CONNECTION_POOL_MAX_TABLES_KEY,
+        HBaseConnection.DEFAULT_POOL_MAX_TABLES );
+    m_maxIdleTables = getInt( connProps, HBaseConnection.CONNECTION_POOL_MAX_IDLE_TABLES_KEY,
+        HBaseConnection.DEFAULT_POOL_MAX_IDLE_TABLES );
+    m_idleMillis = getLong( connProps, HBaseConnection.CONNECTION_POOL_IDLE_MILLIS_KEY,
+        HBaseConnection.DEFAULT_POOL_IDLE_MILLIS );
+    m_maxWaitMillis = getLong( connProps, HBaseConnection.CONNECTION_POOL_MAX_WAIT_MILLIS_KEY,
+        HBaseConnection.DEFAULT_POOL_MAX_WAIT_MILLIS );
+    m_defaultWriteBufferSize = config.getLong( WRITE_BUFFER_SIZE_KEY, DEFAULT_WRITE_BUFFER_SIZE );
+  }
+
+  /**
+   * Builds the key connections are shared by from the connection properties that determine the cluster.
+   * 
+   * @param connProps
+   *          the connection properties
+   * @return the key
+   */
+  static String connectionKey( Properties connProps ) {
+    StringBuilder key = new StringBuilder();
+    key.append( connProps.getProperty( HBaseConnection.ZOOKEEPER_QUORUM_KEY, "" ) ).append( '|' );
+    key.append( connProps.getProperty( HBaseConnection.ZOOKEEPER_PORT_KEY, "" ) ).append( '|' );
+    key.append( connProps.getProperty( HBaseConnection.DEFAULTS_KEY, "" ) ).append( '|' );
+    key.append( connProps.getProperty( HBaseConnection.SITE_KEY, "" ) );
+    return key.toString();
+  }
+
+  /**
+   * Gets the shared connection for a key, opening it with the given configuration if there is none yet.
+   * 
+   * @param key
+   *          the key from {@link #connectionKey(Properties)}
+   * @param config
+   *          the configuration to use if the shared connection is opened
+   * @param connProps
+   *          the connection properties to take the pool limits from if the shared connection is opened
+   * @param user
+   *          the connection that will use the shared one, it is kept open at least as long as the user is reachable
+   * @return the shared connection
+   */
+  static SharedHBaseConnection acquire( String key, Configuration config, Properties connProps, Object user ) {
+    synchronized ( s_connections ) {
+      SharedHBaseConnection shared = s_connections.get( key );
+      if ( shared == null ) {
+        shared = new SharedHBaseConnection( key, config, connProps );
+        s_connections.put( key, shared );
+        shared.scheduleEviction();
+      }
+      shared.m_users.put( user, Boolean.TRUE );
+      return shared;
+    }
+  }
+
+  /**
+   * Stops a connection from using this shared connection.
+   * 
+   * @param user
+   *          the connection passed to {@link #acquire}
+   */
+  void release( Object user ) {
+    synchronized ( s_connections ) {
+      m_users.remove( user );
+    }
+  }
+
+  /**
+   * @return the configuration everything using this shared connection must be created with
+   */
+  Configuration getConfiguration() {
+    return m_config;
+  }
+
+  /**
+   * Borrows a handle for a table, reusing an idle one if there is one. If the maximum number of pooled handles is in use
+   * and none is released within the maximum wait time an unpooled handle is opened.
+   * 
+   * @param tableName
+   *          the name of the table
+   * @return the table handle, to be given back with {@link #releaseTable(HTable)}
+   * @throws Exception
+   *           if the table can't be opened
+   */
+  HTable borrowTable( String tableName ) throws Exception {
+    List<HTable> toClose = new ArrayList<HTable>();
+    boolean pooled = true;
+    try {
+      synchronized ( m_lock ) {
+        long deadline = System.currentTimeMillis() + m_maxWaitMillis;
+        while ( true ) {
+          LinkedList<IdleTable> idle = m_idleTables.get( tableName );
+          if ( idle != null && !idle.isEmpty() ) {
+            IdleTable table = idle.removeLast();
+            m_idleCount--;
+            m_borrowedCount++;
+            return table.m_table;
+          }
+
+          if ( m_maxTables <= 0 || m_borrowedCount + m_idleCount < m_maxTables ) {
+            m_borrowedCount++;
+            break;
+          }
+
+          // make room by closing the longest idle handle of another table
+          IdleTable oldest = removeOldestIdle();
+          if ( oldest != null ) {
+            toClose.add( oldest.m_table );
+            continue;
+          }
+
+          long wait = deadline - System.currentTimeMillis();
+          if ( wait <= 0 ) {
+            pooled = false;
+            break;
+          }
+          m_lock.wait( wait );
+        }
+      }
+    } finally {
+      closeTables( toClose );
+    }
+
+    if ( !pooled ) {
+      HTable table = createTable( tableName );
+      synchronized ( m_lock ) {
+        m_unpooled.add( table );
+      }
+      return table;
+    }
+
+    try {
+      return createTable( tableName );
+    } catch ( Exception ex ) {
+      synchronized ( m_lock ) {
+        m_borrowedCount--;
+        m_lock.notifyAll();
+      }
+      throw ex;
+    }
+  }
+
+  /**
+   * Opens a new handle for a table on the shared connection.
+   * 
+   * @param tableName
+   *          the name of the table
+   * @return the table handle
+   * @throws Exception
+   *           if the table can't be opened
+   */
+  HTable createTable( String tableName ) throws Exception {
+    return new HTable( m_config, tableName );
+  }
+
+  /**
+   * Gives a borrowed table handle back. Writes must have been flushed; a handle that still holds buffered writes is
+   * closed instead of reused, as is a handle that was opened unpooled.
+   * 
+   * @param table
+   *          the handle from {@link #borrowTable(String)}
+   */
+  void releaseTable( HTable table ) {
+    boolean unpooled;
+    synchronized ( m_lock ) {
+      unpooled = m_unpooled.remove( table );
+      if ( unpooled ) {
+        m_lastUsed = System.currentTimeMillis();
+      }
+    }
+    if ( unpooled ) {
+      closeTable( table );
+      return;
+    }
+
+    boolean reusable;
+    try {
+      reusable = table.getWriteBuffer().isEmpty();
+      if ( reusable ) {
+        // undo what the last user may have set up for writing
+        table.setAutoFlush( true );
+        table.setWriteBufferSize( m_defaultWriteBufferSize );
+      }
+    } catch ( Exception ex ) {
+      reusable = false;
+    }
+
+    synchronized ( m_lock ) {
+      m_borrowedCount--;
+      m_lastUsed = System.currentTimeMillis();
+      if ( reusable && !m_closed ) {
+        String tableName = Bytes.toString( table.getTableName() );
+        LinkedList<IdleTable> idle = m_idleTables.get( tableName );
+        if ( idle == null ) {
+          idle = new LinkedList<IdleTable>();
+          m_idleTables.put( tableName, idle );
+        }
+        if ( idle.size() < m_maxIdleTables ) {
+          idle.addLast( new IdleTable( table, m_lastUsed ) );
+          m_idleCount++;
+          table = null;
+        }
+      }
+      m_lock.notifyAll();
+    }
+
+    if ( table != null ) {
+      closeTable( table );
+    }
+  }
+
+  private IdleTable removeOldestIdle() {
+    IdleTable oldest = null;
+    LinkedList<IdleTable> oldestList = null;
+    for ( LinkedList<IdleTable> idle : m_idleTables.values() ) {
+      if ( !idle.isEmpty() && ( oldest == null || idle.getFirst().m_since < oldest.m_since ) ) {
+        oldest = idle.getFirst();
+        oldestList = idle;
+      }
+    }
+    if ( oldest != null ) {
+      oldestList.removeFirst();
+      m_idleCount--;
+    }
+    return oldest;
+  }
+
+  private void scheduleEviction() {
+    long period = Math.max( m_idleMillis, 1000 );
+    m_evictionTask = new TimerTask() {
+      @Override
+      public void run() {
+        evictIdle();
+      }
+    };
+    getEvictor().schedule( m_evictionTask, period, period );
+  }
+
+  private static synchronized Timer getEvictor() {
+    if ( s_evictor == null ) {
+      s_evictor = new Timer( "HBase connection pool evictor", true );
+    }
+    return s_evictor;
+  }
+
+  /**
+   * Closes the table handles that have been idle for longer than the idle time, and the shared connection if it is
+   * idle and unused.
+   */
+  void evictIdle() {
+    List<HTable> toClose = new ArrayList<HTable>();
+    long now = System.currentTimeMillis();
+    boolean close = false;
+
+    synchronized ( s_connections ) {
+      synchronized ( m_lock ) {
+        Iterator<LinkedList<IdleTable>> lists = m_idleTables.values().iterator();
+        while ( lists.hasNext() ) {
+          LinkedList<IdleTable> idle = lists.next();
+          while ( !idle.isEmpty() && now - idle.getFirst().m_since >= m_idleMillis ) {
+            toClose.add( idle.removeFirst().m_table );
+            m_idleCount--;
+          }
+          if ( idle.isEmpty() ) {
+            lists.remove();
+          }
+        }
+
+        if ( m_users.isEmpty() && m_borrowedCount == 0 && m_unpooled.isEmpty() && m_idleCount == 0
+            && now - m_lastUsed >= m_idleMillis ) {
+          close = true;
+          m_closed = true;
+          m_evictionTask.cancel();
+          s_connections.remove( m_key );
+        }
+      }
+    }
+
+    closeTables( toClose );
+    if ( close ) {
+      deleteConnection( m_config );
+    }
+  }
+
+  private static void closeTables( List<HTable> tables ) {
+    for ( HTable table : tables ) {
+      closeTable( table );
+    }
+  }
+
+  private static void closeTable( HTable table ) {
+    try {
+      table.close();
+    } catch ( Exception ex ) {
+      // nothing is buffered in a pooled handle, there is nothing to lose
+    }
+  }
+
+  /**
+   * Closes the HBase connection for a configuration. The signature differs between HBase versions.
+   */
+  private static void deleteConnection( Configuration config ) {
+    try {
+      Method delete;
+      try {
+        delete = HConnectionManager.class.getMethod( "deleteConnection", Configuration.class, boolean.class );
+        delete.invoke( null, config, true );
+      } catch ( NoSuchMethodException e ) {
+        delete = HConnectionManager.class.getMethod( "deleteConnection", Configuration.class );
+        delete.invoke( null, config );
+      }
+    } catch ( Exception ex ) {
+      // best effort, it is unused either way
+    }
+  }
+
+  private static int getInt( Properties props, String key, int defaultValue ) {
+    String value = props.getProperty( key );
+    return value == null || value.trim().length() == 0 ? defaultValue : Integer.parseInt( value.trim() );
+  }
+
+  private static long getLong( Properties props, String key, long defaultValue ) {
+    String value = props.getProperty( key );
+    return value == null || value.trim().length() == 0 ? defaultValue : Long.parseLong( value.trim() );
+  }
+}
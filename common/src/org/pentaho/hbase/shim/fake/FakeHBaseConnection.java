@@ -23,6 +23,7 @@
 package org.pentaho.hbase.shim.fake;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -40,9 +41,12 @@ import org.pentaho.di.core.variables.VariableSpace;
 import org.pentaho.hadoop.shim.ShimVersion;
 import org.pentaho.hbase.shim.api.ColumnFilter;
 import org.pentaho.hbase.shim.api.HBaseValueMeta;
+import org.pentaho.hbase.shim.api.ScanOptions;
 import org.pentaho.hbase.shim.common.CommonHBaseBytesUtil;
+import org.pentaho.hbase.shim.spi.BatchWriteStatistics;
 import org.pentaho.hbase.shim.spi.HBaseBytesUtilShim;
 import org.pentaho.hbase.shim.spi.HBaseConnection;
+import org.pentaho.hbase.shim.spi.ScanStatistics;
 
 import org.pentaho.hbase.shim.common.CommonHBaseBytesUtil;
 
@@ -261,6 +265,9 @@ public class FakeHBaseConnection extends HBaseConnection {
     protected byte[] m_startKey; // inclusive
     protected byte[] m_stopKey; // exclusive
 
+    // the key range is read from this many salt buckets if > 1
+    protected int m_saltBuckets;
+
     protected List<Col> m_cols = new ArrayList<Col>();
 
     public Scan() {
@@ -290,12 +297,59 @@ public class FakeHBaseConnection extends HBaseConnection {
         return null;
       }
 
+      if (m_saltBuckets > 1) {
+        return new ResultScanner(this, getSaltedRows(table));
+      }
+
       SortedMap<byte[], NavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, byte[]>>>> subMap = table
           .getRows(m_startKey, m_stopKey);
 
       return new ResultScanner(this, subMap);
     }
 
+    /**
+     * Reads the key range from every salt bucket and merges the rows in the
+     * order of their unsalted keys.
+     */
+    protected SortedMap<byte[], NavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, byte[]>>>> getSaltedRows(
+        FakeTable table) {
+      final BytesComparator comp = new BytesComparator();
+      SortedMap<byte[], NavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, byte[]>>>> merged = new TreeMap<byte[], NavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, byte[]>>>>(
+          new Comparator<byte[]>() {
+            public int compare(byte[] left, byte[] right) {
+              return comp.compareTo(left, 1, left.length - 1, right, 1,
+                  right.length - 1);
+            }
+          });
+
+      for (int b = 0; b < m_saltBuckets; b++) {
+        byte[] start = saltedKey(b, m_startKey);
+        if (m_stopKey != null) {
+          byte[] stop = saltedKey(b, m_stopKey);
+          if (comp.compare(start, stop) < 0) {
+            merged.putAll(table.m_table.subMap(start, true, stop, false));
+          }
+        } else if (b < 255) {
+          merged.putAll(table.m_table.subMap(start, true,
+              new byte[] { (byte) (b + 1) }, false));
+        } else {
+          merged.putAll(table.m_table.tailMap(start, true));
+        }
+      }
+
+      return merged;
+    }
+
+    protected byte[] saltedKey(int bucket, byte[] key) {
+      int length = key == null ? 0 : key.length;
+      byte[] salted = new byte[length + 1];
+      salted[0] = (byte) bucket;
+      if (length > 0) {
+        System.arraycopy(key, 0, salted, 1, length);
+      }
+      return salted;
+    }
+
     /**
      * Takes a full row and returns a Result encapsulating a reduced row (i.e.
      * containing only the columns specified for this scan). If no columns are
@@ -441,8 +495,14 @@ public class FakeHBaseConnection extends HBaseConnection {
   protected String m_targetTable;
   protected Scan m_sourceScan;
   protected Put m_currentTargetPut;
+  protected List<Put> m_targetPutBatch = new ArrayList<Put>();
+  protected int m_maxWriteBatchRows = DEFAULT_PUT_BATCH_ROWS;
+  protected BatchWriteStatistics m_targetPutBatchStats = new BatchWriteStatistics();
+  protected List<byte[]> m_targetDeleteBatch = new ArrayList<byte[]>();
+  protected BatchWriteStatistics m_targetDeleteBatchStats = new BatchWriteStatistics();
   protected ResultScanner m_resultSet;
   protected Result m_currentResultSetRow;
+  protected ScanStatistics m_scanStats = new ScanStatistics();
 
   public FakeHBaseConnection() {
     try {
@@ -495,9 +555,17 @@ public class FakeHBaseConnection extends HBaseConnection {
   }
 
   @Override
-  public boolean checkForHBaseRow(Object arg0) {
-    // TODO Auto-generated method stub
-    return false;
+  public void addColumnToTargetPut(byte[] columnFamily, byte[] columnName,
+      byte[] colValue, int offset, int length) throws Exception {
+    checkTargetTable();
+    checkTargetPut();
+    m_currentTargetPut.addColumn(columnFamily, columnName,
+        Arrays.copyOfRange(colValue, offset, offset + length));
+  }
+
+  @Override
+  public boolean checkForHBaseRow(Object rowToCheck) {
+    return rowToCheck instanceof Result;
   }
 
   @Override
@@ -523,6 +591,10 @@ public class FakeHBaseConnection extends HBaseConnection {
 
   @Override
   public void closeTargetTable() throws Exception {
+    if (m_targetTable != null) {
+      flushTargetTableDeleteBatch();
+      flushTargetTablePutBatch();
+    }
     m_targetTable = null;
   }
 
@@ -600,9 +672,30 @@ public class FakeHBaseConnection extends HBaseConnection {
     m_resultSet = m_sourceScan.getScanner(m_sourceTable);
   }
 
+  @Override
+  public void executeSourceTableParallelScan(int maxThreads, boolean ordered)
+      throws Exception {
+    // a fake table is a single region
+    executeSourceTableScan();
+  }
+
+  @Override
+  public void executeSourceTablePrefetchScan(int prefetchRows)
+      throws Exception {
+    // nothing to overlap for in-memory tables
+    executeSourceTableScan();
+  }
+
+  @Override
+  public ScanStatistics getSourceTableScanStatistics() throws Exception {
+    return m_scanStats;
+  }
+
   @Override
   public void executeTargetTableDelete(byte[] rowKey) throws Exception {
     checkTargetTable();
+    flushTargetTableDeleteBatch();
+    flushTargetTablePutBatch();
 
     FakeTable table = m_db.get(m_targetTable);
     if (table == null) {
@@ -617,6 +710,8 @@ public class FakeHBaseConnection extends HBaseConnection {
     checkTargetTable();
     checkTargetPut();
 
+    flushTargetTableDeleteBatch();
+    flushTargetTablePutBatch();
     FakeTable table = m_db.get(m_targetTable);
     if (table != null) {
       table.put(m_currentTargetPut);
@@ -625,8 +720,92 @@ public class FakeHBaseConnection extends HBaseConnection {
     }
   }
 
+  @Override
+  public void addTargetTablePutToBatch() throws Exception {
+    checkTargetTable();
+    checkTargetPut();
+
+    flushTargetTableDeleteBatch();
+    m_targetPutBatch.add(m_currentTargetPut);
+    m_currentTargetPut = null;
+    if (m_targetPutBatch.size() >= m_maxWriteBatchRows) {
+      flushTargetTablePutBatch();
+    }
+  }
+
+  @Override
+  public void flushTargetTablePutBatch() throws Exception {
+    checkTargetTable();
+    if (m_targetPutBatch.isEmpty()) {
+      return;
+    }
+
+    FakeTable table = m_db.get(m_targetTable);
+    if (table == null) {
+      throw new Exception("Target table doesn't exist!");
+    }
+
+    long start = System.nanoTime();
+    for (Put p : m_targetPutBatch) {
+      table.put(p);
+    }
+    m_targetPutBatchStats.recordFlush(m_targetPutBatch.size(),
+        System.nanoTime() - start);
+    m_targetPutBatch.clear();
+  }
+
+  @Override
+  public BatchWriteStatistics getTargetTablePutBatchStatistics()
+      throws Exception {
+    checkTargetTable();
+
+    return m_targetPutBatchStats;
+  }
+
+  @Override
+  public void addTargetTableDeleteToBatch(byte[] rowKey) throws Exception {
+    checkTargetTable();
+    flushTargetTablePutBatch();
+
+    m_targetDeleteBatch.add(rowKey);
+    if (m_targetDeleteBatch.size() >= m_maxWriteBatchRows) {
+      flushTargetTableDeleteBatch();
+    }
+  }
+
+  @Override
+  public void flushTargetTableDeleteBatch() throws Exception {
+    checkTargetTable();
+    if (m_targetDeleteBatch.isEmpty()) {
+      return;
+    }
+
+    FakeTable table = m_db.get(m_targetTable);
+    if (table == null) {
+      throw new Exception("Target table is null!!");
+    }
+
+    long start = System.nanoTime();
+    for (byte[] rowKey : m_targetDeleteBatch) {
+      table.deleteRow(rowKey);
+    }
+    m_targetDeleteBatchStats.recordFlush(m_targetDeleteBatch.size(),
+        System.nanoTime() - start);
+    m_targetDeleteBatch.clear();
+  }
+
+  @Override
+  public BatchWriteStatistics getTargetTableDeleteBatchStatistics()
+      throws Exception {
+    checkTargetTable();
+
+    return m_targetDeleteBatchStats;
+  }
+
   @Override
   public void flushCommitsTargetTable() throws Exception {
+    flushTargetTableDeleteBatch();
+    flushTargetTablePutBatch();
   }
 
   @Override
@@ -661,30 +840,45 @@ public class FakeHBaseConnection extends HBaseConnection {
   }
 
   @Override
-  public byte[] getRowColumnLatest(Object arg0, String arg1, String arg2,
-      boolean arg3) throws Exception {
-    // TODO Auto-generated method stub
-    return null;
+  public byte[] getRowColumnLatest(Object aRow, String colFamilyName,
+      String colName, boolean colNameIsBinary) throws Exception {
+    checkForRow(aRow);
+
+    return ((Result) aRow).getValue(
+        m_bytesUtil.toBytes(colFamilyName),
+        colNameIsBinary ? m_bytesUtil.toBytesBinary(colName) : m_bytesUtil
+            .toBytes(colName));
+  }
+
+  @Override
+  public byte[] getRowColumnLatest(Object aRow, byte[] colFamily,
+      byte[] colName) throws Exception {
+    checkForRow(aRow);
+
+    return ((Result) aRow).getValue(colFamily, colName);
   }
 
   @Override
   public NavigableMap<byte[], byte[]> getRowFamilyMap(Object aRow, String family)
       throws Exception {
-    // TODO Auto-generated method stub
-    return null;
+    checkForRow(aRow);
+
+    return ((Result) aRow).getFamilyMap(m_bytesUtil.toBytes(family));
   }
 
   @Override
-  public byte[] getRowKey(Object arg0) throws Exception {
-    // TODO Auto-generated method stub
-    return null;
+  public byte[] getRowKey(Object aRow) throws Exception {
+    checkForRow(aRow);
+
+    return ((Result) aRow).getRow();
   }
 
   @Override
   public NavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, byte[]>>> getRowMap(
-      Object arg0) throws Exception {
-    // TODO Auto-generated method stub
-    return null;
+      Object aRow) throws Exception {
+    checkForRow(aRow);
+
+    return ((Result) aRow).getMap();
   }
 
   @Override
@@ -752,12 +946,29 @@ public class FakeHBaseConnection extends HBaseConnection {
     m_sourceScan = new Scan(keyLowerBound, keyUpperBound);
   }
 
+  @Override
+  public void newSourceTableScan(byte[] keyLowerBound, byte[] keyUpperBound,
+      int cacheSize, ScanOptions options) throws Exception {
+    // the fake scan always returns the latest version of the whole rows
+    newSourceTableScan(keyLowerBound, keyUpperBound, cacheSize);
+    if (options != null && options.getSaltBuckets() != null) {
+      m_sourceScan.m_saltBuckets = options.getSaltBuckets();
+    }
+  }
+
   @Override
   public void newTargetTable(String tableName, Properties arg1)
       throws Exception {
     closeTargetTable();
 
     m_targetTable = tableName;
+    m_targetPutBatchStats.reset();
+    m_targetDeleteBatchStats.reset();
+    m_maxWriteBatchRows = DEFAULT_PUT_BATCH_ROWS;
+    if (arg1 != null && arg1.getProperty(HTABLE_PUT_BATCH_ROWS_KEY) != null) {
+      m_maxWriteBatchRows = Integer.parseInt(arg1
+          .getProperty(HTABLE_PUT_BATCH_ROWS_KEY));
+    }
 
   }
 
@@ -768,6 +979,13 @@ public class FakeHBaseConnection extends HBaseConnection {
     m_currentTargetPut = new Put(key);
   }
 
+  @Override
+  public void newTargetTablePut(byte[] key, int offset, int length,
+      boolean writeToWAL) throws Exception {
+    newTargetTablePut(Arrays.copyOfRange(key, offset, offset + length),
+        writeToWAL);
+  }
+
   @Override
   public boolean resultSetNextRow() throws Exception {
     checkResultSet();
@@ -791,6 +1009,69 @@ public class FakeHBaseConnection extends HBaseConnection {
     return true;
   }
 
+  @Override
+  public boolean[] sourceTableRowsExist(List<byte[]> rowKeys, int batchSize)
+      throws Exception {
+    checkSourceTable();
+    FakeTable tab = m_db.get(m_sourceTable);
+
+    boolean[] exist = new boolean[rowKeys.size()];
+    for (int i = 0; i < exist.length; i++) {
+      exist[i] = tab != null && tab.get(rowKeys.get(i)) != null;
+    }
+
+    return exist;
+  }
+
+  @Override
+  public List<Object> getSourceTableRows(List<byte[]> rowKeys,
+      List<HBaseValueMeta> columns, boolean colNamesAreBinary, int batchSize)
+      throws Exception {
+    checkSourceTable();
+    FakeTable tab = m_db.get(m_sourceTable);
+
+    Scan columnLimiter = null;
+    if (columns != null) {
+      columnLimiter = new Scan();
+      for (HBaseValueMeta col : columns) {
+        columnLimiter.addColumn(m_bytesUtil.toBytes(col.getColumnFamily()),
+            colNamesAreBinary ? m_bytesUtil.toBytesBinary(col.getColumnName())
+                : m_bytesUtil.toBytes(col.getColumnName()));
+      }
+    }
+
+    List<Object> rows = new ArrayList<Object>(rowKeys.size());
+    for (byte[] rowKey : rowKeys) {
+      Result r = tab != null ? tab.get(rowKey) : null;
+      if (r != null && columnLimiter != null) {
+        r = columnLimiter.columnLimitedRow(rowKey, r.getMap());
+      }
+      rows.add(r);
+    }
+
+    return rows;
+  }
+
+  @Override
+  public long countSourceTableRows(byte[] keyLowerBound, byte[] keyUpperBound)
+      throws Exception {
+    checkSourceTable();
+    FakeTable tab = m_db.get(m_sourceTable);
+    if (tab == null) {
+      return 0;
+    }
+
+    NavigableMap<byte[], ?> rows = tab.m_table;
+    if (keyLowerBound != null) {
+      rows = rows.tailMap(keyLowerBound, true);
+    }
+    if (keyUpperBound != null) {
+      rows = rows.headMap(keyUpperBound, false);
+    }
+
+    return rows.size();
+  }
+
   @Override
   public boolean tableExists(String tableName) throws Exception {
     return (m_db.get(tableName) != null);
@@ -833,6 +1114,12 @@ public class FakeHBaseConnection extends HBaseConnection {
     }
   }
 
+  protected void checkForRow(Object aRow) throws Exception {
+    if (!checkForHBaseRow(aRow)) {
+      throw new Exception("Object is not a row!");
+    }
+  }
+
   protected void checkForCurrentResultSetRow() throws Exception {
     if (m_currentResultSetRow == null) {
       throw new Exception("No current resut set row available!");
@@ -0,0 +1,63 @@
+/*******************************************************************************
+*
+* Pentaho Big Data
+*
+* Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+
+package org.pentaho.hadoop.mapreduce.converter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link BoxedValueCache}
+ */
+public class BoxedValueCacheTest {
+
+  @Test
+  public void valueOf_long() {
+    assertSame(BoxedValueCache.valueOf(0L), BoxedValueCache.valueOf(0L));
+    assertSame(BoxedValueCache.valueOf(BoxedValueCache.LOW), BoxedValueCache.valueOf(BoxedValueCache.LOW));
+    assertSame(BoxedValueCache.valueOf(BoxedValueCache.HIGH), BoxedValueCache.valueOf(BoxedValueCache.HIGH));
+    assertEquals(Long.valueOf(500L), BoxedValueCache.valueOf(500L));
+
+    // Out of range values are still boxed correctly
+    assertEquals(Long.valueOf(BoxedValueCache.HIGH + 1L), BoxedValueCache.valueOf(BoxedValueCache.HIGH + 1L));
+    assertEquals(Long.valueOf(Long.MIN_VALUE), BoxedValueCache.valueOf(Long.MIN_VALUE));
+    assertEquals(Long.valueOf(Long.MAX_VALUE), BoxedValueCache.valueOf(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void valueOf_double() {
+    assertSame(BoxedValueCache.valueOf(1.0d), BoxedValueCache.valueOf(1.0d));
+    assertEquals(Double.valueOf(500.0d), BoxedValueCache.valueOf(500.0d));
+
+    // Fractions, negative zero and special values are not cached but must be preserved
+    assertEquals(Double.valueOf(1.5d), BoxedValueCache.valueOf(1.5d));
+    assertEquals(Double.valueOf(-0.0d), BoxedValueCache.valueOf(-0.0d));
+    assertEquals(Double.valueOf(0.0d), BoxedValueCache.valueOf(0.0d));
+    assertTrue(BoxedValueCache.valueOf(Double.NaN).isNaN());
+    assertEquals(Double.valueOf(Double.POSITIVE_INFINITY), BoxedValueCache.valueOf(Double.POSITIVE_INFINITY));
+    assertEquals(Double.valueOf(BoxedValueCache.HIGH + 1.0d), BoxedValueCache.valueOf(BoxedValueCache.HIGH + 1.0d));
+  }
+}
@@ -0,0 +1,166 @@
+/*******************************************************************************
+*
+* Pentaho Big Data
+*
+* Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+
+package org.pentaho.hadoop.mapreduce.converter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.hadoop.mapreduce.converter.converters.TextToStringConverter;
+import org.pentaho.hadoop.mapreduce.converter.spi.ITypeConverter;
+
+/**
+ * Tests for {@link TypeConverterRegistry}
+ */
+public class TypeConverterRegistryTest {
+
+  /**
+   * Converter that can't convert anything but counts how often it is asked to
+   */
+  private static class CountingConverter implements ITypeConverter<Object, Object> {
+    private int canConvertCalls;
+
+    @Override
+    public boolean canConvert(Class from, Class to) {
+      canConvertCalls++;
+      return false;
+    }
+
+    @Override
+    public Object convert(ValueMetaInterface meta, Object obj) throws TypeConversionException {
+      return obj;
+    }
+  }
+
+  @Test
+  public void getConverter() {
+    TextToStringConverter textToString = new TextToStringConverter();
+    CountingConverter counting = new CountingConverter();
+    List<ITypeConverter<?, ?>> converters = new ArrayList<ITypeConverter<?, ?>>();
+    converters.add(counting);
+    converters.add(textToString);
+    TypeConverterRegistry registry = new TypeConverterRegistry(converters);
+
+    assertSame(textToString, registry.getConverter(Text.class, String.class));
+    assertSame(textToString, registry.getConverter(Text.class, String.class));
+    assertEquals(1, counting.canConvertCalls);
+  }
+
+  @Test
+  public void getConverter_miss_is_cached() {
+    CountingConverter counting = new CountingConverter();
+    List<ITypeConverter<?, ?>> converters = new ArrayList<ITypeConverter<?, ?>>();
+    converters.add(counting);
+    TypeConverterRegistry registry = new TypeConverterRegistry(converters);
+
+    assertNull(registry.getConverter(Object.class, Long.class));
+    assertNull(registry.getConverter(Object.class, Long.class));
+    assertEquals(1, counting.canConvertCalls);
+  }
+
+  @Test
+  public void dump() {
+    List<ITypeConverter<?, ?>> converters = new ArrayList<ITypeConverter<?, ?>>();
+    converters.add(new TextToStringConverter());
+    TypeConverterRegistry registry = new TypeConverterRegistry(converters);
+
+    registry.getConverter(Text.class, String.class);
+    registry.getConverter(Object.class, Long.class);
+
+    String dump = registry.dump();
+    assertTrue(dump, dump.contains("org.apache.hadoop.io.Text -> java.lang.String = " + TextToStringConverter.class.getName()));
+    assertTrue(dump, dump.contains("java.lang.Object -> java.lang.Long = <none>"));
+  }
+
+  @Test
+  public void getInstance_same_class_loader() throws Exception {
+    ClassLoader loader = new URLClassLoader(new URL[0], getClass().getClassLoader());
+    TypeConverterRegistry registry = getInstance(loader);
+
+    assertSame(registry, getInstance(loader));
+    assertSame(loader, registry.getClassLoader());
+    assertNotSame(registry, getInstance(TypeConverterRegistry.class.getClassLoader()));
+    assertSame(getInstance(TypeConverterRegistry.class.getClassLoader()),
+        getInstance(TypeConverterRegistry.class.getClassLoader()));
+  }
+
+  @Test
+  public void getInstance_registry_survives_gc() throws Exception {
+    ClassLoader loader = new URLClassLoader(new URL[0], getClass().getClassLoader());
+    WeakReference<TypeConverterRegistry> ref = new WeakReference<TypeConverterRegistry>(getInstance(loader));
+
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertSame("Registry was dropped by a GC", ref.get(), getInstance(loader));
+  }
+
+  @Test
+  public void getInstance_dropped_class_loader_is_collected() throws Exception {
+    ClassLoader loader = new URLClassLoader(new URL[0], getClass().getClassLoader());
+    getInstance(loader);
+    WeakReference<ClassLoader> ref = new WeakReference<ClassLoader>(loader);
+    loader = null;
+
+    // soft references are guaranteed to be cleared before an OutOfMemoryError
+    List<byte[]> hog = new ArrayList<byte[]>();
+    try {
+      while (ref.get() != null) {
+        hog.add(new byte[8 * 1024 * 1024]);
+      }
+    } catch (OutOfMemoryError expected) {
+      // the registry must be gone now
+    } finally {
+      hog = null;
+    }
+    for (int i = 0; i < 50 && ref.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertNull("Registry keeps its class loader reachable", ref.get());
+  }
+
+  private static TypeConverterRegistry getInstance(ClassLoader loader) throws TypeConversionException {
+    Thread thread = Thread.currentThread();
+    ClassLoader previous = thread.getContextClassLoader();
+    thread.setContextClassLoader(loader);
+    try {
+      return TypeConverterRegistry.getInstance();
+    } finally {
+      thread.setContextClassLoader(previous);
+    }
+  }
+}
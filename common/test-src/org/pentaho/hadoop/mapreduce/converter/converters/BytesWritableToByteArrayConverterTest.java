@@ -67,4 +67,20 @@ public class BytesWritableToByteArrayConverterTest {
     // arrays should be two separate objects
     assertTrue(expected != converted);
   }
+
+  @Test
+  public void testConvertPaddedBuffer() throws Exception {
+    BytesWritableToByteArrayConverter c = new BytesWritableToByteArrayConverter();
+    byte[] expected = "testing".getBytes();
+    BytesWritable writable = new BytesWritable();
+    writable.setCapacity(64);
+    writable.set(expected, 0, expected.length);
+
+    // only the valid bytes should be copied, not the whole backing array
+    byte[] converted = c.convert(null, writable);
+    assertEquals(expected.length, converted.length);
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(expected[i], converted[i]);
+    }
+  }
 }
@@ -52,4 +52,11 @@ public class DoubleWritableToDoubleConverterTest {
       // Expected
     }
   }
+
+  @Test
+  public void convert_shares_small_values() throws Exception {
+    DoubleWritableToDoubleConverter c = new DoubleWritableToDoubleConverter();
+
+    assertSame(c.convert(null, new DoubleWritable(10d)), c.convert(null, new DoubleWritable(10d)));
+  }
 }
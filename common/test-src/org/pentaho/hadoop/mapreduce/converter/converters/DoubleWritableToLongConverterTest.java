@@ -52,4 +52,11 @@ public class DoubleWritableToLongConverterTest {
       // Expected
     }
   }
+
+  @Test
+  public void convert_truncates() throws Exception {
+    DoubleWritableToLongConverter c = new DoubleWritableToLongConverter();
+
+    assertEquals(Long.valueOf(10L), c.convert(null, new DoubleWritable(10.9d)));
+  }
 }
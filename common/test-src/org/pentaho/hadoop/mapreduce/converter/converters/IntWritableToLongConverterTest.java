@@ -52,4 +52,11 @@ public class IntWritableToLongConverterTest {
       // Expected
     }
   }
+
+  @Test
+  public void convert_shares_small_values() throws Exception {
+    IntWritableToLongConverter c = new IntWritableToLongConverter();
+
+    assertSame(c.convert(null, new IntWritable(-5)), c.convert(null, new IntWritable(-5)));
+  }
 }
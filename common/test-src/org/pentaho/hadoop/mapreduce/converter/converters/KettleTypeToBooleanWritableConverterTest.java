@@ -80,4 +80,20 @@ public class KettleTypeToBooleanWritableConverterTest {
       assertTrue(ex.getMessage().contains("Error converting to"));
     }
   }
+
+  @Test
+  public void convertInto() throws Exception {
+    KettleTypeToBooleanWritableConverter c = new KettleTypeToBooleanWritableConverter();
+    ValueMeta booleanMeta = new ValueMeta("test", ValueMetaInterface.TYPE_BOOLEAN, ValueMetaInterface.STORAGE_TYPE_NORMAL);
+    BooleanWritable target = new BooleanWritable();
+
+    // The provided instance is reused for every conversion
+    assertSame(target, c.convertInto(booleanMeta, Boolean.TRUE, target));
+    assertEquals(new BooleanWritable(true), target);
+    assertSame(target, c.convertInto(booleanMeta, Boolean.FALSE, target));
+    assertEquals(new BooleanWritable(false), target);
+
+    // A new instance is created if none is provided
+    assertEquals(new BooleanWritable(true), c.convertInto(booleanMeta, Boolean.TRUE, null));
+  }
 }
@@ -77,4 +77,20 @@ public class KettleTypeToBytesWritableConverterTest {
       assertTrue(ex.getMessage().contains("Error converting to"));
     }
   }
+
+  @Test
+  public void convertInto() throws Exception {
+    KettleTypeToBytesWritableConverter c = new KettleTypeToBytesWritableConverter();
+    ValueMeta stringMeta = new ValueMeta("test", ValueMetaInterface.TYPE_STRING, ValueMetaInterface.STORAGE_TYPE_NORMAL);
+    BytesWritable target = new BytesWritable();
+
+    // The provided instance is reused for every conversion
+    assertSame(target, c.convertInto(stringMeta, "value", target));
+    assertEquals(new BytesWritable("value".getBytes()), target);
+    assertSame(target, c.convertInto(stringMeta, "v", target));
+    assertEquals(new BytesWritable("v".getBytes()), target);
+
+    // A new instance is created if none is provided
+    assertEquals(new BytesWritable("value".getBytes()), c.convertInto(stringMeta, "value", null));
+  }
 }
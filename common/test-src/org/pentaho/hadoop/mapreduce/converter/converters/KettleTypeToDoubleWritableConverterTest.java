@@ -80,4 +80,20 @@ public class KettleTypeToDoubleWritableConverterTest {
       assertTrue(ex.getMessage().contains("Error converting to"));
     }
   }
+
+  @Test
+  public void convertInto() throws Exception {
+    KettleTypeToDoubleWritableConverter c = new KettleTypeToDoubleWritableConverter();
+    ValueMeta numberMeta = new ValueMeta("test", ValueMetaInterface.TYPE_NUMBER, ValueMetaInterface.STORAGE_TYPE_NORMAL);
+    DoubleWritable target = new DoubleWritable();
+
+    // The provided instance is reused for every conversion
+    assertSame(target, c.convertInto(numberMeta, Double.valueOf(1.5), target));
+    assertEquals(new DoubleWritable(1.5), target);
+    assertSame(target, c.convertInto(numberMeta, Double.valueOf(2.5), target));
+    assertEquals(new DoubleWritable(2.5), target);
+
+    // A new instance is created if none is provided
+    assertEquals(new DoubleWritable(1.5), c.convertInto(numberMeta, Double.valueOf(1.5), null));
+  }
 }
@@ -80,4 +80,20 @@ public class KettleTypeToIntWritableConverterTest {
       assertTrue(ex.getMessage().contains("Error converting to"));
     }
   }
+
+  @Test
+  public void convertInto() throws Exception {
+    KettleTypeToIntWritableConverter c = new KettleTypeToIntWritableConverter();
+    ValueMeta integerMeta = new ValueMeta("test", ValueMetaInterface.TYPE_INTEGER, ValueMetaInterface.STORAGE_TYPE_NORMAL);
+    IntWritable target = new IntWritable();
+
+    // The provided instance is reused for every conversion
+    assertSame(target, c.convertInto(integerMeta, Long.valueOf(100), target));
+    assertEquals(new IntWritable(100), target);
+    assertSame(target, c.convertInto(integerMeta, Long.valueOf(200), target));
+    assertEquals(new IntWritable(200), target);
+
+    // A new instance is created if none is provided
+    assertEquals(new IntWritable(100), c.convertInto(integerMeta, Long.valueOf(100), null));
+  }
 }
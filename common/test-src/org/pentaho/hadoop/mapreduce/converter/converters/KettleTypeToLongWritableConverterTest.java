@@ -81,4 +81,20 @@ public class KettleTypeToLongWritableConverterTest {
     }
 
   }
+
+  @Test
+  public void convertInto() throws Exception {
+    KettleTypeToLongWritableConverter c = new KettleTypeToLongWritableConverter();
+    ValueMeta integerMeta = new ValueMeta("test", ValueMetaInterface.TYPE_INTEGER, ValueMetaInterface.STORAGE_TYPE_NORMAL);
+    LongWritable target = new LongWritable();
+
+    // The provided instance is reused for every conversion
+    assertSame(target, c.convertInto(integerMeta, Long.valueOf(100), target));
+    assertEquals(new LongWritable(100), target);
+    assertSame(target, c.convertInto(integerMeta, Long.valueOf(200), target));
+    assertEquals(new LongWritable(200), target);
+
+    // A new instance is created if none is provided
+    assertEquals(new LongWritable(100), c.convertInto(integerMeta, Long.valueOf(100), null));
+  }
 }
@@ -81,4 +81,20 @@ public class KettleTypeToTextConverterTest {
     }
 
   }
+
+  @Test
+  public void convertInto() throws Exception {
+    KettleTypeToTextConverter c = new KettleTypeToTextConverter();
+    ValueMeta stringMeta = new ValueMeta("test", ValueMetaInterface.TYPE_STRING, ValueMetaInterface.STORAGE_TYPE_NORMAL);
+    Text target = new Text();
+
+    // The provided instance is reused for every conversion
+    assertSame(target, c.convertInto(stringMeta, "100", target));
+    assertEquals(new Text("100"), target);
+    assertSame(target, c.convertInto(stringMeta, "200", target));
+    assertEquals(new Text("200"), target);
+
+    // A new instance is created if none is provided
+    assertEquals(new Text("100"), c.convertInto(stringMeta, "100", null));
+  }
 }
@@ -52,4 +52,11 @@ public class LongWritableToLongConverterTest {
       // Expected
     }
   }
+
+  @Test
+  public void convert_large_value() throws Exception {
+    LongWritableToLongConverter c = new LongWritableToLongConverter();
+
+    assertEquals(Long.valueOf(Long.MAX_VALUE), c.convert(null, new LongWritable(Long.MAX_VALUE)));
+  }
 }
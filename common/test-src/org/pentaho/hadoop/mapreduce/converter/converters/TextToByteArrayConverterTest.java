@@ -0,0 +1,61 @@
+/*******************************************************************************
+*
+* Pentaho Big Data
+*
+* Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+
+package org.pentaho.hadoop.mapreduce.converter.converters;
+
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TextToByteArrayConverterTest {
+  @Test
+  public void canConvert() throws Exception {
+    TextToByteArrayConverter c = new TextToByteArrayConverter();
+
+    assertTrue(c.canConvert(Text.class, byte[].class));
+
+    assertFalse(c.canConvert(null, null));
+    assertFalse(c.canConvert(Text.class, String.class));
+    assertFalse(c.canConvert(Object.class, byte[].class));
+  }
+
+  @Test
+  public void convert() throws Exception {
+    TextToByteArrayConverter c = new TextToByteArrayConverter();
+    Text text = new Text("a much longer line of text");
+    text.set("short");
+
+    // Only the valid bytes are returned, not the whole backing array
+    byte[] converted = c.convert(null, text);
+    assertEquals("short", new String(converted, "UTF-8"));
+    assertTrue(converted != text.getBytes());
+
+    try {
+      c.convert(null, null);
+      fail();
+    } catch (NullPointerException ex) {
+      // Expected
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/*******************************************************************************
+*
+* Pentaho Big Data
+*
+* Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+
+package org.pentaho.hadoop.mapreduce.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.trans.RowProducer;
+import org.pentaho.hadoop.mapreduce.BatchingRowInjector;
+
+/**
+ * Tests for {@link BatchingRowInjector}.
+ */
+public class BatchingRowInjectorTest {
+
+  private static class CollectingRowProducer extends RowProducer {
+    List<Object[]> rows = new ArrayList<Object[]>();
+    boolean finished = false;
+
+    CollectingRowProducer() {
+      super(null, null);
+    }
+
+    @Override
+    public void putRow(RowMetaInterface rowMeta, Object[] row) {
+      rows.add(row);
+    }
+
+    @Override
+    public void finished() {
+      finished = true;
+    }
+  }
+
+  @Test
+  public void invalidBatchSize() {
+    try {
+      new BatchingRowInjector(new CollectingRowProducer(), null, 0);
+      fail("Expected exception for a batch size of 0");
+    } catch (IllegalArgumentException ex) {
+      // Expected
+    }
+  }
+
+  @Test
+  public void rowsAreHandedOffInBlocks() {
+    CollectingRowProducer producer = new CollectingRowProducer();
+    BatchingRowInjector injector = new BatchingRowInjector(producer, null, 3);
+
+    Object[] first = new Object[] { "a", "1" };
+    assertFalse(injector.addRow(first));
+    assertFalse(injector.addRow(new Object[] { "b", "2" }));
+    assertEquals(0, producer.rows.size());
+
+    assertTrue(injector.addRow(new Object[] { "c", "3" }));
+    assertEquals(3, producer.rows.size());
+    assertSame(first, producer.rows.get(0));
+    assertEquals(1, injector.getBatches());
+
+    injector.addRow(new Object[] { "d", "4" });
+    assertEquals(3, producer.rows.size());
+
+    injector.finished();
+    assertTrue(producer.finished);
+    assertEquals(4, producer.rows.size());
+    assertEquals(2, injector.getBatches());
+    assertEquals(4, injector.getRows());
+  }
+}
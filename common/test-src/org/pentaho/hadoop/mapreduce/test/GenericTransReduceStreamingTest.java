@@ -0,0 +1,132 @@
+/*******************************************************************************
+*
+* Pentaho Big Data
+*
+* Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+package org.pentaho.hadoop.mapreduce.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.pentaho.hadoop.shim.api.Configuration.STRING_COMBINE_STREAMING;
+import static org.pentaho.hadoop.shim.api.Configuration.STRING_REDUCE_STREAMING;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.hadoop.io.BooleanWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reporter;
+import org.junit.Test;
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.trans.TransConfiguration;
+import org.pentaho.di.trans.TransExecutionConfiguration;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.hadoop.mapreduce.GenericTransCombiner;
+import org.pentaho.hadoop.mapreduce.GenericTransReduce;
+
+/**
+ * Tests for the streaming mode of {@link GenericTransReduce} and {@link GenericTransCombiner}: one transformation
+ * processes all key groups and is only finished in {@code close()}.
+ */
+@SuppressWarnings({ "unchecked", "rawtypes" })
+public class GenericTransReduceStreamingTest {
+
+  /**
+   * Copies every record, the output Writables may be reused.
+   */
+  private static class ListOutputCollector implements OutputCollector<Text, BooleanWritable> {
+    List<String> records = new ArrayList<String>();
+
+    @Override
+    public void collect(Text key, BooleanWritable value) throws IOException {
+      records.add(key + "=" + value.get());
+    }
+  }
+
+  /**
+   * Configures a job with {@code streaming-group-start.ktr}: its injector defines the key, the value and the
+   * {@value GenericTransReduce#GROUP_START_FIELD_NAME} marker which it outputs as value.
+   */
+  private static JobConf createJobConf(String type) throws Exception {
+    KettleEnvironment.init();
+    TransMeta transMeta = new TransMeta(new File("../test-res/streaming-group-start.ktr").getAbsolutePath());
+
+    JobConf job = new JobConf();
+    job.set("transformation-" + type + "-xml", new TransConfiguration(transMeta, new TransExecutionConfiguration())
+        .getXML());
+    job.set("transformation-" + type + "-input-stepname", "Injector");
+    job.set("transformation-" + type + "-output-stepname", "Output");
+    job.set("debug", "false");
+    job.setOutputKeyClass(Text.class);
+    job.setOutputValueClass(BooleanWritable.class);
+    job.setMapOutputKeyClass(Text.class);
+    job.setMapOutputValueClass(BooleanWritable.class);
+    return job;
+  }
+
+  private static Iterator values(int... values) {
+    List<Writable> writables = new ArrayList<Writable>();
+    for (int value : values) {
+      writables.add(new IntWritable(value));
+    }
+    return writables.iterator();
+  }
+
+  private static void runTwoKeyGroups(GenericTransReduce reducer) throws Exception {
+    assertTrue(reducer.isStreaming());
+
+    ListOutputCollector output = new ListOutputCollector();
+    reducer.reduce(new Text("a"), values(1, 2, 3), output, Reporter.NULL);
+    reducer.reduce(new Text("b"), values(4, 5), output, Reporter.NULL);
+
+    // The transformation is only finished, and all rows are guaranteed to have been collected, on close
+    reducer.close();
+
+    assertEquals(Arrays.asList("a=true", "a=false", "a=false", "b=true", "b=false"), output.records);
+  }
+
+  @Test
+  public void reduceStreaming_marksGroupStart_flushesOnClose() throws Exception {
+    JobConf job = createJobConf("reduce");
+    job.set(STRING_REDUCE_STREAMING, "true");
+
+    GenericTransReduce reducer = new GenericTransReduce();
+    reducer.configure(job);
+    runTwoKeyGroups(reducer);
+  }
+
+  @Test
+  public void combineStreaming_marksGroupStart_flushesOnClose() throws Exception {
+    JobConf job = createJobConf("combiner");
+    job.set(STRING_COMBINE_STREAMING, "true");
+
+    GenericTransCombiner combiner = new GenericTransCombiner();
+    combiner.configure(job);
+    runTwoKeyGroups(combiner);
+  }
+}
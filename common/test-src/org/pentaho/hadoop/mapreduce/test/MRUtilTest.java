@@ -23,12 +23,22 @@
 package org.pentaho.hadoop.mapreduce.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.util.UUID;
+
 import org.apache.hadoop.conf.Configuration;
 import org.junit.Test;
+import org.pentaho.di.core.KettleEnvironment;
 import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.trans.TransConfiguration;
+import org.pentaho.di.trans.TransExecutionConfiguration;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.TransMeta.TransformationType;
 import org.pentaho.hadoop.mapreduce.MRUtil;
 
 
@@ -75,4 +85,74 @@ public class MRUtilTest {
     String kettleHome = MRUtil.getKettleHomeProperty(c);
     assertEquals(KETTLE_HOME, kettleHome);
   }
+
+  /**
+   * Builds the configuration XML of a test transformation with a unique name, so no other test shares its cache entry
+   */
+  private static String uniqueTransXml() throws Exception {
+    KettleEnvironment.init();
+    TransMeta transMeta = new TransMeta(new File("../test-res/mr-passthrough.ktr").getAbsolutePath());
+    transMeta.setName("cache-test-" + UUID.randomUUID());
+    return new TransConfiguration(transMeta, new TransExecutionConfiguration()).getXML();
+  }
+
+  @Test
+  public void getTrans_reuseTransMeta_sameXml() throws Exception {
+    final Configuration c = new Configuration();
+    String transXml = uniqueTransXml();
+
+    TransMeta first = MRUtil.getTrans(c, transXml, false, true).getTransMeta();
+    assertSame(first, MRUtil.getTrans(c, transXml, false, true).getTransMeta());
+  }
+
+  @Test
+  public void getTrans_reuseTransMeta_differentXml() throws Exception {
+    final Configuration c = new Configuration();
+
+    TransMeta first = MRUtil.getTrans(c, uniqueTransXml(), false, true).getTransMeta();
+    assertNotSame(first, MRUtil.getTrans(c, uniqueTransXml(), false, true).getTransMeta());
+  }
+
+  @Test
+  public void getTrans_reuseTransMeta_singleThreadedSeparately() throws Exception {
+    final Configuration c = new Configuration();
+    String transXml = uniqueTransXml();
+
+    TransMeta normal = MRUtil.getTrans(c, transXml, false, true).getTransMeta();
+    TransMeta singleThreaded = MRUtil.getTrans(c, transXml, true, true).getTransMeta();
+    assertNotSame(normal, singleThreaded);
+    assertSame(singleThreaded, MRUtil.getTrans(c, transXml, true, true).getTransMeta());
+
+    // The single threaded caller must not have changed the engine of the normal one
+    assertEquals(TransformationType.Normal, MRUtil.getTrans(c, transXml, false, true).getTransMeta()
+        .getTransformationType());
+    assertEquals(TransformationType.SingleThreaded, singleThreaded.getTransformationType());
+  }
+
+  @Test
+  public void getTrans_noReuse() throws Exception {
+    final Configuration c = new Configuration();
+    String transXml = uniqueTransXml();
+
+    TransMeta first = MRUtil.getTrans(c, transXml, false, true).getTransMeta();
+    // Not asking for reuse parses the XML again, even if it is cached
+    assertNotSame(first, MRUtil.getTrans(c, transXml, false, false).getTransMeta());
+  }
+
+  @Test
+  public void getTrans_reuseTransMeta_evictsLeastRecentlyUsed() throws Exception {
+    final Configuration c = new Configuration();
+    String[] transXml = new String[4];
+    TransMeta[] transMeta = new TransMeta[4];
+    for (int i = 0; i < transXml.length; i++) {
+      transXml[i] = uniqueTransXml();
+      transMeta[i] = MRUtil.getTrans(c, transXml[i], false, true).getTransMeta();
+    }
+
+    // Only the last 3 transformations are kept
+    assertSame(transMeta[3], MRUtil.getTrans(c, transXml[3], false, true).getTransMeta());
+    assertSame(transMeta[2], MRUtil.getTrans(c, transXml[2], false, true).getTransMeta());
+    assertSame(transMeta[1], MRUtil.getTrans(c, transXml[1], false, true).getTransMeta());
+    assertNotSame(transMeta[0], MRUtil.getTrans(c, transXml[0], false, true).getTransMeta());
+  }
 }
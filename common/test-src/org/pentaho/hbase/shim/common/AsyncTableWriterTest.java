@@ -0,0 +1,336 @@
+/*******************************************************************************
+ *
+ * Pentaho Big Data
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+
+
+package org.pentaho.hbase.shim.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.client.HConnection;
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.hbase.shim.spi.BatchWriteStatistics;
+
+/**
+ * Tests for {@link AsyncTableWriter}.
+ */
+public class AsyncTableWriterTest {
+
+  private Configuration m_config;
+  private HConnection m_connection;
+  private ExecutorService m_pool;
+  private HTable m_table;
+
+  /**
+   * Writer that records the batches instead of sending them, optionally blocking until released or failing.
+   */
+  private class TestWriter extends AsyncTableWriter {
+    final List<Integer> m_written = new ArrayList<Integer>();
+    final CountDownLatch m_release;
+    volatile boolean m_fail;
+    volatile ClassLoader m_writerClassLoader;
+
+    TestWriter( long maxInFlightBytes, boolean blocking ) {
+      super( m_table, maxInFlightBytes, new BatchWriteStatistics() );
+      m_release = new CountDownLatch( blocking ? 1 : 0 );
+    }
+
+    @Override
+    void writeBatch( List<Put> batch ) throws IOException {
+      m_writerClassLoader = Thread.currentThread().getContextClassLoader();
+      try {
+        m_release.await();
+      } catch ( InterruptedException ex ) {
+        throw new IOException( "Interrupted" );
+      }
+      if ( m_fail ) {
+        throw new IOException( "Region server gone" );
+      }
+      synchronized ( m_written ) {
+        m_written.add( batch.size() );
+      }
+    }
+  }
+
+  /**
+   * Connection writing to the test table through a given writer, without a cluster.
+   */
+  private class TestConnection extends CommonHBaseConnection {
+    HTable m_released;
+
+    TestConnection( AsyncTableWriter writer ) {
+      m_targetTable = m_table;
+      m_asyncWriter = writer;
+      m_maxWriteBatchRows = 1;
+    }
+
+    @Override
+    protected void checkConfiguration() {
+      // nothing to connect to
+    }
+
+    @Override
+    protected void releaseTable( HTable table ) {
+      m_released = table;
+    }
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    // HBase versions before 0.94 can't create a table handle on a given connection
+    Constructor<HTable> tableConstructor = null;
+    try {
+      tableConstructor = HTable.class.getConstructor( byte[].class, HConnection.class, ExecutorService.class );
+    } catch ( NoSuchMethodException ex ) {
+      assumeTrue( false );
+    }
+
+    m_config = new Configuration();
+    m_pool = Executors.newSingleThreadExecutor();
+    m_connection =
+        (HConnection) Proxy.newProxyInstance( getClass().getClassLoader(), new Class<?>[] { HConnection.class },
+            new InvocationHandler() {
+              @Override
+              public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable {
+                if ( "getConfiguration".equals( method.getName() ) ) {
+                  return m_config;
+                }
+                Class<?> type = method.getReturnType();
+                if ( type == boolean.class ) {
+                  return Boolean.FALSE;
+                } else if ( type == int.class ) {
+                  return 0;
+                } else if ( type == long.class ) {
+                  return 0L;
+                }
+                return null;
+              }
+            } );
+    m_table = tableConstructor.newInstance( Bytes.toBytes( "t" ), m_connection, m_pool );
+  }
+
+  @After
+  public void tearDown() {
+    if ( m_pool != null ) {
+      m_pool.shutdownNow();
+    }
+  }
+
+  private static List<Put> batch( int rows ) {
+    List<Put> batch = new ArrayList<Put>();
+    for ( int i = 0; i < rows; i++ ) {
+      batch.add( new Put( Bytes.toBytes( "row" + i ) ) );
+    }
+    return batch;
+  }
+
+  private static void assertFailure( Exception ex ) {
+    assertTrue( ex.getCause() instanceof IOException );
+    assertEquals( "Region server gone", ex.getCause().getMessage() );
+  }
+
+  /**
+   * Waits for the failed write of a failing writer.
+   */
+  private static void awaitFailure( TestWriter writer ) {
+    try {
+      writer.awaitWritten();
+      fail( "Expected the write to fail" );
+    } catch ( Exception ex ) {
+      assertFailure( ex );
+    }
+  }
+
+  @Test
+  public void submit_blocks_past_in_flight_bytes() throws Exception {
+    final TestWriter writer = new TestWriter( 100, true );
+    writer.submit( batch( 1 ), 60 );
+
+    final CountDownLatch submitted = new CountDownLatch( 1 );
+    Thread producer = new Thread() {
+      @Override
+      public void run() {
+        try {
+          writer.submit( batch( 2 ), 60 );
+          submitted.countDown();
+        } catch ( Exception ex ) {
+          // the latch stays closed
+        }
+      }
+    };
+    producer.start();
+
+    assertFalse( "Producer must block while the bytes in flight exceed the limit", submitted.await( 200,
+        TimeUnit.MILLISECONDS ) );
+    writer.m_release.countDown();
+    assertTrue( submitted.await( 5, TimeUnit.SECONDS ) );
+    writer.awaitWritten();
+    producer.join();
+
+    assertEquals( 2, writer.m_written.size() );
+    writer.close();
+  }
+
+  @Test
+  public void submit_does_not_block_below_in_flight_bytes() throws Exception {
+    TestWriter writer = new TestWriter( 100, true );
+
+    // a single batch is let through even if it is larger than the limit
+    writer.submit( batch( 1 ), 150 );
+    writer.m_release.countDown();
+    writer.awaitWritten();
+    writer.submit( batch( 1 ), 40 );
+    writer.submit( batch( 1 ), 40 );
+    writer.close();
+
+    assertEquals( 3, writer.m_written.size() );
+  }
+
+  @Test
+  public void failure_is_reported_by_writer() throws Exception {
+    TestWriter writer = new TestWriter( 100, false );
+    writer.m_fail = true;
+    writer.submit( batch( 1 ), 10 );
+    awaitFailure( writer );
+
+    try {
+      writer.submit( batch( 1 ), 10 );
+      fail( "Expected the failure to be reported" );
+    } catch ( Exception ex ) {
+      assertFailure( ex );
+    }
+    try {
+      writer.close();
+      fail( "Expected the failure to be reported" );
+    } catch ( Exception ex ) {
+      assertFailure( ex );
+    }
+  }
+
+  @Test
+  public void failure_is_reported_by_connection() throws Exception {
+    TestWriter writer = new TestWriter( 100, false );
+    writer.m_fail = true;
+    TestConnection connection = new TestConnection( writer );
+
+    connection.newTargetTablePut( Bytes.toBytes( "a" ), true );
+    connection.addTargetTablePutToBatch();
+    awaitFailure( writer );
+
+    connection.newTargetTablePut( Bytes.toBytes( "b" ), true );
+    try {
+      connection.addTargetTablePutToBatch();
+      fail( "Expected the failure to be reported" );
+    } catch ( Exception ex ) {
+      assertFailure( ex );
+    }
+    try {
+      connection.executeTargetTablePut();
+      fail( "Expected the failure to be reported" );
+    } catch ( Exception ex ) {
+      assertFailure( ex );
+    }
+    try {
+      connection.closeTargetTable();
+      fail( "Expected the failure to be reported" );
+    } catch ( Exception ex ) {
+      assertFailure( ex );
+    }
+
+    // the table is given back even though the writes failed
+    assertSame( m_table, connection.m_released );
+  }
+
+  @Test
+  public void close_waits_for_writes_when_interrupted() throws Exception {
+    final TestWriter writer = new TestWriter( 100, true );
+    writer.submit( batch( 3 ), 10 );
+
+    Thread releaser = new Thread() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep( 200 );
+        } catch ( InterruptedException ex ) {
+          // release right away
+        }
+        writer.m_release.countDown();
+      }
+    };
+    releaser.start();
+
+    Thread.currentThread().interrupt();
+    try {
+      writer.close();
+    } finally {
+      // clears the interrupt status for the following tests
+      assertTrue( "The interrupt status must be restored", Thread.interrupted() );
+    }
+    releaser.join();
+
+    assertEquals( 1, writer.m_written.size() );
+    assertEquals( 3, writer.m_written.get( 0 ).intValue() );
+  }
+
+  @Test
+  public void writer_thread_uses_own_class_loader() throws Exception {
+    TestWriter writer = new TestWriter( 100, false );
+
+    Thread thread = Thread.currentThread();
+    ClassLoader previous = thread.getContextClassLoader();
+    thread.setContextClassLoader( new URLClassLoader( new URL[0], previous ) );
+    try {
+      writer.submit( batch( 1 ), 10 );
+    } finally {
+      thread.setContextClassLoader( previous );
+    }
+    writer.close();
+
+    assertSame( AsyncTableWriter.class.getClassLoader(), writer.m_writerClassLoader );
+  }
+}
@@ -0,0 +1,126 @@
+/*******************************************************************************
+ *
+ * Pentaho Big Data
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+
+package org.pentaho.hbase.shim.common;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SaltedBucketScanner}.
+ */
+public class SaltedBucketScannerTest {
+
+  private static byte[] bytes( int... values ) {
+    byte[] result = new byte[values.length];
+    for ( int i = 0; i < values.length; i++ ) {
+      result[i] = (byte) values[i];
+    }
+    return result;
+  }
+
+  private static Result row( byte[] key ) {
+    return new Result( new KeyValue[] { new KeyValue( key, Bytes.toBytes( "f" ), Bytes.toBytes( "q" ), key ) } );
+  }
+
+  @Test
+  public void bucketScans_bounded_range() throws Exception {
+    Scan scan = new Scan( bytes( 0x10, 0x20 ), bytes( 0x30 ) );
+    List<Scan> parts = SaltedBucketScanner.bucketScans( scan, 4 );
+
+    assertEquals( 4, parts.size() );
+    for ( int b = 0; b < 4; b++ ) {
+      assertArrayEquals( bytes( b, 0x10, 0x20 ), parts.get( b ).getStartRow() );
+      assertArrayEquals( bytes( b, 0x30 ), parts.get( b ).getStopRow() );
+    }
+  }
+
+  @Test
+  public void bucketScans_open_range_covers_whole_bucket() throws Exception {
+    List<Scan> parts = SaltedBucketScanner.bucketScans( new Scan(), 3 );
+
+    assertEquals( 3, parts.size() );
+    for ( int b = 0; b < 3; b++ ) {
+      assertArrayEquals( bytes( b ), parts.get( b ).getStartRow() );
+      assertArrayEquals( bytes( b + 1 ), parts.get( b ).getStopRow() );
+    }
+  }
+
+  @Test
+  public void bucketScans_open_stop_of_last_bucket() throws Exception {
+    Scan scan = new Scan( bytes( 0x7f, 0x80 ) );
+    List<Scan> parts = SaltedBucketScanner.bucketScans( scan, 256 );
+
+    assertEquals( 256, parts.size() );
+    assertArrayEquals( bytes( 0x7f, 0x7f, 0x80 ), parts.get( 0x7f ).getStartRow() );
+    assertArrayEquals( bytes( 0x80 ), parts.get( 0x7f ).getStopRow() );
+    assertArrayEquals( bytes( 0xfe, 0x7f, 0x80 ), parts.get( 254 ).getStartRow() );
+    assertArrayEquals( bytes( 0xff ), parts.get( 254 ).getStopRow() );
+    // there is no key after the last bucket, so its scan runs to the end of the table
+    assertArrayEquals( bytes( 0xff, 0x7f, 0x80 ), parts.get( 255 ).getStartRow() );
+    assertArrayEquals( HConstants.EMPTY_END_ROW, parts.get( 255 ).getStopRow() );
+  }
+
+  @Test
+  public void bucketScans_bounded_stop_of_last_bucket() throws Exception {
+    Scan scan = new Scan( HConstants.EMPTY_START_ROW, bytes( 0xff, 0x01 ) );
+    List<Scan> parts = SaltedBucketScanner.bucketScans( scan, 256 );
+
+    assertArrayEquals( bytes( 0xff ), parts.get( 255 ).getStartRow() );
+    assertArrayEquals( bytes( 0xff, 0xff, 0x01 ), parts.get( 255 ).getStopRow() );
+  }
+
+  @Test
+  public void bucketScans_keep_scan_settings() throws Exception {
+    Scan scan = new Scan();
+    scan.setCaching( 123 );
+    scan.addFamily( Bytes.toBytes( "f" ) );
+
+    for ( Scan part : SaltedBucketScanner.bucketScans( scan, 2 ) ) {
+      assertEquals( 123, part.getCaching() );
+      assertTrue( part.hasFamilies() );
+    }
+  }
+
+  @Test
+  public void compareUnsalted_ignores_bucket() {
+    Result a = row( bytes( 3, 0x01 ) );
+    Result b = row( bytes( 0, 0x80 ) );
+
+    // unsigned, so 0x80 sorts after 0x01 whatever the buckets are
+    assertTrue( SaltedBucketScanner.compareUnsalted( a, b ) < 0 );
+    assertTrue( SaltedBucketScanner.compareUnsalted( b, a ) > 0 );
+    assertEquals( 0, SaltedBucketScanner.compareUnsalted( row( bytes( 1, 5 ) ), row( bytes( 2, 5 ) ) ) );
+  }
+}
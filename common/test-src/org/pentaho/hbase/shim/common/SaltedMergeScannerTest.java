@@ -0,0 +1,163 @@
+/*******************************************************************************
+ *
+ * Pentaho Big Data
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+
+package org.pentaho.hbase.shim.common;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SaltedMergeScanner}.
+ */
+public class SaltedMergeScannerTest {
+
+  /**
+   * Scans the rows of a bucket from a list.
+   */
+  private static class ListScanner implements ResultScanner {
+    private final Iterator<Result> m_rows;
+    boolean m_closed;
+
+    ListScanner( List<Result> rows ) {
+      m_rows = rows.iterator();
+    }
+
+    @Override
+    public Result next() {
+      return m_rows.hasNext() ? m_rows.next() : null;
+    }
+
+    @Override
+    public Result[] next( int nbRows ) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Iterator<Result> iterator() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+      m_closed = true;
+    }
+  }
+
+  /**
+   * Reads the buckets from lists of rows instead of a table.
+   */
+  private static class TestMergeScanner extends SaltedMergeScanner {
+    private final List<List<Result>> m_buckets;
+    final List<ListScanner> m_opened = new ArrayList<ListScanner>();
+
+    TestMergeScanner( List<List<Result>> buckets ) throws IOException {
+      super( null, new Scan(), buckets.size() );
+      m_buckets = buckets;
+    }
+
+    @Override
+    protected ResultScanner openScanner( Scan part ) {
+      ListScanner scanner = new ListScanner( m_buckets.get( part.getStartRow()[0] & 0xff ) );
+      m_opened.add( scanner );
+      return scanner;
+    }
+  }
+
+  private static Result row( int bucket, String key ) {
+    byte[] row = Bytes.add( new byte[] { (byte) bucket }, Bytes.toBytes( key ) );
+    return new Result( new KeyValue[] { new KeyValue( row, Bytes.toBytes( "f" ), Bytes.toBytes( "q" ), row ) } );
+  }
+
+  private static List<String> unsaltedKeys( Iterable<Result> rows ) {
+    List<String> keys = new ArrayList<String>();
+    for ( Result r : rows ) {
+      byte[] row = r.getRow();
+      keys.add( Bytes.toString( row, 1, row.length - 1 ) );
+    }
+    return keys;
+  }
+
+  @Test
+  public void merges_buckets_by_unsalted_key() throws Exception {
+    List<List<Result>> buckets = new ArrayList<List<Result>>();
+    buckets.add( Arrays.asList( row( 0, "b" ), row( 0, "e" ) ) );
+    buckets.add( new ArrayList<Result>() );
+    buckets.add( Arrays.asList( row( 2, "a" ), row( 2, "c" ), row( 2, "f" ) ) );
+    buckets.add( Arrays.asList( row( 3, "d" ) ) );
+    TestMergeScanner scanner = new TestMergeScanner( buckets );
+
+    assertEquals( Arrays.asList( "a", "b", "c", "d", "e", "f" ), unsaltedKeys( scanner ) );
+    assertNull( scanner.next() );
+    for ( ListScanner opened : scanner.m_opened ) {
+      assertTrue( opened.m_closed );
+    }
+  }
+
+  @Test
+  public void opens_one_scanner_per_bucket_on_first_row() throws Exception {
+    List<List<Result>> buckets = new ArrayList<List<Result>>();
+    for ( int b = 0; b < 256; b++ ) {
+      buckets.add( Arrays.asList( row( b, String.format( "%03d", 255 - b ) ) ) );
+    }
+    TestMergeScanner scanner = new TestMergeScanner( buckets );
+    assertEquals( 0, scanner.m_opened.size() );
+
+    Result[] first = scanner.next( 2 );
+    assertEquals( 256, scanner.m_opened.size() );
+    assertEquals( 2, first.length );
+    assertArrayEquals( row( 255, "000" ).getRow(), first[0].getRow() );
+    assertArrayEquals( row( 254, "001" ).getRow(), first[1].getRow() );
+  }
+
+  @Test
+  public void close_closes_open_buckets() throws Exception {
+    List<List<Result>> buckets = new ArrayList<List<Result>>();
+    buckets.add( Arrays.asList( row( 0, "a" ), row( 0, "b" ) ) );
+    buckets.add( Arrays.asList( row( 1, "c" ) ) );
+    TestMergeScanner scanner = new TestMergeScanner( buckets );
+
+    scanner.next();
+    scanner.close();
+
+    assertNull( scanner.next() );
+    for ( ListScanner opened : scanner.m_opened ) {
+      assertTrue( opened.m_closed );
+    }
+  }
+}
@@ -0,0 +1,196 @@
+/*******************************************************************************
+ *
+ * Pentaho Big Data
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+
+package org.pentaho.hbase.shim.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.client.HConnection;
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.hbase.shim.spi.HBaseConnection;
+
+/**
+ * Tests for {@link SharedHBaseConnection}.
+ */
+public class SharedHBaseConnectionTest {
+
+  private Configuration m_config;
+  private HConnection m_connection;
+  private ExecutorService m_pool;
+  private Constructor<HTable> m_tableConstructor;
+
+  /**
+   * Shared connection that opens table handles on a connection that doesn't talk to a cluster
+   */
+  private class TestSharedConnection extends SharedHBaseConnection {
+    final List<HTable> m_created = new ArrayList<HTable>();
+
+    TestSharedConnection( Properties connProps ) {
+      super( "test", m_config, connProps );
+    }
+
+    @Override
+    HTable createTable( String tableName ) throws Exception {
+      HTable table = m_tableConstructor.newInstance( Bytes.toBytes( tableName ), m_connection, m_pool );
+      m_created.add( table );
+      return table;
+    }
+  }
+
+  @Before
+  public void setUp() {
+    // HBase versions before 0.94 can't create a table handle on a given connection
+    try {
+      m_tableConstructor = HTable.class.getConstructor( byte[].class, HConnection.class, ExecutorService.class );
+    } catch ( NoSuchMethodException ex ) {
+      assumeTrue( false );
+    }
+
+    m_config = new Configuration();
+    m_pool = Executors.newSingleThreadExecutor();
+    m_connection =
+        (HConnection) Proxy.newProxyInstance( getClass().getClassLoader(), new Class<?>[] { HConnection.class },
+            new InvocationHandler() {
+              @Override
+              public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable {
+                if ( "getConfiguration".equals( method.getName() ) ) {
+                  return m_config;
+                }
+                Class<?> type = method.getReturnType();
+                if ( type == boolean.class ) {
+                  return Boolean.FALSE;
+                } else if ( type == int.class ) {
+                  return 0;
+                } else if ( type == long.class ) {
+                  return 0L;
+                }
+                return null;
+              }
+            } );
+  }
+
+  @After
+  public void tearDown() {
+    m_pool.shutdownNow();
+  }
+
+  private static Properties poolProperties( int maxTables, long maxWaitMillis ) {
+    Properties connProps = new Properties();
+    connProps.setProperty( HBaseConnection.CONNECTION_POOL_MAX_TABLES_KEY, String.valueOf( maxTables ) );
+    connProps.setProperty( HBaseConnection.CONNECTION_POOL_MAX_WAIT_MILLIS_KEY, String.valueOf( maxWaitMillis ) );
+    return connProps;
+  }
+
+  @Test
+  public void borrowTable_reuses_released_handle() throws Exception {
+    TestSharedConnection shared = new TestSharedConnection( poolProperties( 2, 0 ) );
+
+    HTable table = shared.borrowTable( "t" );
+    shared.releaseTable( table );
+
+    assertSame( table, shared.borrowTable( "t" ) );
+    assertEquals( 1, shared.m_created.size() );
+  }
+
+  @Test
+  public void borrowTable_past_max_tables_opens_unpooled_handle() throws Exception {
+    TestSharedConnection shared = new TestSharedConnection( poolProperties( 2, 0 ) );
+
+    HTable first = shared.borrowTable( "t" );
+    HTable second = shared.borrowTable( "t" );
+    long start = System.currentTimeMillis();
+    HTable third = shared.borrowTable( "t" );
+    HTable fourth = shared.borrowTable( "other" );
+    assertTrue( "Borrowing past the maximum must not block", System.currentTimeMillis() - start < 1000 );
+    assertEquals( 4, shared.m_created.size() );
+
+    // the unpooled handles are closed when released, only the pooled ones are reused
+    shared.releaseTable( third );
+    shared.releaseTable( fourth );
+    shared.releaseTable( first );
+    shared.releaseTable( second );
+
+    List<HTable> borrowed = Arrays.asList( shared.borrowTable( "t" ), shared.borrowTable( "t" ) );
+    assertTrue( borrowed.contains( first ) );
+    assertTrue( borrowed.contains( second ) );
+    assertEquals( 4, shared.m_created.size() );
+
+    HTable fifth = shared.borrowTable( "t" );
+    assertFalse( fifth == third );
+    assertEquals( 5, shared.m_created.size() );
+  }
+
+  @Test
+  public void borrowTable_waits_for_released_handle() throws Exception {
+    final TestSharedConnection shared = new TestSharedConnection( poolProperties( 1, 10000 ) );
+    final HTable table = shared.borrowTable( "t" );
+
+    Thread releaser = new Thread() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep( 100 );
+        } catch ( InterruptedException ex ) {
+          // release right away
+        }
+        shared.releaseTable( table );
+      }
+    };
+    releaser.start();
+
+    assertSame( table, shared.borrowTable( "t" ) );
+    releaser.join();
+    assertEquals( 1, shared.m_created.size() );
+  }
+
+  @Test
+  public void borrowTable_past_max_tables_after_wait() throws Exception {
+    TestSharedConnection shared = new TestSharedConnection( poolProperties( 1, 100 ) );
+    HTable table = shared.borrowTable( "t" );
+
+    assertNotSame( table, shared.borrowTable( "t" ) );
+    assertEquals( 2, shared.m_created.size() );
+  }
+}